@@ -53,9 +53,9 @@ import com.google.common.collect.Iterators;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Ordering;
 
+import eu.project.ttc.models.AbstractTermOccurrence;
 import eu.project.ttc.models.Term;
 import eu.project.ttc.models.TermIndex;
-import eu.project.ttc.models.TermOccurrence;
 import eu.project.ttc.models.VariationType;
 import eu.project.ttc.resources.TermIndexResource;
 import eu.project.ttc.types.WordAnnotation;
@@ -184,7 +184,7 @@ public class CasStatCounter extends JCasAnnotator_ImplBase {
 			nbSyntacticVariants+=Iterables.size(t.getVariations(VariationType.SYNTACTICAL));
 			nbGraphicalVariants+=Iterables.size(t.getVariations(VariationType.GRAPHICAL));
 			nbOccurrences+=t.getOccurrences().size();
-			for(TermOccurrence o:t.getOccurrences()) {
+			for(AbstractTermOccurrence o:t.getOccurrences()) {
 				if(o.isPrimaryOccurrence())
 					nbPrimaryOccOccurrences++;
 			}
@@ -38,19 +38,19 @@ import com.google.common.collect.Iterators;
 import eu.project.ttc.metrics.AssociationRate;
 import eu.project.ttc.metrics.LogLikelihood;
 import eu.project.ttc.metrics.MutualInformation;
+import eu.project.ttc.models.AbstractTermOccurrence;
 import eu.project.ttc.models.CrossTable;
 import eu.project.ttc.models.Document;
 import eu.project.ttc.models.OccurrenceType;
 import eu.project.ttc.models.Term;
 import eu.project.ttc.models.TermIndex;
-import eu.project.ttc.models.TermOccurrence;
 import eu.project.ttc.resources.TermIndexResource;
 import eu.project.ttc.utils.IteratorUtils;
 import fr.univnantes.lina.UIMAProfiler;
 
 /**
- * An AE that index {@link TermOccurrence}s within {@link Document}s so as
- * to make method {@link TermOccurrence}{@link #getContext()} invokable.
+ * An AE that index {@link AbstractTermOccurrence}s within {@link Document}s so as
+ * to make method {@link AbstractTermOccurrence}{@link #getContext()} invokable.
  * 
  * @author Damien Cram
  *
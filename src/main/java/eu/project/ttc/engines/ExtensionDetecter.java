@@ -1,6 +1,7 @@
 package eu.project.ttc.engines;
 
 import java.util.List;
+import java.util.Map;
 
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
@@ -9,18 +10,36 @@ import org.apache.uima.jcas.JCas;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
 import eu.project.ttc.models.Term;
-import eu.project.ttc.models.index.CustomTermIndex;
+import eu.project.ttc.models.TermWord;
 import eu.project.ttc.models.index.TermIndexes;
+import eu.project.ttc.models.index.TermValueProvider;
 import eu.project.ttc.models.index.TermValueProviders;
 import eu.project.ttc.resources.TermIndexResource;
 import eu.project.ttc.utils.TermUtils;
 import fr.univnantes.lina.UIMAProfiler;
 
+/**
+ * 
+ * Detects the extensions of each term, i.e. the terms in which it is included.
+ * 
+ * The word sequences of all candidate bases are indexed in a trie, and 
+ * the contiguous sub-sequences of each term are looked up in this trie, 
+ * so that every included term is found in one walk per word of the term.
+ * 
+ * As with the former comparisons by {@link TermIndexes#WORD_COUPLE_LEMMA_LEMMA} 
+ * classes, only the terms having at least one lemma couple can be extension 
+ * bases.
+ * 
+ * @author Damien Cram
+ *
+ */
 public class ExtensionDetecter extends JCasAnnotator_ImplBase {
 	private static final Logger LOGGER = LoggerFactory.getLogger(ExtensionDetecter.class);
-	private static final int WARNING_CRITICAL_SIZE = 10000;
-
+	
 	@ExternalResource(key=TermIndexResource.TERM_INDEX, mandatory=true)
 	private TermIndexResource termIndexResource;
 
@@ -34,40 +53,78 @@ public class ExtensionDetecter extends JCasAnnotator_ImplBase {
 		UIMAProfiler.getProfiler("AnalysisEngine").start(this, "process");
 		LOGGER.info("Starting extension detection");
 		
-		String gatheringKey = TermIndexes.WORD_COUPLE_LEMMA_LEMMA;
-		CustomTermIndex customIndex = this.termIndexResource.getTermIndex().createCustomIndex(
-				gatheringKey,
-				TermValueProviders.get(gatheringKey));
-		LOGGER.debug("Rule-based gathering over {} classes", customIndex.size());
-
-		// clean singleton classes
-		LOGGER.debug("Cleaning singleton keys");
-		customIndex.cleanSingletonKeys();
-
-		// clean biggest classes
-		customIndex.dropBiggerEntries(WARNING_CRITICAL_SIZE, true);
+		TermValueProvider coupleProvider = TermValueProviders.get(TermIndexes.WORD_COUPLE_LEMMA_LEMMA);
 		
-		Term t1;
-		Term t2;
-		for (String cls : customIndex.keySet()) {
-			List<Term> list = customIndex.getTerms(cls);
-			for(int i = 0; i< list.size(); i++) {
-				t1 = list.get(i);
-				for(int j = i+1; j< list.size(); j++) {
-					t2 = list.get(j);
-					if(TermUtils.isIncludedIn(t1, t2))
-						t1.addExtension(t2);
-					else if(TermUtils.isIncludedIn(t2, t1))
-						t2.addExtension(t1);
+		// index the bases
+		TrieNode root = new TrieNode();
+		int nbBases = 0;
+		for(Term t:this.termIndexResource.getTermIndex().getTerms()) {
+			if(coupleProvider.getClasses(t).isEmpty())
+				continue;
+			TrieNode node = root;
+			for(TermWord w:t.getWords()) 
+				node = node.getOrCreateChild(w);
+			node.addTerm(t);
+			nbBases++;
+		}
+		LOGGER.debug("Extension detection over {} bases", nbBases);
+
+		// look up the sub-sequences of each term
+		int nbInclusions = 0;
+		List<TermWord> words;
+		TrieNode node;
+		for(Term t:this.termIndexResource.getTermIndex().getTerms()) {
+			words = t.getWords();
+			for(int start = 0; start < words.size(); start++) {
+				node = root;
+				for(int end = start; end < words.size() && node != null; end++) {
+					node = node.getChild(words.get(end));
+					if(node == null || node.terms == null || end - start + 1 == words.size()) 
+						continue;
+					for(Term base:node.terms) {
+						if(TermUtils.isIncludedIn(base, t)) {
+							base.addExtension(t);
+							nbInclusions++;
+						}
+					}
 				}
 			}
 		}
-		
-		//finalize
-		this.termIndexResource.getTermIndex().dropCustomIndex(gatheringKey);
-		
+		LOGGER.debug("Extension detection found {} inclusions", nbInclusions);
 		
 		UIMAProfiler.getProfiler("AnalysisEngine").stop(this, "process");
 	}
 
+	/*
+	 * A node of the word-sequence trie
+	 */
+	private static class TrieNode {
+		private Map<TermWord, TrieNode> children;
+		
+		/*
+		 * The terms whose word sequence ends at this node
+		 */
+		private List<Term> terms;
+
+		private TrieNode getChild(TermWord word) {
+			return children == null ? null : children.get(word);
+		}
+
+		private TrieNode getOrCreateChild(TermWord word) {
+			if(children == null)
+				children = Maps.newHashMapWithExpectedSize(2);
+			TrieNode child = children.get(word);
+			if(child == null) {
+				child = new TrieNode();
+				children.put(word, child);
+			}
+			return child;
+		}
+		
+		private void addTerm(Term term) {
+			if(terms == null)
+				terms = Lists.newArrayListWithCapacity(1);
+			terms.add(term);
+		}
+	}
 }
@@ -25,6 +25,8 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
@@ -37,11 +39,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.google.common.math.IntMath;
 
 import eu.project.ttc.engines.desc.Lang;
 import eu.project.ttc.metrics.DiacriticInsensitiveLevenshtein;
 import eu.project.ttc.metrics.EditDistance;
+import eu.project.ttc.metrics.LevenshteinSimilarityJoin;
 import eu.project.ttc.models.Term;
 import eu.project.ttc.models.TermIndex;
 import eu.project.ttc.models.TermWord;
@@ -57,6 +61,9 @@ import fr.univnantes.lina.UIMAProfiler;
  * Gather terms whe their edit distances (ignoring diacritics) are
  * under certain threshold (not normalized).
  * 
+ * Within each class, only the pairs returned by a {@link LevenshteinSimilarityJoin}
+ * are verified, concurrently when {@link #NB_THREADS} is greater than 1.
+ * 
  * @author Damien Cram
  *
  */
@@ -77,6 +84,10 @@ public class GraphicalVariantGatherer  extends JCasAnnotator_ImplBase {
 	private float threshold;
 	
 
+	public static final String NB_THREADS = "NbThreads";
+	@ConfigurationParameter(name = NB_THREADS, mandatory = false, defaultValue = "1")
+	private int nbThreads;
+
 	private EditDistance distance = new DiacriticInsensitiveLevenshtein();
 	private Lang language;
 
@@ -167,40 +178,99 @@ public class GraphicalVariantGatherer  extends JCasAnnotator_ImplBase {
 		
 		
 		// do the distance computation on each class
+		LevenshteinSimilarityJoin join = new LevenshteinSimilarityJoin(this.threshold);
+		ForkJoinPool pool = nbThreads > 1 ? new ForkJoinPool(nbThreads) : null;
 		List<Term> terms;
+		List<String> lemmas;
+		List<int[]> candidates;
+		double[] similarities;
 		Term t1, t2;
-		int i, j;
 		int gatheredCnt = 0;
-		double dist = 0d;
-		for(String key:customIndex.keySet()) {
-			terms = customIndex.getTerms(key);
-			logger.trace("Graphical gathering over term class {} of size: {}", key, terms.size());
-			for(i=0; i<terms.size();i++) {
-				t1 = terms.get(i);
-				for(j=i+1; j<terms.size();j++) {
-					nbComparisons++;
-					t2 = terms.get(j);
-					dist = distance.computeNormalized(t1.getLemma(), t2.getLemma());
-					if(dist >= this.threshold) {
+		long verifiedCnt = 0;
+		try {
+			for(String key:customIndex.keySet()) {
+				terms = customIndex.getTerms(key);
+				logger.trace("Graphical gathering over term class {} of size: {}", key, terms.size());
+				lemmas = Lists.newArrayListWithCapacity(terms.size());
+				for(Term t:terms)
+					lemmas.add(t.getLemma());
+				candidates = join.getCandidatePairs(lemmas);
+				similarities = new double[candidates.size()];
+				VerificationTask task = new VerificationTask(lemmas, candidates, similarities, 0, candidates.size());
+				if(pool == null)
+					task.compute();
+				else
+					pool.invoke(task);
+				verifiedCnt += candidates.size();
+				for(int k=0; k<candidates.size(); k++) {
+					if(similarities[k] >= this.threshold) {
 						gatheredCnt++;
-						t1.addTermVariation(t2, VariationType.GRAPHICAL, dist);
+						t1 = terms.get(candidates.get(k)[0]);
+						t2 = terms.get(candidates.get(k)[1]);
+						t1.addTermVariation(t2, VariationType.GRAPHICAL, similarities[k]);
 						if(UIMAProfiler.isActivated())
 							UIMAProfiler.getProfiler("GraphicalGatherer").hit(
 									"graphical variants", 
 									String.format("%s || %s", t1.getGroupingKey(), t2.getGroupingKey()));
 					}
 				}
+				nbComparisons += IntMath.binomial(terms.size(), 2);
 			}
+		} finally {
+			if(pool != null)
+				pool.shutdown();
 		}
 		
 		// log some stats
-		logger.debug("Graphical gathering {} terms gathered / {} pairs compared", gatheredCnt, nbComparisons);
+		logger.debug("Graphical gathering {} terms gathered / {} pairs verified / {} pairs compared", gatheredCnt, verifiedCnt, nbComparisons);
 		
 		// free memory taken by the index
 		termIndex.dropCustomIndex(indexName);
 		
+		// compact the gathered variations
+		termIndex.getVariationGraph().freeze();
+		
 		progressLoggerTimer.cancel();
 		
 		UIMAProfiler.getProfiler("AnalysisEngine").stop(this, "process");
 	}
+
+	/*
+	 * Computes the similarities of a range of candidate pairs.
+	 */
+	@SuppressWarnings("serial")
+	private class VerificationTask extends RecursiveAction {
+		private static final int SEQUENTIAL_THRESHOLD = 256;
+
+		private List<String> lemmas;
+		private List<int[]> candidates;
+		private double[] similarities;
+		private int from;
+		private int to;
+
+		private VerificationTask(List<String> lemmas, List<int[]> candidates, double[] similarities, int from, int to) {
+			super();
+			this.lemmas = lemmas;
+			this.candidates = candidates;
+			this.similarities = similarities;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from <= SEQUENTIAL_THRESHOLD) {
+				int[] pair;
+				for(int k=from; k<to; k++) {
+					pair = candidates.get(k);
+					similarities[k] = distance.computeNormalized(lemmas.get(pair[0]), lemmas.get(pair[1]));
+				}
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(
+						new VerificationTask(lemmas, candidates, similarities, from, middle),
+						new VerificationTask(lemmas, candidates, similarities, middle, to));
+			}
+		}
+	}
 }
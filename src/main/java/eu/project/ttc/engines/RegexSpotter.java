@@ -36,6 +36,7 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Optional;
 
+import eu.project.ttc.models.Term;
 import eu.project.ttc.resources.OccurrenceFilter;
 import eu.project.ttc.resources.TermIndexResource;
 import eu.project.ttc.resources.TrueFilter;
@@ -43,8 +44,6 @@ import eu.project.ttc.types.TermOccAnnotation;
 import eu.project.ttc.types.WordAnnotation;
 import eu.project.ttc.utils.JCasUtils;
 import eu.project.ttc.utils.OccurrenceBuffer;
-import eu.project.ttc.utils.TermSuiteConstants;
-import eu.project.ttc.utils.TermSuiteUtils;
 import eu.project.ttc.utils.TermUtils;
 import fr.univnantes.lina.uima.tkregex.LabelledAnnotation;
 import fr.univnantes.lina.uima.tkregex.RegexOccurrence;
@@ -174,14 +173,9 @@ public class RegexSpotter extends TokenRegexAE {
 		
 		StringArray patternFeature = new StringArray(jCas, occurrence.size());
 		FSArray innerWords = new FSArray(jCas, occurrence.size());
-		StringBuilder termLemma = new StringBuilder();
 		int i = 0;
 		for (LabelledAnnotation la:occurrence.getLabelledAnnotations()) {
 			patternFeature.set(i, la.getLabel());
-			WordAnnotation word = (WordAnnotation) la.getAnnotation();
-			termLemma.append(word.getLemma());
-			if(i<occurrence.size()-1)
-				termLemma.append(TermSuiteConstants.WHITESPACE);
 			WordAnnotation wordAnno = (WordAnnotation) la.getAnnotation();
 			if(wordAnno.getRegexLabel() != null) {
 				if(!wordAnno.getRegexLabel().equals(la.getLabel())) {
@@ -196,13 +190,17 @@ public class RegexSpotter extends TokenRegexAE {
 		annotation.setWords(innerWords);
 		annotation.setPattern(patternFeature);
 		annotation.setSpottingRuleName(occurrence.getRule().getName());
-		annotation.setTermKey(TermSuiteUtils.getGroupingKey(annotation));
 
 		//		annotation.addToIndexes();
-		this.termIndexResource.getTermIndex().addTermOccurrence(
+		Term term = this.termIndexResource.getTermIndex().addTermOccurrence(
 				annotation, 
 				currentFileURI, 
 				keepOccurrencesInTermIndex);
+		
+		/*
+		 * The term index already resolved the grouping key, reuse it.
+		 */
+		annotation.setTermKey(term.getGroupingKey());
 		addedOccurrences++;
 	}
 	
@@ -18,34 +18,61 @@
  */
 package eu.project.ttc.engines;
 
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
 import org.apache.uima.fit.descriptor.ExternalResource;
 import org.apache.uima.jcas.JCas;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Function;
 import com.google.common.base.Joiner;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ComparisonChain;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
+import eu.project.ttc.engines.variant.TermPairKey;
 import eu.project.ttc.engines.variant.VariantRule;
+import eu.project.ttc.engines.variant.VariantRuleIndex;
+import eu.project.ttc.engines.variant.VariantRuleStats;
 import eu.project.ttc.models.Term;
 import eu.project.ttc.models.VariationType;
+import eu.project.ttc.models.index.ClassHashes;
 import eu.project.ttc.models.index.CustomIndexStats;
 import eu.project.ttc.models.index.CustomTermIndex;
+import eu.project.ttc.models.index.TermHashValueProvider;
 import eu.project.ttc.models.index.TermIndexes;
+import eu.project.ttc.models.index.TermValueProvider;
 import eu.project.ttc.models.index.TermValueProviders;
 import eu.project.ttc.resources.TermIndexResource;
 import eu.project.ttc.resources.YamlVariantRules;
+import eu.project.ttc.utils.LongHashSet;
 import fr.univnantes.lina.UIMAProfiler;
 
 public class SyntacticTermGatherer extends JCasAnnotator_ImplBase {
@@ -60,6 +87,24 @@ public class SyntacticTermGatherer extends JCasAnnotator_ImplBase {
 	@ExternalResource(key = YAML_VARIANT_RULES, mandatory = true)
 	private YamlVariantRules yamlVariantRules;
 
+	public static final String NB_THREADS = "NbThreads";
+	@ConfigurationParameter(name = NB_THREADS, mandatory = false, defaultValue = "1")
+	private int nbThreads;
+
+	public static final String RULE_STATS = "RuleStats";
+	@ConfigurationParameter(name = RULE_STATS, mandatory = false, defaultValue = "false")
+	private boolean ruleStats;
+
+	public static final String RULE_STATS_FILE = "RuleStatsFile";
+	@ConfigurationParameter(name = RULE_STATS_FILE, mandatory = false)
+	private String ruleStatsFile;
+
+	public static final String ADAPTIVE_RULE_ORDER = "AdaptiveRuleOrder";
+	@ConfigurationParameter(name = ADAPTIVE_RULE_ORDER, mandatory = false, defaultValue = "false")
+	private boolean adaptiveRuleOrder;
+
+	private static final String RULE_STATS_LINE_FORMAT = "%s\t%d\t%d\t%d\n";
+
 	@Override
 	public void collectionProcessComplete()
 			throws AnalysisEngineProcessException {
@@ -69,22 +114,124 @@ public class SyntacticTermGatherer extends JCasAnnotator_ImplBase {
 		for(VariantRule rule:this.yamlVariantRules.getVariantRules())
 			UIMAProfiler.getProfiler("Gathering stats").initHit(rule.getName());
 		
+		VariantRuleIndex ruleIndex = this.yamlVariantRules.getVariantRuleIndex();
+		boolean collectingStats = ruleStats || ruleStatsFile != null;
+		ruleIndex.setCollectingStats(collectingStats);
+		ruleIndex.setAdaptiveOrdering(adaptiveRuleOrder);
+		ruleIndex.getStats().clear();
+		
 		/*
 		 *  Do not deactivate gathering on key_lemma_lemma, otherwise we loose
 		 *  morphological gathering based on single-word (with [compound] tag in yaml).
 		 *  TODO : understanding why
 		 */
-		gather(TermIndexes.WORD_COUPLE_LEMMA_LEMMA);
-		gather(TermIndexes.WORD_COUPLE_LEMMA_STEM);
+		this.gatheringProviders = Lists.newArrayList();
+		for(String gatheringKey:GATHERING_KEYS) {
+			TermValueProvider provider = TermValueProviders.get(gatheringKey);
+			Preconditions.checkState(provider instanceof TermHashValueProvider, 
+					"Gathering key %s is not hashed", gatheringKey);
+			this.gatheringProviders.add((TermHashValueProvider) provider);
+		}
+		this.termClassHashes = new ConcurrentHashMap<>();
+		this.nbSkippedComparisons.set(0);
+		for(int i = 0; i < GATHERING_KEYS.size(); i++)
+			gather(i);
+		LOGGER.info("Number of comparisons skipped because compared in another class: {}", nbSkippedComparisons.get());
+		this.termClassHashes = null;
+		
+		if(collectingStats)
+			logRuleStats(ruleIndex.getStats());
+		if(ruleStatsFile != null)
+			writeRuleStats(ruleIndex.getStats());
+		
+		// the Groovy views are not needed anymore
+		this.yamlVariantRules.clearAdapterCache();
+		
+		// compact the gathered variations
+		this.termIndexResource.getTermIndex().getVariationGraph().freeze();
 		UIMAProfiler.getProfiler("AnalysisEngine").stop(this, "process");
 	}
 	
-	private int totalComparisons = 0;
-	private int nbComparisons = 0;
+	/*
+	 * Logs the rules by decreasing evaluation time
+	 */
+	private void logRuleStats(final VariantRuleStats stats) {
+		List<VariantRule> rules = Lists.newArrayList(stats.getRules());
+		Collections.sort(rules, new Comparator<VariantRule>() {
+			@Override
+			public int compare(VariantRule o1, VariantRule o2) {
+				return Long.compare(stats.getNanos(o2), stats.getNanos(o1));
+			}
+		});
+		for(VariantRule rule:rules) {
+			long tries = stats.getNbTries(rule);
+			LOGGER.info("[Rule stats] {}: tries: {}, matches: {} ({}%), time: {}ms ({}ns/try)", 
+					rule.getName(), 
+					tries, 
+					stats.getNbMatches(rule),
+					String.format("%.2f", tries == 0 ? 0f : ((float) stats.getNbMatches(rule) * 100) / tries),
+					TimeUnit.NANOSECONDS.toMillis(stats.getNanos(rule)),
+					tries == 0 ? 0 : stats.getNanos(rule) / tries);
+		}
+	}
 
-	private static final int WARNING_CRITICAL_SIZE = 2500;
+	/*
+	 * Exports rule stats to a TSV file, one line per rule in the rule list order.
+	 * Columns: rule name, tries, matches, evaluation time in nanoseconds
+	 */
+	private void writeRuleStats(VariantRuleStats stats) throws AnalysisEngineProcessException {
+		File file = new File(ruleStatsFile);
+		Writer writer = null;
+		try {
+			writer = new FileWriter(file);
+			for(VariantRule rule:stats.getRules())
+				writer.write(String.format(RULE_STATS_LINE_FORMAT, 
+						rule.getName(), 
+						stats.getNbTries(rule), 
+						stats.getNbMatches(rule), 
+						stats.getNanos(rule)));
+			LOGGER.info("Variant rule stats exported to file {}", file.getAbsolutePath());
+		} catch (IOException e) {
+			LOGGER.error("Could not write variant rule stats to file {}", ruleStatsFile);
+			throw new AnalysisEngineProcessException(e);
+		} finally {
+			IOUtils.closeQuietly(writer);
+		}
+	}
+	
+	private long totalComparisons = 0;
+	private AtomicLong nbComparisons = new AtomicLong();
+	private AtomicLong nbSkippedComparisons = new AtomicLong();
+	
+	/*
+	 * The gathering keys, in gathering order
+	 */
+	private static final List<String> GATHERING_KEYS = ImmutableList.of(
+			TermIndexes.WORD_COUPLE_LEMMA_LEMMA,
+			TermIndexes.WORD_COUPLE_LEMMA_STEM);
+	private List<TermHashValueProvider> gatheringProviders;
+	private int gatheringKeyIndex;
+	
+	/*
+	 * The sorted class hashes of each term for each gathering key, 
+	 * computed on first use during a run.
+	 */
+	private ConcurrentMap<Term, long[][]> termClassHashes;
+	
+	/*
+	 * Stored class hashes are never 0
+	 */
+	private static final long NO_CLASS = 0L;
+
+	/*
+	 * Classes bigger than this size are split into blocks (see ClassGathering), 
+	 * and blocks are split until they need no more comparisons than such a class.
+	 */
+	private static final int BLOCKING_THRESHOLD = 2500;
 	
-	private void gather(final String gatheringKey) {
+	private void gather(int keyIndex) {
+		this.gatheringKeyIndex = keyIndex;
+		final String gatheringKey = GATHERING_KEYS.get(keyIndex);
 		LOGGER.debug("Rule-based gathering over the pregathering key {}", gatheringKey);
 
 		// create the index
@@ -97,10 +244,10 @@ public class SyntacticTermGatherer extends JCasAnnotator_ImplBase {
 		LOGGER.debug("Cleaning singleton keys");
 		customIndex.cleanSingletonKeys();
 
-		// clean biggest classes
-		customIndex.cleanEntriesByMaxSize(WARNING_CRITICAL_SIZE);
-
-//		customIndex.dropBiggerEntries(WARNING_CRITICAL_SIZE, true);
+		/*
+		 * Biggest classes are not truncated anymore. They are split into 
+		 * blocks while gathering (see ClassGathering).
+		 */
 		
 		CustomIndexStats stats = new CustomIndexStats(customIndex);
 
@@ -119,8 +266,10 @@ public class SyntacticTermGatherer extends JCasAnnotator_ImplBase {
 			sw2.start();
 			LOGGER.trace("Number of classes of size " + i + ": " + size);
 			sw2.stop();
-			totalComparisons += size * i*(i-1);
 		}
+		totalComparisons = 0;
+		for (String cls : customIndex.keySet()) 
+			totalComparisons += countComparisons(cls, customIndex.getTerms(cls));
 		LOGGER.info("Number of term pairs to test: " + totalComparisons);
 		sw1.stop();
 		LOGGER.debug("Time to get the comparisons number: " + sw1.elapsed(TimeUnit.MILLISECONDS));
@@ -134,15 +283,81 @@ public class SyntacticTermGatherer extends JCasAnnotator_ImplBase {
 			public void run() {
 				SyntacticTermGatherer.LOGGER.info("progress for key {}: ({}%)",
 						gatheringKey,
-						String.format("%.2f", ((float)nbComparisons*100)/totalComparisons)
+						String.format("%.2f", ((float)nbComparisons.get()*100)/totalComparisons)
 						);
 			}
 		}, 5000l, 5000l);
 		
 		// Do the gathering in each class
-		nbComparisons = 0;
-		for (String cls : customIndex.keySet()) {
-			List<Term> list = customIndex.getTerms(cls);
+		nbComparisons.set(0);
+		if(nbThreads > 1)
+			gatherInParallel(customIndex);
+		else {
+			for (String cls : customIndex.keySet()) 
+				applyMatchingRules(gatherClass(cls, customIndex.getTerms(cls)));
+		}
+		
+		//finalize
+		this.termIndexResource.getTermIndex().dropCustomIndex(gatheringKey);
+		progressLoggerTimer.cancel();
+	}
+
+	/*
+	 * The number of classes submitted at once per thread in parallel mode
+	 */
+	private static final int CLASSES_PER_THREAD_AND_BATCH = 256;
+
+	/*
+	 * Classes are compared on a work-stealing pool by batches of consecutive 
+	 * classes, the biggest ones of a batch first. Matches are buffered per class 
+	 * and recorded at the end of each batch in the key set order, so the variations 
+	 * are the same as in sequential mode, and the number of pending tasks and 
+	 * buffered matches is bounded by the batch size.
+	 */
+	private void gatherInParallel(final CustomTermIndex customIndex) {
+		LOGGER.debug("Gathering classes with {} threads", nbThreads);
+		int batchSize = nbThreads * CLASSES_PER_THREAD_AND_BATCH;
+		ForkJoinPool pool = new ForkJoinPool(nbThreads);
+		try {
+			for(List<String> batch:Iterables.partition(customIndex.keySet(), batchSize)) {
+				final List<List<Term>> terms = Lists.newArrayListWithCapacity(batch.size());
+				for(String cls:batch)
+					terms.add(customIndex.getTerms(cls));
+				List<Integer> bySize = Lists.newArrayListWithCapacity(batch.size());
+				for(int i = 0; i < batch.size(); i++)
+					bySize.add(i);
+				Collections.sort(bySize, new Comparator<Integer>() {
+					@Override
+					public int compare(Integer o1, Integer o2) {
+						return Integer.compare(terms.get(o2).size(), terms.get(o1).size());
+					}
+				});
+				List<ForkJoinTask<List<RuleMatch>>> tasks = Lists.newArrayList(
+						Collections.<ForkJoinTask<List<RuleMatch>>>nCopies(batch.size(), null));
+				for(int i:bySize) {
+					final String cls = batch.get(i);
+					final List<Term> list = terms.get(i);
+					tasks.set(i, pool.submit(new Callable<List<RuleMatch>>() {
+						@Override
+						public List<RuleMatch> call() {
+							return gatherClass(cls, list);
+						}
+					}));
+				}
+				for(ForkJoinTask<List<RuleMatch>> task:tasks)
+					applyMatchingRules(task.join());
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/*
+	 * Compares all pairs of a class. Does not modify the terms, 
+	 * so classes can be compared concurrently.
+	 */
+	private List<RuleMatch> gatherClass(String cls, List<Term> list) {
+		if(list.size() > 1 && LOGGER.isTraceEnabled()) {
 			List<String> examples = Lists.newLinkedList();
 			int cnt =0;
 			for(Term t:list) {
@@ -151,34 +366,302 @@ public class SyntacticTermGatherer extends JCasAnnotator_ImplBase {
 				if(cnt > 5)
 					break;
 			}
-			if(list.size() > 1) {
-				LOGGER.trace("Rule-based gathering over the '" + cls + "' term class of size " + list.size() + ": " + Joiner.on(" ").join(examples));
-			}
+			LOGGER.trace("Rule-based gathering over the '" + cls + "' term class of size " + list.size() + ": " + Joiner.on(" ").join(examples));
+		}
 
+		List<RuleMatch> matches = Lists.newArrayList();
+		new ClassGathering(cls, matches).gather(list);
+		return matches;
+	}
+	
+	/*
+	 * The number of rule applications needed to gather a class
+	 */
+	private long countComparisons(String cls, List<Term> list) {
+		if(list.size() <= BLOCKING_THRESHOLD)
+			return (long) list.size() * (list.size() - 1);
+		ClassGathering counting = new ClassGathering(cls, null);
+		counting.gather(list);
+		return counting.nbPairs;
+	}
 
+	/*
+	 * The comparisons of a class.
+	 * 
+	 * A class bigger than BLOCKING_THRESHOLD is split into pattern blocks, 
+	 * since a rule can only match a pair of terms if their patterns are in 
+	 * its source and target patterns. Each pair of blocks accepted by some 
+	 * rule is compared in the directions the rules accept. A pair of blocks 
+	 * too big to be compared is split again by joining source and target 
+	 * terms on the join key of each candidate rule (see TermPairKey), i.e. 
+	 * the values the rule requires to be equal in both terms. No pair that 
+	 * could match is skipped up to this point.
+	 * 
+	 * A pair of blocks that cannot be joined (a candidate rule has no 
+	 * join key) or a join bucket that is still too big cannot be split 
+	 * any further, since the join key of a rule already holds all the 
+	 * equalities it requires and the pattern fixes the number of words. 
+	 * All its pairs are compared, by chunks of BLOCKING_THRESHOLD sources 
+	 * and BLOCKING_THRESHOLD targets, so that the terms compared together 
+	 * stay few.
+	 * 
+	 * When no match list is given, comparisons are only counted.
+	 */
+	private class ClassGathering {
+		private String cls;
+		private long classHash;
+		private List<RuleMatch> matches;
+		private long nbPairs = 0;
+		
+		private ClassGathering(String cls, List<RuleMatch> matches) {
+			this.cls = cls;
+			this.classHash = ClassHashes.fromKey(cls);
+			this.matches = matches;
+		}
+		
+		private void gather(List<Term> list) {
+			if(list.size() <= BLOCKING_THRESHOLD)
+				gatherPairs(list);
+			else
+				gatherBlocks(list);
+		}
+		
+		private void gatherPairs(List<Term> list) {
 			Term source;
 			Term target;
 			for(ListIterator<Term> sourceIt=list.listIterator(); sourceIt.hasNext();) {
 				source=sourceIt.next();
 				for(ListIterator<Term> targetIt=list.listIterator(sourceIt.nextIndex()); targetIt.hasNext();) {
-					nbComparisons+=2;
 					target=targetIt.next();
-					applyGatheringRules(source, target);
-					applyGatheringRules(target, source);
+					comparePair(source, target);
+				}
+			}
+		}
+	
+		private void gatherBlocks(List<Term> list) {
+			VariantRuleIndex ruleIndex = yamlVariantRules.getVariantRuleIndex();
+			Map<String, List<Term>> blocks = groupBy(list, PATTERN_KEY);
+			if(matches != null)
+				LOGGER.debug("Splitting class {} of size {} into {} pattern blocks", cls, list.size(), blocks.size());
+			List<String> patterns = Lists.newArrayList(blocks.keySet());
+			String p1;
+			String p2;
+			for(int i = 0; i < patterns.size(); i++) {
+				p1 = patterns.get(i);
+				List<Term> block = blocks.get(p1);
+				if(ruleIndex.hasCandidateRules(p1, p1)) {
+					if(block.size() <= BLOCKING_THRESHOLD)
+						gatherPairs(block);
+					else
+						gatherDirected(block, block, ruleIndex.getJoinKeys(p1, p1));
+				}
+				for(int j = i + 1; j < patterns.size(); j++) {
+					p2 = patterns.get(j);
+					if(ruleIndex.hasCandidateRules(p1, p2))
+						gatherDirected(block, blocks.get(p2), ruleIndex.getJoinKeys(p1, p2));
+					if(ruleIndex.hasCandidateRules(p2, p1))
+						gatherDirected(blocks.get(p2), block, ruleIndex.getJoinKeys(p2, p1));
 				}
-					
 			}
 		}
 		
-		//finalize
-		this.termIndexResource.getTermIndex().dropCustomIndex(gatheringKey);
-		progressLoggerTimer.cancel();
+		private void gatherDirected(List<Term> sources, List<Term> targets, Optional<List<TermPairKey>> keys) {
+			if(!isOversized(sources, targets))
+				compareAll(sources, targets, null);
+			else if(!keys.isPresent())
+				gatherChunked(sources, targets, null, "no join key");
+			else {
+				// pairs matching several rules may be found by several keys 
+				LongHashSet seen = keys.get().size() > 1 ? new LongHashSet() : null;
+				for(TermPairKey key:keys.get()) {
+					Map<String, List<Term>> targetBuckets = groupBy(targets, new TargetKey(key));
+					Map<String, List<Term>> sourceBuckets = groupBy(sources, new SourceKey(key));
+					for(Map.Entry<String, List<Term>> sourceBucket:sourceBuckets.entrySet()) {
+						List<Term> targetBucket = targetBuckets.get(sourceBucket.getKey());
+						if(targetBucket == null)
+							continue;
+						if(isOversized(sourceBucket.getValue(), targetBucket))
+							gatherChunked(sourceBucket.getValue(), targetBucket, seen, key.toString());
+						else
+							compareAll(sourceBucket.getValue(), targetBucket, seen);
+					}
+				}
+			}
+		}
+		
+		private void gatherChunked(List<Term> sources, List<Term> targets, LongHashSet seen, String reason) {
+			if(matches != null)
+				LOGGER.debug("Block of {}x{} terms of class {} ({}) cannot be split, comparing it by chunks", 
+						sources.size(), targets.size(), cls, reason);
+			for(List<Term> sourceChunk:Lists.partition(sources, BLOCKING_THRESHOLD))
+				for(List<Term> targetChunk:Lists.partition(targets, BLOCKING_THRESHOLD))
+					compareAll(sourceChunk, targetChunk, seen);
+		}
+		
+		private void compareAll(List<Term> sources, List<Term> targets, LongHashSet seen) {
+			for(Term source:sources) {
+				for(Term target:targets) {
+					if(source == target)
+						continue;
+					if(seen != null && !seen.add(((long) source.getId() << 32) | (target.getId() & 0xffffffffL)))
+						continue;
+					compareDirected(source, target);
+				}
+			}
+		}
+		
+		/*
+		 * Applies the rules in both directions, unless the pair is 
+		 * compared in another class (of this key or of a previous key).
+		 */
+		private void comparePair(Term t1, Term t2) {
+			nbPairs += 2;
+			if(matches == null)
+				return;
+			nbComparisons.addAndGet(2);
+			if(!isCanonicalClass(classHash, t1, t2)) {
+				nbSkippedComparisons.addAndGet(2);
+				return;
+			}
+			applyGatheringRules(t1, t2, matches);
+			applyGatheringRules(t2, t1, matches);
+		}
+		
+		private void compareDirected(Term source, Term target) {
+			nbPairs++;
+			if(matches == null)
+				return;
+			nbComparisons.incrementAndGet();
+			if(!isCanonicalClass(classHash, source, target)) {
+				nbSkippedComparisons.incrementAndGet();
+				return;
+			}
+			applyGatheringRules(source, target, matches);
+		}
+	}
+	
+	private static boolean isOversized(List<Term> sources, List<Term> targets) {
+		return (long) sources.size() * targets.size() > (long) BLOCKING_THRESHOLD * BLOCKING_THRESHOLD;
+	}
+	
+	/*
+	 * Groups terms by key in first occurrence order, 
+	 * ignoring terms having no key.
+	 */
+	private static Map<String, List<Term>> groupBy(List<Term> terms, Function<Term, String> keyFunction) {
+		Map<String, List<Term>> groups = Maps.newLinkedHashMap();
+		String key;
+		for(Term t:terms) {
+			key = keyFunction.apply(t);
+			if(key == null)
+				continue;
+			List<Term> group = groups.get(key);
+			if(group == null) {
+				group = Lists.newArrayList();
+				groups.put(key, group);
+			}
+			group.add(t);
+		}
+		return groups;
+	}
+	
+	private static final Function<Term, String> PATTERN_KEY = new Function<Term, String>() {
+		@Override
+		public String apply(Term input) {
+			return input.getPattern();
+		}
+	};
+	
+	private static class SourceKey implements Function<Term, String> {
+		private TermPairKey key;
+		
+		private SourceKey(TermPairKey key) {
+			this.key = key;
+		}
+
+		@Override
+		public String apply(Term input) {
+			return key.getSourceKey(input);
+		}
+	}
+
+	private static class TargetKey implements Function<Term, String> {
+		private TermPairKey key;
+		
+		private TargetKey(TermPairKey key) {
+			this.key = key;
+		}
+		
+		@Override
+		public String apply(Term input) {
+			return key.getTargetKey(input);
+		}
+	}
+
+	/*
+	 * A pair of terms sharing several classes is compared in one of them only: 
+	 * the class of the smallest hash they share for the first gathering key 
+	 * they share a class of. Rule matching does not depend on the class, and
+	 * a class compares all its pairs that could match, even when its blocks 
+	 * cannot be split (see ClassGathering), so no pair is compared twice, 
+	 * no pair is lost, and no memory is needed to know it.
+	 */
+	private boolean isCanonicalClass(long classHash, Term t1, Term t2) {
+		long[][] hashes1 = getClassHashes(t1);
+		long[][] hashes2 = getClassHashes(t2);
+		for(int k = 0; k < gatheringKeyIndex; k++)
+			if(getSmallestSharedHash(hashes1[k], hashes2[k]) != NO_CLASS)
+				return false;
+		return getSmallestSharedHash(hashes1[gatheringKeyIndex], hashes2[gatheringKeyIndex]) == classHash;
+	}
+	
+	private long[][] getClassHashes(Term term) {
+		long[][] hashes = termClassHashes.get(term);
+		if(hashes == null) {
+			hashes = new long[gatheringProviders.size()][];
+			for(int k = 0; k < hashes.length; k++)
+				hashes[k] = ClassHashes.getSortedHashes(gatheringProviders.get(k), term);
+			termClassHashes.put(term, hashes);
+		}
+		return hashes;
+	}
+
+	private static long getSmallestSharedHash(long[] sorted1, long[] sorted2) {
+		int i = 0;
+		int j = 0;
+		while(i < sorted1.length && j < sorted2.length) {
+			if(sorted1[i] == sorted2[j])
+				return sorted1[i];
+			else if(sorted1[i] < sorted2[j])
+				i++;
+			else
+				j++;
+		}
+		return NO_CLASS;
 	}
 
-	private void applyGatheringRules(Term source, Term target) {
+	private void applyGatheringRules(Term source, Term target, List<RuleMatch> matches) {
 		VariantRule matchingRule = yamlVariantRules.getMatchingRule(source,target);
 		if (matchingRule != null) {
-			applyMatchingRule(matchingRule, source, target);
+			matches.add(new RuleMatch(matchingRule, source, target));
+		}
+	}
+	
+	private void applyMatchingRules(List<RuleMatch> matches) {
+		for(RuleMatch m:matches)
+			applyMatchingRule(m.rule, m.source, m.target);
+	}
+	
+	private static class RuleMatch {
+		private VariantRule rule;
+		private Term source;
+		private Term target;
+
+		private RuleMatch(VariantRule rule, Term source, Term target) {
+			super();
+			this.rule = rule;
+			this.source = source;
+			this.target = target;
 		}
 	}
 
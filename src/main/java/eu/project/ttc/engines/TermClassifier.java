@@ -24,6 +24,7 @@ package eu.project.ttc.engines;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.uima.UimaContext;
@@ -37,13 +38,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 import eu.project.ttc.engines.cleaner.TermProperty;
 import eu.project.ttc.models.Term;
 import eu.project.ttc.models.TermClass;
 import eu.project.ttc.models.TermIndex;
-import eu.project.ttc.models.VariationPath;
+import eu.project.ttc.models.TermVariation;
 import eu.project.ttc.resources.TermIndexResource;
 import fr.univnantes.lina.UIMAProfiler;
 
@@ -55,6 +57,10 @@ import fr.univnantes.lina.UIMAProfiler;
  * (syntactic, semantic and graphical) of a term are gathered in one 
  * {@link TermClass} object. The unique representative
  * 
+ * By default, term classes are the connected components of the variation 
+ * graph. When {@link #MAX_VARIATION_DEPTH} is set, each class is made of 
+ * the variants reachable from its head in at most this number of variations.
+ * 
  * @see TermClass
  * @see Term#getVariants(int, Comparator)
  * @author Damien Cram
@@ -68,6 +74,13 @@ public class TermClassifier  extends JCasAnnotator_ImplBase {
 	private String classifyingPropertyString;
 	private TermProperty classifyingProperty;
 	
+	/*
+	 * 0 for the connected components of the whole variation graph
+	 */
+	public static final String MAX_VARIATION_DEPTH = "MaxVariationDepth";
+	@ConfigurationParameter(name=MAX_VARIATION_DEPTH, mandatory=false, defaultValue="0")
+	private int maxVariationDepth;
+
 	@ExternalResource(key = TermIndexResource.TERM_INDEX, mandatory = true)
 	private TermIndexResource termIndexResource;
 	
@@ -96,30 +109,103 @@ public class TermClassifier  extends JCasAnnotator_ImplBase {
 		
 		List<Term> terms = Lists.newArrayList(termIndex.getTerms());
 		Collections.sort(terms, classifyingProperty.getComparator(true));
-		Set<Term> added = Sets.newHashSetWithExpectedSize(terms.size());
+		if(maxVariationDepth > 0)
+			classifyByDepth(termIndex, terms);
+		else
+			classifyByComponent(termIndex, terms);
+		
+		LOGGER.info("Number of term classes: {} (nbTerms: {})",
+				termIndex.getTermClasses().size(),
+				termIndex.getTerms().size());
+		UIMAProfiler.getProfiler("AnalysisEngine").stop(this, "process");
+	}
+
+	/*
+	 * Term classes are the connected components of the variation graph, 
+	 * computed with a union-find over all variations. The head of a class 
+	 * is its first term in the classifying order.
+	 */
+	private void classifyByComponent(TermIndex termIndex, List<Term> terms) {
+		Map<Term, Integer> indexes = Maps.newHashMapWithExpectedSize(terms.size());
+		for(int i = 0; i < terms.size(); i++)
+			indexes.put(terms.get(i), i);
 		
+		// the parent of each term, roots being the smallest index of their component
+		int[] parents = new int[terms.size()];
+		for(int i = 0; i < parents.length; i++)
+			parents[i] = i;
+		Integer variantIndex;
+		for(int i = 0; i < terms.size(); i++) {
+			for(TermVariation tv:terms.get(i).getVariations()) {
+				variantIndex = indexes.get(tv.getVariant());
+				if(variantIndex == null)
+					continue;
+				int root1 = find(parents, i);
+				int root2 = find(parents, variantIndex);
+				if(root1 < root2)
+					parents[root2] = root1;
+				else if(root2 < root1)
+					parents[root1] = root2;
+			}
+		}
+		
+		Map<Integer, Set<Term>> classes = Maps.newLinkedHashMap();
+		for(int i = 0; i < terms.size(); i++) {
+			int root = find(parents, i);
+			Set<Term> classTerms = classes.get(root);
+			if(classTerms == null) {
+				classTerms = Sets.newHashSet();
+				classes.put(root, classTerms);
+			}
+			classTerms.add(terms.get(i));
+		}
+		for(Map.Entry<Integer, Set<Term>> e:classes.entrySet())
+			termIndex.classifyTerms(terms.get(e.getKey()), e.getValue());
+	}
+
+	private static int find(int[] parents, int i) {
+		while(parents[i] != i) {
+			// path halving
+			parents[i] = parents[parents[i]];
+			i = parents[i];
+		}
+		return i;
+	}
+
+	/*
+	 * Each term not classified yet becomes the head of a class made
+	 * of the variants reachable from it in at most maxVariationDepth 
+	 * variations.
+	 */
+	private void classifyByDepth(TermIndex termIndex, List<Term> terms) {
+		Set<Term> added = Sets.newHashSetWithExpectedSize(terms.size());
 		for(Term t:terms) {
 			if(added.contains(t))
 				continue;
-			else {
-				Set<Term> classTerms = Sets.newHashSet();
-				classTerms.add(t);
-				for(VariationPath path:t.getVariationPaths(10)) {
-					if(added.contains(path.getVariant()))
-						continue;
-					else {
-						added.add(path.getVariant());
-						classTerms.add(path.getVariant());
+			added.add(t);
+			Set<Term> classTerms = Sets.newHashSet();
+			classTerms.add(t);
+			
+			// breadth-first search, visiting classified terms without adding them
+			Set<Term> visited = Sets.newHashSet();
+			visited.add(t);
+			List<Term> level = Lists.newArrayList();
+			level.add(t);
+			List<Term> nextLevel;
+			for(int depth = 0; depth < maxVariationDepth && !level.isEmpty(); depth++) {
+				nextLevel = Lists.newArrayList();
+				for(Term current:level) {
+					for(TermVariation tv:current.getVariations()) {
+						if(visited.add(tv.getVariant())) {
+							nextLevel.add(tv.getVariant());
+							if(added.add(tv.getVariant()))
+								classTerms.add(tv.getVariant());
+						}
 					}
 				}
-				termIndex.classifyTerms(t, classTerms);
-
+				level = nextLevel;
 			}
+			termIndex.classifyTerms(t, classTerms);
 		}
-		
-		LOGGER.info("Number of term classes: {} (nbTerms: {})",
-				termIndex.getTermClasses().size(),
-				termIndex.getTerms().size());
-		UIMAProfiler.getProfiler("AnalysisEngine").stop(this, "process");
 	}
 }
@@ -84,10 +84,9 @@ public class TermIndexBlacklistWordFilterAE extends JCasAnnotator_ImplBase{
 		
 		logger.debug("Removing {} terms", toRem.size());
 		String remTermMsg = "Removing term {}";
-		for(Term t:toRem) {
+		for(Term t:toRem)
 			logger.trace(remTermMsg, t);
-			this.termIndexResource.getTermIndex().removeTerm(t);
-		}
+		this.termIndexResource.getTermIndex().removeTerms(toRem);
 		
 		UIMAProfiler.getProfiler("AnalysisEngine").stop(this, "process");
 	};
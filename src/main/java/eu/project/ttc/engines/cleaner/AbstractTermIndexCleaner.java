@@ -145,8 +145,7 @@ public abstract class AbstractTermIndexCleaner extends JCasAnnotator_ImplBase {
 		}
 		
 		// effectively remove terms
-		for(Term r:rem) 
-			this.termIndexResource.getTermIndex().removeTerm(r);
+		this.termIndexResource.getTermIndex().removeTerms(rem);
 		
 		termIndexResource.getTermIndex().cleanOrphanWords();
 	}
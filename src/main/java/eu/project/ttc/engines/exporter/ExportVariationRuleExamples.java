@@ -37,8 +37,8 @@ import com.google.common.collect.Multimap;
 
 import eu.project.ttc.engines.AbstractTermIndexExporter;
 import eu.project.ttc.engines.variant.VariantRule;
+import eu.project.ttc.models.AbstractTermOccurrence;
 import eu.project.ttc.models.Term;
-import eu.project.ttc.models.TermOccurrence;
 import eu.project.ttc.models.TermVariation;
 import eu.project.ttc.models.VariationType;
 import eu.project.ttc.resources.YamlVariantRules;
@@ -123,7 +123,7 @@ public class ExportVariationRuleExamples extends AbstractTermIndexExporter {
 				int nbStrictOccs = 0;
 				List<String> lines = Lists.newArrayList();
 				for(TermPair pair:sortedPairs) {
-					List<TermOccurrence> targetStrictOccurrences = Lists.newLinkedList(pair.target.getOccurrences());
+					List<AbstractTermOccurrence> targetStrictOccurrences = Lists.newLinkedList(pair.target.getOccurrences());
 					TermOccurrenceUtils.removeOverlaps(pair.source.getOccurrences(), targetStrictOccurrences);
 					nbOverlappingOccs += pair.target.getFrequency();
 					nbStrictOccs += targetStrictOccurrences.size();
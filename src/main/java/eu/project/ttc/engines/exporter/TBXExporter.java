@@ -56,10 +56,10 @@ import com.google.common.cache.LoadingCache;
 import com.google.common.collect.Lists;
 
 import eu.project.ttc.engines.AbstractTermIndexExporter;
+import eu.project.ttc.models.AbstractTermOccurrence;
 import eu.project.ttc.models.CompoundType;
 import eu.project.ttc.models.Term;
 import eu.project.ttc.models.TermIndex;
-import eu.project.ttc.models.TermOccurrence;
 import eu.project.ttc.models.TermVariation;
 import eu.project.ttc.utils.TermSuiteUtils;
 
@@ -193,12 +193,12 @@ public class TBXExporter extends AbstractTermIndexExporter {
 		transformer.transform(source, result);
 	}
     
-    private LoadingCache<Term, Collection<TermOccurrence>> allOccurrencesCaches = CacheBuilder.newBuilder()
+    private LoadingCache<Term, Collection<AbstractTermOccurrence>> allOccurrencesCaches = CacheBuilder.newBuilder()
 			.maximumSize(100)
 			.build(
-	           new CacheLoader<Term, Collection<TermOccurrence>>() {
+	           new CacheLoader<Term, Collection<AbstractTermOccurrence>>() {
 	        	   @Override
-	        	public Collection<TermOccurrence> load(Term term) throws Exception {
+	        	public Collection<AbstractTermOccurrence> load(Term term) throws Exception {
 	        		return term.getOccurrences();
 	        	}
            });
@@ -209,9 +209,9 @@ public class TBXExporter extends AbstractTermIndexExporter {
 	           new CacheLoader<Term, LinkedHashMap<String, Integer>>() {
 	        	   @Override
 	        	public LinkedHashMap<String, Integer> load(Term term) throws Exception {
-	        		   Collection<TermOccurrence> allOccurrences = allOccurrencesCaches.getUnchecked(term);
+	        		   Collection<AbstractTermOccurrence> allOccurrences = allOccurrencesCaches.getUnchecked(term);
 	        		   List<String> forms = Lists.newArrayListWithCapacity(allOccurrences.size());
-	        		   for(TermOccurrence o:allOccurrences)
+	        		   for(AbstractTermOccurrence o:allOccurrences)
 	        			   forms.add(TermSuiteUtils.trimInside(o.getCoveredText()));
 	        		   return TermSuiteUtils.getCounters(forms);
 	        	}
@@ -247,7 +247,7 @@ public class TBXExporter extends AbstractTermIndexExporter {
 			this.addTermVariant(langSet, String.format("langset-%d", variation.getVariant().getId()),
 					variation.getVariant().getGroupingKey());
 		}
-		Collection<TermOccurrence> allOccurrences = allOccurrencesCaches.getUnchecked(term);
+		Collection<AbstractTermOccurrence> allOccurrences = allOccurrencesCaches.getUnchecked(term);
 		this.addDescrip(langSet, langSet, "nbOccurrences", allOccurrences.size());
 
 		Element tig = document.createElement("tig");
@@ -35,9 +35,9 @@ import org.slf4j.LoggerFactory;
 import com.google.common.collect.Lists;
 
 import eu.project.ttc.engines.AbstractTermIndexExporter;
+import eu.project.ttc.models.AbstractTermOccurrence;
 import eu.project.ttc.models.Term;
 import eu.project.ttc.models.TermIndex;
-import eu.project.ttc.models.TermOccurrence;
 import eu.project.ttc.models.TermVariation;
 import eu.project.ttc.models.VariationType;
 
@@ -68,10 +68,10 @@ public class VariantEvalExporter extends AbstractTermIndexExporter {
 	private int nbVariantsPerTerm;
 
 	private void printTermOccurrences(Term term) throws IOException {
-		List<TermOccurrence> occurrences = Lists.newArrayList(term.getOccurrences());
+		List<AbstractTermOccurrence> occurrences = Lists.newArrayList(term.getOccurrences());
 		Collections.shuffle(occurrences);
 		int occCnt = 0;
-		for(TermOccurrence occurrence:occurrences) {
+		for(AbstractTermOccurrence occurrence:occurrences) {
 			if(occCnt > this.nbExampleOccurrences)
 				break;
 			printOccurrence(occurrence);
@@ -79,7 +79,7 @@ public class VariantEvalExporter extends AbstractTermIndexExporter {
 		}
 	}
 
-	private void printOccurrence(TermOccurrence occurrence) throws IOException {
+	private void printOccurrence(AbstractTermOccurrence occurrence) throws IOException {
 		writer.write("#\t\t  ...");
 		String textualContext = occurrence.getTextualContext(contextSize);
 		writer.write(textualContext);
@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright 2015 - CNRS (Centre National de Recherche Scientifique)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ *******************************************************************************/
+package eu.project.ttc.engines.variant;
+
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+
+import eu.project.ttc.models.Term;
+
+/**
+ * 
+ * The candidate rules of a cell of a {@link VariantRuleIndex}, 
+ * i.e. the rules accepting the same patterns and compound options.
+ * 
+ * In adaptive mode, the first {@link #sampleSize} pairs of terms are 
+ * evaluated against all rules in order to measure the cost and the 
+ * match rate of each expression. The rules are then evaluated by 
+ * increasing cost per match, except that a rule is always evaluated 
+ * after the rules before it in the rule list, unless their compiled 
+ * expressions are provably mutually exclusive (see 
+ * {@link TermPairPredicate#excludes(TermPairPredicate)}). The first 
+ * matching rule is thus always the one of the rule list order.
+ * 
+ * @author Damien Cram
+ *
+ */
+class CandidateRules {
+	
+	private List<VariantRule> rules;
+	private int[] ids;
+	
+	/*
+	 * The evaluation order, as indexes in rules. Null until 
+	 * the sample is complete.
+	 */
+	private volatile int[] order;
+	
+	private int sampleSize;
+	private int nbSamples = 0;
+	private long[] sampleNanos;
+	private int[] sampleMatches;
+	
+	/*
+	 * exclusive[i][k]: rules i < k cannot match the same pair
+	 */
+	private boolean[][] exclusive;
+	
+	CandidateRules(List<VariantRule> rules, VariantRuleStats stats) {
+		this.rules = ImmutableList.copyOf(rules);
+		this.ids = new int[rules.size()];
+		for(int k = 0; k < ids.length; k++)
+			ids[k] = stats.getId(rules.get(k));
+		this.exclusive = new boolean[ids.length][ids.length];
+		for(int k = 0; k < ids.length; k++)
+			for(int i = 0; i < k; i++)
+				exclusive[i][k] = rules.get(i).excludes(rules.get(k));
+	}
+	
+	List<VariantRule> getRules() {
+		return rules;
+	}
+	
+	/*
+	 * Starts a new sample. 
+	 */
+	synchronized void setAdaptive(int sampleSize) {
+		int n = rules.size();
+		this.sampleSize = sampleSize;
+		this.nbSamples = 0;
+		this.sampleNanos = new long[n];
+		this.sampleMatches = new int[n];
+		this.order = n <= 1 || sampleSize <= 0 ? getDeclaredOrder() : null;
+	}
+
+	private int[] getDeclaredOrder() {
+		int[] declared = new int[rules.size()];
+		for(int k = 0; k < declared.length; k++)
+			declared[k] = k;
+		return declared;
+	}
+	
+	List<VariantRule> getEvaluationOrder() {
+		int[] order = this.order;
+		if(order == null)
+			return rules;
+		ImmutableList.Builder<VariantRule> builder = ImmutableList.builder();
+		for(int k:order)
+			builder.add(rules.get(k));
+		return builder.build();
+	}
+
+	VariantRule getMatchingRule(Term source, Term target, VariantRuleStats stats) {
+		for(int k = 0; k < ids.length; k++)
+			if(evaluate(k, source, target, stats))
+				return rules.get(k);
+		return null;
+	}
+
+	VariantRule getAdaptiveMatchingRule(Term source, Term target, VariantRuleStats stats) {
+		int[] order = this.order;
+		if(order == null)
+			return sample(source, target, stats);
+		for(int k:order)
+			if(evaluate(k, source, target, stats))
+				return rules.get(k);
+		return null;
+	}
+	
+	private boolean evaluate(int k, Term source, Term target, VariantRuleStats stats) {
+		if(stats == null)
+			return rules.get(k).matchExpression(source, target);
+		long start = System.nanoTime();
+		boolean matched = rules.get(k).matchExpression(source, target);
+		stats.record(ids[k], matched, System.nanoTime() - start);
+		return matched;
+	}
+	
+	private VariantRule sample(Term source, Term target, VariantRuleStats stats) {
+		int n = rules.size();
+		long[] nanos = new long[n];
+		boolean[] matched = new boolean[n];
+		VariantRule matchingRule = null;
+		for(int k = 0; k < n; k++) {
+			long start = System.nanoTime();
+			matched[k] = rules.get(k).matchExpression(source, target);
+			nanos[k] = System.nanoTime() - start;
+			if(stats != null)
+				stats.record(ids[k], matched[k], nanos[k]);
+			if(matched[k] && matchingRule == null)
+				matchingRule = rules.get(k);
+		}
+		synchronized(this) {
+			if(this.order == null) {
+				for(int k = 0; k < n; k++) {
+					sampleNanos[k] += nanos[k];
+					if(matched[k])
+						sampleMatches[k]++;
+				}
+				nbSamples++;
+				if(nbSamples >= sampleSize)
+					this.order = computeOrder();
+			}
+		}
+		return matchingRule;
+	}
+
+	/*
+	 * Greedily picks the lowest cost per match among the rules 
+	 * whose non-exclusive preceding rules are already placed. Rules 
+	 * that never matched come last, ties are broken by the rule list order.
+	 */
+	private int[] computeOrder() {
+		int n = rules.size();
+		double[] costPerMatch = new double[n];
+		for(int k = 0; k < n; k++)
+			costPerMatch[k] = sampleMatches[k] == 0 ? 
+					Double.POSITIVE_INFINITY : 
+					(double) sampleNanos[k] / sampleMatches[k];
+		int[] order = new int[n];
+		boolean[] placed = new boolean[n];
+		for(int i = 0; i < n; i++) {
+			int best = -1;
+			for(int k = 0; k < n; k++) {
+				if(placed[k] || !isPlaceable(k, placed))
+					continue;
+				if(best == -1 || costPerMatch[k] < costPerMatch[best])
+					best = k;
+			}
+			order[i] = best;
+			placed[best] = true;
+		}
+		return order;
+	}
+
+	private boolean isPlaceable(int k, boolean[] placed) {
+		for(int i = 0; i < k; i++)
+			if(!exclusive[i][k] && !placed[i])
+				return false;
+		return true;
+	}
+}
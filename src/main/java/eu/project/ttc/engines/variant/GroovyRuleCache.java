@@ -0,0 +1,305 @@
+/*******************************************************************************
+ * Copyright 2015 - CNRS (Centre National de Recherche Scientifique)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ *******************************************************************************/
+package eu.project.ttc.engines.variant;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.tools.GroovyClass;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.GroovySystem;
+import groovy.lang.Script;
+
+/**
+ * 
+ * An on-disk cache of the classes compiled by Groovy for {@link VariantRule}s.
+ * 
+ * The bytecode of a rule script is stored in a file named after a hash of 
+ * the Groovy version, the rule name and the script text, so that the 
+ * next JVMs loading the same rule define its classes from the cached bytes 
+ * instead of compiling the script again.
+ * 
+ * Since cached bytes are loaded as code, the cache is disabled unless the 
+ * system property {@link #CACHE_DIR_PROPERTY} gives its directory. This 
+ * directory is created readable by its owner only, and the cache is not 
+ * used if the directory is not owned by the current user or is writable 
+ * by others. Cache files must be owned by the current user, not writable by 
+ * others, and their content must match the digest they store, otherwise 
+ * the rule is compiled again.
+ * 
+ * @author Damien Cram
+ *
+ */
+public class GroovyRuleCache {
+	private static final Logger LOGGER = LoggerFactory.getLogger(GroovyRuleCache.class);
+	
+	public static final String CACHE_DIR_PROPERTY = "termsuite.groovy.cache.dir";
+	private static final String FILE_EXTENSION = ".classes";
+	private static final int MAGIC = 0x7e4d6c02;
+
+	private static final Set<PosixFilePermission> OWNER_ONLY_DIR = PosixFilePermissions.fromString("rwx------");
+	private static final Set<PosixFilePermission> WRITABLE_BY_OTHERS = EnumSet.of(
+			PosixFilePermission.GROUP_WRITE, 
+			PosixFilePermission.OTHERS_WRITE);
+
+	private static GroovyRuleCache defaultCache;
+	
+	/**
+	 * The cache configured by {@link #CACHE_DIR_PROPERTY}, disabled 
+	 * if this property is not set.
+	 * 
+	 * @return
+	 */
+	public static synchronized GroovyRuleCache getDefault() {
+		if(defaultCache == null) {
+			String dir = System.getProperty(CACHE_DIR_PROPERTY);
+			defaultCache = new GroovyRuleCache(Strings.isNullOrEmpty(dir) ? 
+					Optional.<File>absent() 
+						: Optional.of(new File(dir)));
+		}
+		return defaultCache;
+	}
+
+	private Optional<File> directory;
+	private GroovyClassLoader classLoader;
+	
+	/*
+	 * Null until the directory has been checked
+	 */
+	private Boolean trustedDirectory = null;
+	
+	public GroovyRuleCache(Optional<File> directory) {
+		super();
+		this.directory = directory;
+		this.classLoader = new GroovyClassLoader(GroovyRuleCache.class.getClassLoader());
+	}
+
+	/**
+	 * Gives the script class of a rule, from the cache if present, 
+	 * by compiling it otherwise.
+	 * 
+	 * @param name
+	 * 			the rule name, used as script file name
+	 * @param script
+	 * 			the Groovy script of the rule
+	 * @return
+	 * 			the script class
+	 */
+	public Class<?> getScriptClass(String name, String script) {
+		if(!isTrustedDirectory())
+			return classLoader.parseClass(script, name);
+		
+		File file = new File(directory.get(), getKey(name, script) + FILE_EXTENSION);
+		if(file.exists()) {
+			try {
+				checkTrusted(file.toPath(), false);
+				return define(read(file));
+			} catch(IOException | LinkageError e) {
+				LOGGER.warn("Could not load cached classes of variant rule {} from {}: {}", name, file, e.getMessage());
+			}
+		}
+		List<GroovyClass> classes = compile(name, script);
+		try {
+			write(file, classes);
+		} catch(IOException e) {
+			LOGGER.warn("Could not cache classes of variant rule {} in {}: {}", name, file, e.getMessage());
+		}
+		return define(classes);
+	}
+	
+	private synchronized boolean isTrustedDirectory() {
+		if(trustedDirectory == null) {
+			trustedDirectory = false;
+			if(directory.isPresent()) {
+				Path dir = directory.get().toPath();
+				try {
+					if(!Files.exists(dir, LinkOption.NOFOLLOW_LINKS)) {
+						Files.createDirectories(dir);
+						if(isPosix(dir))
+							Files.setPosixFilePermissions(dir, OWNER_ONLY_DIR);
+					}
+					if(!Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS))
+						throw new IOException("Not a directory");
+					checkTrusted(dir, true);
+					trustedDirectory = true;
+				} catch(IOException e) {
+					LOGGER.warn("Groovy rule cache disabled, directory {} cannot be used: {}", dir, e.getMessage());
+				}
+			}
+		}
+		return trustedDirectory;
+	}
+
+	private static boolean isPosix(Path path) {
+		return Files.getFileAttributeView(path, PosixFileAttributeView.class, LinkOption.NOFOLLOW_LINKS) != null;
+	}
+	
+	/*
+	 * The path must be owned by the current user and not be writable by 
+	 * others. Symbolic links are not followed.
+	 */
+	private static void checkTrusted(Path path, boolean directory) throws IOException {
+		if(Files.isSymbolicLink(path))
+			throw new IOException("Symbolic link " + path);
+		if(!directory && !Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS))
+			throw new IOException("Not a regular file " + path);
+		UserPrincipal owner = Files.getOwner(path, LinkOption.NOFOLLOW_LINKS);
+		UserPrincipal user = path.getFileSystem().getUserPrincipalLookupService()
+				.lookupPrincipalByName(System.getProperty("user.name"));
+		if(!owner.equals(user))
+			throw new IOException(String.format("%s is owned by %s, not by %s", path, owner.getName(), user.getName()));
+		if(isPosix(path)) {
+			Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(path, LinkOption.NOFOLLOW_LINKS);
+			permissions.retainAll(WRITABLE_BY_OTHERS);
+			if(!permissions.isEmpty())
+				throw new IOException(String.format("%s is writable by others: %s", path, permissions));
+		}
+	}
+	
+	/*
+	 * Compilation depends on the Groovy version, the script and its 
+	 * file name (which gives the class name)
+	 */
+	private static String getKey(String name, String script) {
+		return Hashing.sha1().newHasher()
+				.putString(GroovySystem.getVersion(), Charsets.UTF_8)
+				.putChar('\n')
+				.putString(name, Charsets.UTF_8)
+				.putChar('\n')
+				.putString(script, Charsets.UTF_8)
+				.hash()
+				.toString();
+	}
+	
+	private static byte[] getDigest(List<GroovyClass> classes) {
+		Hasher hasher = Hashing.sha256().newHasher();
+		for(GroovyClass c:classes) {
+			hasher.putString(c.getName(), Charsets.UTF_8);
+			hasher.putInt(c.getBytes().length);
+			hasher.putBytes(c.getBytes());
+		}
+		return hasher.hash().asBytes();
+	}
+	
+	@SuppressWarnings("unchecked")
+	private List<GroovyClass> compile(String name, String script) {
+		CompilationUnit unit = new CompilationUnit(classLoader);
+		unit.addSource(name, script);
+		unit.compile(Phases.CLASS_GENERATION);
+		return unit.getClasses();
+	}
+	
+	/*
+	 * Defines the classes of a rule in their own loader, so that 
+	 * rules sharing a name do not clash.
+	 */
+	private Class<?> define(List<GroovyClass> classes) {
+		GroovyClassLoader.InnerLoader loader = new GroovyClassLoader.InnerLoader(classLoader);
+		Class<?> scriptClass = null;
+		for(GroovyClass c:classes) {
+			Class<?> cls = loader.defineClass(c.getName(), c.getBytes());
+			if(Script.class.isAssignableFrom(cls))
+				scriptClass = cls;
+		}
+		if(scriptClass == null)
+			throw new IllegalStateException("No script class in " + classes);
+		return scriptClass;
+	}
+
+	private static List<GroovyClass> read(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath(), LinkOption.NOFOLLOW_LINKS)))) {
+			if(in.readInt() != MAGIC)
+				throw new IOException("Not a cache file");
+			byte[] digest = new byte[in.readInt()];
+			in.readFully(digest);
+			int nbClasses = in.readInt();
+			List<GroovyClass> classes = Lists.newArrayListWithCapacity(nbClasses);
+			for(int i = 0; i < nbClasses; i++) {
+				String className = in.readUTF();
+				byte[] bytes = new byte[in.readInt()];
+				in.readFully(bytes);
+				classes.add(new GroovyClass(className, bytes));
+			}
+			if(!Arrays.equals(digest, getDigest(classes)))
+				throw new IOException("Digest mismatch");
+			return classes;
+		}
+	}
+
+	/*
+	 * Writes to an owner-only temporary file first, so that concurrent JVMs
+	 * never read a partial file.
+	 */
+	private static void write(File file, List<GroovyClass> classes) throws IOException {
+		Path tmp = Files.createTempFile(file.getParentFile().toPath(), file.getName(), ".tmp");
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+				out.writeInt(MAGIC);
+				byte[] digest = getDigest(classes);
+				out.writeInt(digest.length);
+				out.write(digest);
+				out.writeInt(classes.size());
+				for(GroovyClass c:classes) {
+					out.writeUTF(c.getName());
+					out.writeInt(c.getBytes().length);
+					out.write(c.getBytes());
+				}
+			}
+			try {
+				Files.move(tmp, file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			} catch(AtomicMoveNotSupportedException e) {
+				Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+}
@@ -0,0 +1,714 @@
+/*******************************************************************************
+ * Copyright 2015 - CNRS (Centre National de Recherche Scientifique)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ *******************************************************************************/
+package eu.project.ttc.engines.variant;
+
+import java.util.List;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import eu.project.ttc.models.Component;
+import eu.project.ttc.models.CompoundType;
+import eu.project.ttc.models.Term;
+import eu.project.ttc.models.TermWord;
+
+/**
+ * 
+ * Compiles the Groovy expressions of variant rules to native {@link TermPairPredicate}s.
+ * 
+ * The supported subset of Groovy is the one used by variant rules:
+ * <ul>
+ * <li><code>s</code> and <code>t</code>, optionally indexed by a word 
+ * index (<code>s[0]</code>) and a component index (<code>s[0][1]</code>),</li>
+ * <li>the properties of {@link eu.project.ttc.models.GroovyTerm}, 
+ * {@link eu.project.ttc.models.GroovyWord} and 
+ * {@link eu.project.ttc.models.GroovyComponent},</li>
+ * <li>string literals, <code>true</code>, <code>false</code> and <code>null</code>,</li>
+ * <li><code>==</code>, <code>!=</code>, <code>!</code>, <code>&amp;&amp;</code>,  
+ * <code>||</code> and parentheses.</li>
+ * </ul>
+ * 
+ * Equality follows Groovy's <code>==</code> on the Groovy views, so that a compiled 
+ * expression always evaluates to the same value as the Groovy one.
+ * 
+ * The equalities between a source value and a target value that must hold 
+ * for an expression to be true are exposed as a {@link TermPairKey}. The 
+ * (in)equalities with literals and between values that must hold for an 
+ * expression to be true tell if two expressions are mutually exclusive 
+ * (see {@link TermPairPredicate#excludes(TermPairPredicate)}).
+ * 
+ * @author Damien Cram
+ *
+ */
+final class RuleExpressionCompiler {
+	
+	private static enum Property {
+		NEOCLASSICAL("neoclassical"), 
+		COMPOUND("compound"), 
+		IS_SINGLE_WORD("isSingleWord"), 
+		PATTERN("pattern"), 
+		LEMMA("lemma"), 
+		STEM("stem"), 
+		SYNTACTIC_LABEL("syntacticLabel");
+		
+		private String name;
+		
+		private Property(String name) {
+			this.name = name;
+		}
+		
+		private static Property forName(String name) {
+			for(Property p:values())
+				if(p.name.equals(name))
+					return p;
+			return null;
+		}
+	}
+	
+	private static final ImmutableSet<Property> TERM_PROPERTIES = Sets.immutableEnumSet(
+			Property.NEOCLASSICAL, Property.COMPOUND, Property.IS_SINGLE_WORD, Property.PATTERN, Property.LEMMA, Property.STEM);
+	private static final ImmutableSet<Property> WORD_PROPERTIES = Sets.immutableEnumSet(
+			Property.NEOCLASSICAL, Property.COMPOUND, Property.LEMMA, Property.STEM, Property.SYNTACTIC_LABEL);
+	private static final ImmutableSet<Property> COMPONENT_PROPERTIES = Sets.immutableEnumSet(
+			Property.LEMMA);
+	private static final ImmutableSet<Property> BOOLEAN_PROPERTIES = Sets.immutableEnumSet(
+			Property.NEOCLASSICAL, Property.COMPOUND, Property.IS_SINGLE_WORD);
+	
+	private RuleExpressionCompiler() {}
+
+	/**
+	 * Compiles a variant rule expression.
+	 * 
+	 * @param expression
+	 * 			the Groovy expression of the rule
+	 * @return
+	 * 			the compiled predicate, absent if the expression is 
+	 * 			not in the supported subset
+	 */
+	static Optional<TermPairPredicate> compile(String expression) {
+		List<String> tokens = tokenize(expression);
+		if(tokens == null || tokens.isEmpty())
+			return Optional.absent();
+		Parser parser = new Parser(tokens);
+		final Node node = parser.parseOr();
+		if(node == null || !parser.isDone() || node.type != Type.BOOLEAN)
+			return Optional.absent();
+		return Optional.<TermPairPredicate>of(new CompiledPredicate(node));
+	}
+	
+	private static class CompiledPredicate implements TermPairPredicate {
+		private Node node;
+		private Optional<TermPairKey> joinKey;
+		private List<Constraint> constraints = Lists.newArrayList();
+		
+		private CompiledPredicate(Node node) {
+			this.node = node;
+			List<Accessor> sources = Lists.newArrayList();
+			List<Accessor> targets = Lists.newArrayList();
+			node.collectJoinKeys(sources, targets);
+			this.joinKey = sources.isEmpty() ? 
+					Optional.<TermPairKey>absent() : Optional.of(new TermPairKey(sources, targets));
+			node.collectConstraints(constraints);
+		}
+
+		@Override
+		public boolean match(Term source, Term target) {
+			return (Boolean) node.eval(source, target);
+		}
+		
+		@Override
+		public Optional<TermPairKey> getJoinKey() {
+			return joinKey;
+		}
+		
+		@Override
+		public boolean excludes(TermPairPredicate other) {
+			if(!(other instanceof CompiledPredicate))
+				return false;
+			for(Constraint c1:constraints)
+				for(Constraint c2:((CompiledPredicate) other).constraints)
+					if(c1.contradicts(c2))
+						return true;
+			return false;
+		}
+		
+		@Override
+		public String toString() {
+			return node.toString();
+		}
+	}
+	
+	/*
+	 * A value that must be equal, or not equal, to a literal or to 
+	 * another value for an expression to be true.
+	 */
+	private static class Constraint {
+		private String value;
+		private boolean literal;
+		private Object other;
+		private boolean equal;
+		
+		private Constraint(String value, boolean literal, Object other, boolean equal) {
+			this.value = value;
+			this.literal = literal;
+			this.other = other;
+			this.equal = equal;
+		}
+		
+		/*
+		 * Both constraints cannot hold together: a value cannot be both equal and 
+		 * not equal to the same thing, nor equal to two different literals.
+		 */
+		private boolean contradicts(Constraint c) {
+			if(!value.equals(c.value) || literal != c.literal)
+				return false;
+			if(equal != c.equal)
+				return Objects.equal(other, c.other);
+			else
+				return equal && literal && !Objects.equal(other, c.other);
+		}
+	}
+	
+	/*
+	 * Splits an expression into tokens. String literals are kept with a 
+	 * leading quote. Returns null on any unsupported character.
+	 */
+	private static List<String> tokenize(String expression) {
+		List<String> tokens = Lists.newArrayList();
+		int i = 0;
+		char c;
+		while(i < expression.length()) {
+			c = expression.charAt(i);
+			if(Character.isWhitespace(c)) {
+				i++;
+			} else if(Character.isJavaIdentifierStart(c)) {
+				int start = i;
+				while(i < expression.length() && Character.isJavaIdentifierPart(expression.charAt(i)))
+					i++;
+				tokens.add(expression.substring(start, i));
+			} else if(Character.isDigit(c)) {
+				int start = i;
+				while(i < expression.length() && Character.isDigit(expression.charAt(i)))
+					i++;
+				tokens.add(expression.substring(start, i));
+			} else if(c == '"' || c == '\'') {
+				StringBuilder sb = new StringBuilder().append('"');
+				i++;
+				while(true) {
+					if(i >= expression.length())
+						return null;
+					char d = expression.charAt(i++);
+					if(d == c)
+						break;
+					else if(d == '\\') {
+						if(i >= expression.length())
+							return null;
+						d = expression.charAt(i++);
+						if(d != '\\' && d != '"' && d != '\'')
+							return null;
+					} else if(d == '$' || d == '\n') 
+						// GStrings and multi-line strings
+						return null;
+					sb.append(d);
+				}
+				tokens.add(sb.toString());
+			} else if(expression.startsWith("==", i) || expression.startsWith("!=", i) 
+					|| expression.startsWith("&&", i) || expression.startsWith("||", i)) {
+				if(expression.startsWith("===", i) || expression.startsWith("!==", i))
+					return null;
+				tokens.add(expression.substring(i, i + 2));
+				i += 2;
+			} else if("!()[].".indexOf(c) != -1) {
+				tokens.add(Character.toString(c));
+				i++;
+			} else
+				return null;
+		}
+		return tokens;
+	}
+	
+	private static enum Type {BOOLEAN, STRING, NULL, TERM, WORD, COMPONENT}
+	
+	/*
+	 * A recursive descent parser. Each parse method returns null
+	 * if the expression is not supported.
+	 */
+	private static class Parser {
+		private List<String> tokens;
+		private int pos = 0;
+		
+		private Parser(List<String> tokens) {
+			this.tokens = tokens;
+		}
+		
+		private boolean isDone() {
+			return pos == tokens.size();
+		}
+
+		private String peek() {
+			return pos < tokens.size() ? tokens.get(pos) : null;
+		}
+		
+		private boolean accept(String token) {
+			if(token.equals(peek())) {
+				pos++;
+				return true;
+			}
+			return false;
+		}
+		
+		private Node parseOr() {
+			Node left = parseAnd();
+			while(left != null && accept("||")) {
+				Node right = parseAnd();
+				if(right == null || left.type != Type.BOOLEAN || right.type != Type.BOOLEAN)
+					return null;
+				left = new Or(left, right);
+			}
+			return left;
+		}
+
+		private Node parseAnd() {
+			Node left = parseComparison();
+			while(left != null && accept("&&")) {
+				Node right = parseComparison();
+				if(right == null || left.type != Type.BOOLEAN || right.type != Type.BOOLEAN)
+					return null;
+				left = new And(left, right);
+			}
+			return left;
+		}
+
+		private Node parseComparison() {
+			Node left = parseUnary();
+			if(left == null)
+				return null;
+			boolean negated;
+			if(accept("=="))
+				negated = false;
+			else if(accept("!="))
+				negated = true;
+			else
+				return left;
+			Node right = parseUnary();
+			if(right == null || "==".equals(peek()) || "!=".equals(peek()))
+				return null;
+			return new Equals(left, right, negated);
+		}
+
+		private Node parseUnary() {
+			if(accept("!")) {
+				Node operand = parseUnary();
+				if(operand == null || operand.type != Type.BOOLEAN)
+					return null;
+				return new Not(operand);
+			} else
+				return parseAtom();
+		}
+
+		private Node parseAtom() {
+			String token = peek();
+			if(token == null)
+				return null;
+			pos++;
+			if(token.equals("(")) {
+				Node node = parseOr();
+				return node != null && accept(")") ? node : null;
+			} else if(token.startsWith("\"")) 
+				return new Literal(token.substring(1), Type.STRING);
+			else if(token.equals("true")) 
+				return new Literal(Boolean.TRUE, Type.BOOLEAN);
+			else if(token.equals("false")) 
+				return new Literal(Boolean.FALSE, Type.BOOLEAN);
+			else if(token.equals("null")) 
+				return new Literal(null, Type.NULL);
+			else if(token.equals("s") || token.equals("t")) 
+				return parseAccessor(token.equals("s"));
+			else
+				return null;
+		}
+		
+		private Node parseAccessor(boolean source) {
+			int wordIndex = -1;
+			int componentIndex = -1;
+			if(accept("[")) {
+				wordIndex = parseIndex();
+				if(wordIndex == -1)
+					return null;
+				if(accept("[")) {
+					componentIndex = parseIndex();
+					if(componentIndex == -1)
+						return null;
+				}
+			}
+			Property property = null;
+			if(accept(".")) {
+				property = Property.forName(peek());
+				pos++;
+				ImmutableSet<Property> properties = wordIndex == -1 ? TERM_PROPERTIES :
+					componentIndex == -1 ? WORD_PROPERTIES : COMPONENT_PROPERTIES;
+				if(!properties.contains(property))
+					return null;
+			}
+			if("[".equals(peek()) || ".".equals(peek()) || "(".equals(peek()))
+				return null;
+			return new Accessor(source, wordIndex, componentIndex, property);
+		}
+		
+		private int parseIndex() {
+			String token = peek();
+			pos++;
+			if(token == null || !Character.isDigit(token.charAt(0)) || token.length() > 6 
+					|| (token.length() > 1 && token.charAt(0) == '0') || !accept("]"))
+				return -1;
+			return Integer.parseInt(token);
+		}
+	}
+	
+	private static abstract class Node {
+		final Type type;
+		
+		private Node(Type type) {
+			this.type = type;
+		}
+		
+		abstract Object eval(Term s, Term t);
+		
+		/*
+		 * Adds the source and target values of the equalities 
+		 * that must hold for this node to be true.
+		 */
+		void collectJoinKeys(List<Accessor> sources, List<Accessor> targets) {
+		}
+		
+		/*
+		 * Adds constraints that must hold for this node to be true.
+		 */
+		void collectConstraints(List<Constraint> constraints) {
+		}
+	}
+	
+	private static class Literal extends Node {
+		private Object value;
+
+		private Literal(Object value, Type type) {
+			super(type);
+			this.value = value;
+		}
+
+		@Override
+		Object eval(Term s, Term t) {
+			return value;
+		}
+		
+		@Override
+		public String toString() {
+			return value instanceof String ? "\"" + value + "\"" : String.valueOf(value);
+		}
+	}
+
+	private static class Accessor extends Node implements TermPairKey.KeyExtractor {
+		private boolean source;
+		private int wordIndex;
+		private int componentIndex;
+		private Property property;
+
+		private Accessor(boolean source, int wordIndex, int componentIndex, Property property) {
+			super(property == null ? 
+					(wordIndex == -1 ? Type.TERM : componentIndex == -1 ? Type.WORD : Type.COMPONENT) :
+						BOOLEAN_PROPERTIES.contains(property) ? Type.BOOLEAN : Type.STRING);
+			this.source = source;
+			this.wordIndex = wordIndex;
+			this.componentIndex = componentIndex;
+			this.property = property;
+		}
+
+		@Override
+		Object eval(Term s, Term t) {
+			return evalOn(source ? s : t);
+		}
+		
+		@Override
+		void collectConstraints(List<Constraint> constraints) {
+			if(type == Type.BOOLEAN)
+				constraints.add(new Constraint(toString(), true, Boolean.TRUE, true));
+		}
+		
+		private Object evalOn(Term term) {
+			if(wordIndex == -1)
+				return property == null ? term : getTermProperty(term);
+			TermWord word = term.getWords().get(wordIndex);
+			if(componentIndex == -1)
+				return property == null ? word : getWordProperty(word);
+			Component component = word.getWord().getComponents().get(componentIndex);
+			return property == null ? component : component.getLemma();
+		}
+		
+		/*
+		 * Whether the equality of this value with another one implies the 
+		 * equality of their keys (see #areEqual): strings, and words, 
+		 * whose keys are their lemmas.
+		 */
+		private boolean isJoinable() {
+			return componentIndex == -1 && (type == Type.STRING || type == Type.WORD);
+		}
+		
+		@Override
+		public String getKey(Term term) {
+			Object value;
+			try {
+				value = evalOn(term);
+			} catch(IndexOutOfBoundsException e) {
+				// the expression fails on this term
+				return null;
+			}
+			if(value instanceof TermWord)
+				value = ((TermWord) value).getWord().getLemma();
+			return value == null ? TermPairKey.NULL_KEY : (String) value;
+		}
+
+		private Object getTermProperty(Term term) {
+			switch(property) {
+			case NEOCLASSICAL: 
+				return term.isCompound() && term.firstWord().getWord().getCompoundType() == CompoundType.NEOCLASSICAL;
+			case COMPOUND: 
+				return term.isCompound();
+			case IS_SINGLE_WORD: 
+				return term.isSingleWord();
+			case PATTERN: 
+				return term.getPattern();
+			case LEMMA: 
+				return term.getGroupingKey();
+			default: 
+				return term.firstWord().getWord().getStem();
+			}
+		}
+
+		private Object getWordProperty(TermWord word) {
+			switch(property) {
+			case NEOCLASSICAL: 
+				return word.getWord().isCompound() && word.getWord().getCompoundType() == CompoundType.NEOCLASSICAL;
+			case COMPOUND: 
+				return word.getWord().isCompound();
+			case LEMMA: 
+				return word.getWord().getLemma();
+			case STEM: 
+				return word.getWord().getStem();
+			default: 
+				return word.getSyntacticLabel();
+			}
+		}
+		
+		@Override
+		public String toString() {
+			return (source ? "s" : "t") 
+					+ (wordIndex == -1 ? "" : "[" + wordIndex + "]")
+					+ (componentIndex == -1 ? "" : "[" + componentIndex + "]")
+					+ (property == null ? "" : "." + property.name);
+		}
+	}
+	
+	private static class Equals extends Node {
+		private Node left;
+		private Node right;
+		private boolean negated;
+
+		private Equals(Node left, Node right, boolean negated) {
+			super(Type.BOOLEAN);
+			this.left = left;
+			this.right = right;
+			this.negated = negated;
+		}
+
+		@Override
+		Object eval(Term s, Term t) {
+			return areEqual(left.eval(s, t), right.eval(s, t)) != negated;
+		}
+		
+		@Override
+		void collectJoinKeys(List<Accessor> sources, List<Accessor> targets) {
+			if(negated || !(left instanceof Accessor) || !(right instanceof Accessor))
+				return;
+			Accessor l = (Accessor) left;
+			Accessor r = (Accessor) right;
+			if(l.source == r.source || !l.isJoinable() || !r.isJoinable())
+				return;
+			sources.add(l.source ? l : r);
+			targets.add(l.source ? r : l);
+		}
+		
+		@Override
+		void collectConstraints(List<Constraint> constraints) {
+			Constraint constraint = getConstraint(negated);
+			if(constraint != null)
+				constraints.add(constraint);
+		}
+		
+		/*
+		 * Equality with a literal is symmetric for strings and booleans only 
+		 * (see #areEqual), so a literal on the left is only considered for them.
+		 */
+		private Constraint getConstraint(boolean negated) {
+			if(left instanceof Accessor && right instanceof Accessor)
+				return new Constraint(left.toString(), false, right.toString(), !negated);
+			else if(left instanceof Accessor && right instanceof Literal)
+				return new Constraint(left.toString(), true, ((Literal) right).value, !negated);
+			else if(left instanceof Literal && right instanceof Accessor 
+					&& (right.type == Type.STRING || right.type == Type.BOOLEAN || left.type == Type.NULL))
+				return new Constraint(right.toString(), true, ((Literal) left).value, !negated);
+			else
+				return null;
+		}
+
+		@Override
+		public String toString() {
+			return left + (negated ? " != " : " == ") + right;
+		}
+	}
+	
+	/*
+	 * Groovy's == on the Groovy views of the values.
+	 * 
+	 * Equal words and components share the same cached Groovy view. Other
+	 * views compare their lemmas. Strings and booleans are equal to 
+	 * values of the same class only.
+	 */
+	private static boolean areEqual(Object left, Object right) {
+		if(left == right)
+			return true;
+		if(left == null || right == null)
+			return false;
+		if(left instanceof TermWord) {
+			if(right instanceof TermWord && left.equals(right))
+				return true;
+			return ((TermWord) left).getWord().getLemma().equals(getLemma(right));
+		} else if(left instanceof Component) {
+			if(right instanceof Component && left.equals(right))
+				return true;
+			if(!((Component) left).isLemmaSet())
+				return false;
+			return ((Component) left).getLemma().equals(getLemma(right));
+		} else if(left instanceof Term) {
+			return left.equals(right);
+		} else 
+			return left.getClass() == right.getClass() && left.equals(right);
+	}
+	
+	private static String getLemma(Object value) {
+		if(value instanceof TermWord)
+			return ((TermWord) value).getWord().getLemma();
+		else if(value instanceof Component)
+			return ((Component) value).getLemma();
+		else if(value instanceof String)
+			return (String) value;
+		else
+			return null;
+	}
+	
+	private static class Not extends Node {
+		private Node operand;
+
+		private Not(Node operand) {
+			super(Type.BOOLEAN);
+			this.operand = operand;
+		}
+
+		@Override
+		Object eval(Term s, Term t) {
+			return !(Boolean) operand.eval(s, t);
+		}
+		
+		@Override
+		void collectConstraints(List<Constraint> constraints) {
+			if(operand instanceof Accessor)
+				constraints.add(new Constraint(operand.toString(), true, Boolean.TRUE, false));
+			else if(operand instanceof Equals) {
+				Equals equals = (Equals) operand;
+				Constraint constraint = equals.getConstraint(!equals.negated);
+				if(constraint != null)
+					constraints.add(constraint);
+			}
+		}
+		
+		@Override
+		public String toString() {
+			return "!" + operand;
+		}
+	}
+
+	private static class And extends Node {
+		private Node left;
+		private Node right;
+
+		private And(Node left, Node right) {
+			super(Type.BOOLEAN);
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		Object eval(Term s, Term t) {
+			return (Boolean) left.eval(s, t) && (Boolean) right.eval(s, t);
+		}
+		
+		@Override
+		void collectJoinKeys(List<Accessor> sources, List<Accessor> targets) {
+			left.collectJoinKeys(sources, targets);
+			right.collectJoinKeys(sources, targets);
+		}
+		
+		@Override
+		void collectConstraints(List<Constraint> constraints) {
+			left.collectConstraints(constraints);
+			right.collectConstraints(constraints);
+		}
+		
+		@Override
+		public String toString() {
+			return "(" + left + " && " + right + ")";
+		}
+	}
+
+	private static class Or extends Node {
+		private Node left;
+		private Node right;
+
+		private Or(Node left, Node right) {
+			super(Type.BOOLEAN);
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		Object eval(Term s, Term t) {
+			return (Boolean) left.eval(s, t) || (Boolean) right.eval(s, t);
+		}
+		
+		@Override
+		public String toString() {
+			return "(" + left + " || " + right + ")";
+		}
+	}
+}
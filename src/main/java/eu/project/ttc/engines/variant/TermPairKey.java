@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright 2015 - CNRS (Centre National de Recherche Scientifique)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ *******************************************************************************/
+package eu.project.ttc.engines.variant;
+
+import java.util.List;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import eu.project.ttc.models.Term;
+
+/**
+ * 
+ * Values of the source term and values of the target term that are 
+ * equal whenever a variant rule matches a pair of terms, e.g. 
+ * <code>(s[0].lemma, s[2])</code> and <code>(t[0].lemma, t[1])</code> 
+ * for a rule requiring <code>s[0].lemma == t[0].lemma && s[2] == t[1]</code>.
+ * 
+ * The pairs of terms that may match such a rule can be found by joining 
+ * source and target terms on their keys, instead of comparing all pairs.
+ * 
+ * @see VariantRuleIndex#getJoinKeys(String, String)
+ * @author Damien Cram
+ *
+ */
+public final class TermPairKey {
+	
+	/*
+	 * The key of null values
+	 */
+	static final String NULL_KEY = "\u0000";
+	
+	/*
+	 * Separates the values of a key
+	 */
+	private static final char SEPARATOR = '\u0001';
+	
+	interface KeyExtractor {
+		/*
+		 * The key of a term, null if the value does not exist
+		 */
+		String getKey(Term term);
+	}
+	
+	private List<KeyExtractor> sources;
+	private List<KeyExtractor> targets;
+	private String description;
+	
+	TermPairKey(List<? extends KeyExtractor> sources, List<? extends KeyExtractor> targets) {
+		super();
+		this.sources = ImmutableList.copyOf(sources);
+		this.targets = ImmutableList.copyOf(targets);
+		this.description = Joiner.on(" && ").join(getEqualities());
+	}
+	
+	private List<String> getEqualities() {
+		List<String> equalities = Lists.newArrayListWithCapacity(sources.size());
+		for(int i = 0; i < sources.size(); i++)
+			equalities.add(sources.get(i) + " == " + targets.get(i));
+		return equalities;
+	}
+
+	/**
+	 * @param source
+	 * @return
+	 * 			the key of <code>source</code> as source term, <code>null</code> if 
+	 * 			no pair having <code>source</code> as source term can match
+	 */
+	public String getSourceKey(Term source) {
+		return getKey(sources, source);
+	}
+
+	/**
+	 * @param target
+	 * @return
+	 * 			the key of <code>target</code> as target term, <code>null</code> if 
+	 * 			no pair having <code>target</code> as target term can match
+	 */
+	public String getTargetKey(Term target) {
+		return getKey(targets, target);
+	}
+	
+	private static String getKey(List<KeyExtractor> extractors, Term term) {
+		if(extractors.size() == 1)
+			return extractors.get(0).getKey(term);
+		StringBuilder key = new StringBuilder();
+		String value;
+		for(KeyExtractor extractor:extractors) {
+			value = extractor.getKey(term);
+			if(value == null)
+				return null;
+			key.append(value).append(SEPARATOR);
+		}
+		return key.toString();
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof TermPairKey && ((TermPairKey) obj).description.equals(description);
+	}
+	
+	@Override
+	public int hashCode() {
+		return description.hashCode();
+	}
+	
+	@Override
+	public String toString() {
+		return description;
+	}
+}
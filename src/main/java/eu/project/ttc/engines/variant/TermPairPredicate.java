@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright 2015 - CNRS (Centre National de Recherche Scientifique)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ *******************************************************************************/
+package eu.project.ttc.engines.variant;
+
+import com.google.common.base.Optional;
+
+import eu.project.ttc.models.Term;
+
+/**
+ * 
+ * A native implementation of a variant rule expression.
+ * 
+ * @see RuleExpressionCompiler
+ * @author Damien Cram
+ *
+ */
+interface TermPairPredicate {
+	
+	/**
+	 * Evaluates the expression on a pair of terms.
+	 * 
+	 * @param source
+	 * 			the term bound to <code>s</code>
+	 * @param target
+	 * 			the term bound to <code>t</code>
+	 * @return
+	 * 			the value of the expression
+	 * @throws IndexOutOfBoundsException
+	 * 			if the expression accesses a word or a component that does not exist
+	 */
+	public boolean match(Term source, Term target);
+	
+	/**
+	 * @return
+	 * 			the key of source and target terms that are equal 
+	 * 			whenever the expression is true, absent if the
+	 * 			expression requires no such equality
+	 */
+	public Optional<TermPairKey> getJoinKey();
+	
+	/**
+	 * Tells if this expression and another one are provably mutually 
+	 * exclusive, i.e. if no pair of terms can make both true.
+	 * 
+	 * @param other
+	 * @return
+	 * 			<code>true</code> if both expressions cannot be true together,
+	 * 			<code>false</code> if they may be
+	 */
+	public boolean excludes(TermPairPredicate other);
+}
@@ -27,13 +27,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Objects;
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 
 import eu.project.ttc.models.GroovyAdapter;
 import eu.project.ttc.models.GroovyTerm;
 import eu.project.ttc.models.Term;
-import groovy.lang.GroovyClassLoader;
 import groovy.lang.GroovyObject;
 
 /**
@@ -54,6 +54,7 @@ public class VariantRule {
 	private List<String> sourcePatterns = Lists.newArrayList();
 	private List<String> targetPatterns = Lists.newArrayList();
 	private GroovyObject groovyRule;
+	private Optional<TermPairPredicate> compiledRule = Optional.absent();
 	private GroovyAdapter groovyAdapter;
 	
 	public VariantRule(String name) {
@@ -67,24 +68,20 @@ public class VariantRule {
 	
 	void setGroovyRule(String groovyExpression) {
 		this.expression = groovyExpression;
+		this.compiledRule = RuleExpressionCompiler.compile(groovyExpression);
+		if(this.compiledRule.isPresent())
+			// no need for groovy
+			return;
+		LOGGER.debug("Could not compile the expression of variant rule {}, using groovy: {}", this.name, groovyExpression);
 		try {
 			String script = String.format("def Boolean %s(s, t) { %s }", GROOVY_MATCH_METHOD_NAME, groovyExpression);
-			Class<?> groovyClass = getGroovyClassLoader().parseClass(script, name);
+			Class<?> groovyClass = GroovyRuleCache.getDefault().getScriptClass(name, script);
 			this.groovyRule = (GroovyObject) groovyClass.newInstance();
 		} catch (InstantiationException | IllegalAccessException e) {
 			throw new IllegalStateException("Could not load groovy expression as groovy object: " + groovyExpression, e);
 		}
 	}
 	
-	private static GroovyClassLoader groovyClassLoader;
-	private static GroovyClassLoader getGroovyClassLoader() {
-		if(groovyClassLoader == null) {
-			ClassLoader classLoader = VariantRule.class.getClassLoader();
-			groovyClassLoader = new GroovyClassLoader(classLoader);
-		}
-		return groovyClassLoader;
-	}
-
 	void setSourceCompound(boolean sourceCompound) {
 		this.sourceCompound = sourceCompound;
 	}
@@ -103,6 +100,8 @@ public class VariantRule {
 
 	public boolean matchExpression(Term source, Term target) {
 		try {
+			if(compiledRule.isPresent())
+				return compiledRule.get().match(source, target);
 			GroovyTerm s = groovyAdapter.asGroovyTerm(source);
 			GroovyTerm t = groovyAdapter.asGroovyTerm(target);
 			return (boolean) this.groovyRule.invokeMethod(
@@ -151,6 +150,35 @@ public class VariantRule {
 		return expression;
 	}
 	
+	/**
+	 * 
+	 * @return
+	 * 			<code>true</code> if the expression of this rule is evaluated
+	 * 			natively, <code>false</code> if it is evaluated by Groovy.
+	 */
+	public boolean isCompiled() {
+		return compiledRule.isPresent();
+	}
+	
+	/*
+	 * Whether no pair of terms can match both this rule and the other one, 
+	 * as far as their compiled expressions tell.
+	 */
+	boolean excludes(VariantRule other) {
+		return compiledRule.isPresent() 
+				&& other.compiledRule.isPresent() 
+				&& compiledRule.get().excludes(other.compiledRule.get());
+	}
+	
+	/*
+	 * The key of source and target terms that are equal whenever 
+	 * this rule matches, absent if the expression is not compiled.
+	 */
+	Optional<TermPairKey> getJoinKey() {
+		return compiledRule.isPresent() ? 
+				compiledRule.get().getJoinKey() : Optional.<TermPairKey>absent();
+	}
+	
 	@Override
 	public int hashCode() {
 		return this.name.hashCode();
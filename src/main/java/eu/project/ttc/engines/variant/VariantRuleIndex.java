@@ -0,0 +1,259 @@
+/*******************************************************************************
+ * Copyright 2015 - CNRS (Centre National de Recherche Scientifique)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ *******************************************************************************/
+package eu.project.ttc.engines.variant;
+
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.collect.Table;
+
+import eu.project.ttc.models.Term;
+
+/**
+ * 
+ * A dispatch table of variant rules.
+ * 
+ * For each (source pattern, target pattern, source compound flag, target compound flag),
+ * the table gives the rules that accept such a pair of terms, in the order of the rule 
+ * list, so that only the expressions of these rules need to be evaluated.
+ * 
+ * Evaluations can be counted and timed per rule (see {@link #setCollectingStats(boolean)}),
+ * and the rules of each cell can be reordered at runtime so that the cheapest and 
+ * most selective expressions are evaluated first (see {@link #setAdaptiveOrdering(boolean)}).
+ * 
+ * @author Damien Cram
+ *
+ */
+public class VariantRuleIndex {
+	
+	/**
+	 * The number of pairs of terms evaluated against all the candidate 
+	 * rules of a cell before they are reordered in adaptive mode.
+	 */
+	public static final int ADAPTIVE_SAMPLE_SIZE = 1000;
+	
+	/*
+	 * (source pattern, target pattern) -> candidate rules of each compound flag combination
+	 */
+	private Table<String, String, List<CandidateRules>> candidates = HashBasedTable.create();
+	
+	private VariantRuleStats stats;
+	private boolean collectingStats = false;
+	private boolean adaptiveOrdering = false;
+	
+	public VariantRuleIndex(List<VariantRule> variantRules) {
+		this.stats = new VariantRuleStats(variantRules);
+		Table<String, String, List<List<VariantRule>>> candidates = HashBasedTable.create();
+		for(VariantRule rule:variantRules) {
+			for(String sourcePattern:rule.getSourcePatterns()) {
+				for(String targetPattern:rule.getTargetPatterns()) {
+					List<List<VariantRule>> lists = candidates.get(sourcePattern, targetPattern);
+					if(lists == null) {
+						lists = ImmutableList.<List<VariantRule>>of(
+								Lists.<VariantRule>newArrayList(), 
+								Lists.<VariantRule>newArrayList(), 
+								Lists.<VariantRule>newArrayList(), 
+								Lists.<VariantRule>newArrayList());
+						candidates.put(sourcePattern, targetPattern, lists);
+					}
+					for(int flags = 0; flags < 4; flags++) {
+						if(rule.isSourceCompound() && !isSourceCompound(flags))
+							continue;
+						if(rule.isTargetCompound() && !isTargetCompound(flags))
+							continue;
+						List<VariantRule> list = lists.get(flags);
+						// a pattern may be listed twice in a rule
+						if(list.isEmpty() || list.get(list.size() - 1) != rule)
+							list.add(rule);
+					}
+				}
+			}
+		}
+		for(Table.Cell<String, String, List<List<VariantRule>>> cell:candidates.cellSet()) {
+			ImmutableList.Builder<CandidateRules> frozen = ImmutableList.builder();
+			for(List<VariantRule> list:cell.getValue())
+				frozen.add(new CandidateRules(list, stats));
+			this.candidates.put(cell.getRowKey(), cell.getColumnKey(), frozen.build());
+		}
+	}
+	
+	/**
+	 * Enables or disables the per-rule evaluation counters and timers.
+	 * 
+	 * Must not be called while rules are evaluated.
+	 * 
+	 * @see #getStats()
+	 * @param collectingStats
+	 */
+	public void setCollectingStats(boolean collectingStats) {
+		this.collectingStats = collectingStats;
+	}
+	
+	/**
+	 * Enables or disables the runtime reordering of the candidate rules.
+	 * 
+	 * When enabled, the first {@link #ADAPTIVE_SAMPLE_SIZE} pairs of terms 
+	 * of each cell are evaluated against all its candidate rules. The rules 
+	 * are then evaluated by increasing evaluation time per match, except that 
+	 * a rule always stays after the rules before it in the rule list, since the 
+	 * first rule of the list has precedence, unless both rules have compiled 
+	 * expressions that provably cannot match the same pair (e.g. 
+	 * <code>s[0].lemma == "a"</code> and <code>s[0].lemma != "a"</code>).
+	 * 
+	 * The matching rule is thus always the same as in the rule list order. 
+	 * Only mutually exclusive rules are reordered.
+	 * 
+	 * Must not be called while rules are evaluated.
+	 * 
+	 * @param adaptiveOrdering
+	 */
+	public void setAdaptiveOrdering(boolean adaptiveOrdering) {
+		this.adaptiveOrdering = adaptiveOrdering;
+		for(List<CandidateRules> lists:candidates.values())
+			for(CandidateRules rules:lists)
+				rules.setAdaptive(adaptiveOrdering ? ADAPTIVE_SAMPLE_SIZE : 0);
+	}
+	
+	/**
+	 * @return
+	 * 			the per-rule evaluation stats, only filled 
+	 * 			when {@link #setCollectingStats(boolean)} is enabled
+	 */
+	public VariantRuleStats getStats() {
+		return stats;
+	}
+	
+	private static int getFlags(boolean sourceCompound, boolean targetCompound) {
+		return (sourceCompound ? 2 : 0) + (targetCompound ? 1 : 0);
+	}
+
+	private static boolean isSourceCompound(int flags) {
+		return (flags & 2) != 0;
+	}
+
+	private static boolean isTargetCompound(int flags) {
+		return (flags & 1) != 0;
+	}
+	
+	/**
+	 * Tells if some rule accepts a source term of pattern <code>sourcePattern</code>
+	 * and a target term of pattern <code>targetPattern</code>, regardless of their 
+	 * compound options.
+	 * 
+	 * @param sourcePattern
+	 * @param targetPattern
+	 * @return
+	 * 			<code>false</code> if no rule can match such a pair of terms
+	 */
+	public boolean hasCandidateRules(String sourcePattern, String targetPattern) {
+		return candidates.contains(sourcePattern, targetPattern);
+	}
+	
+	/**
+	 * Gives keys such that a pair of terms of patterns <code>sourcePattern</code>
+	 * and <code>targetPattern</code> can only match a rule if the source key 
+	 * and the target key of one of them are equal, so that candidate pairs can be 
+	 * found by joining terms on each key.
+	 * 
+	 * @param sourcePattern
+	 * @param targetPattern
+	 * @return
+	 * 			the distinct keys of the candidate rules, an empty list
+	 * 			if no rule accepts such pairs, absent if some candidate rule 
+	 * 			has no join key
+	 */
+	public Optional<List<TermPairKey>> getJoinKeys(String sourcePattern, String targetPattern) {
+		List<CandidateRules> lists = candidates.get(sourcePattern, targetPattern);
+		if(lists == null)
+			return Optional.<List<TermPairKey>>of(ImmutableList.<TermPairKey>of());
+		Set<TermPairKey> keys = Sets.newLinkedHashSet();
+		for(CandidateRules rules:lists) {
+			for(VariantRule rule:rules.getRules()) {
+				Optional<TermPairKey> key = rule.getJoinKey();
+				if(!key.isPresent())
+					return Optional.absent();
+				keys.add(key.get());
+			}
+		}
+		return Optional.<List<TermPairKey>>of(ImmutableList.copyOf(keys));
+	}
+
+	/**
+	 * Gives the rules that may match a pair of terms, i.e. the rules 
+	 * whose patterns and compound options accept these terms.
+	 * 
+	 * @param source
+	 * @param target
+	 * @return
+	 * 			the candidate rules, in the order of the rule list
+	 */
+	public List<VariantRule> getCandidateRules(Term source, Term target) {
+		CandidateRules rules = getCandidates(source, target);
+		return rules == null ? ImmutableList.<VariantRule>of() : rules.getRules();
+	}
+
+	/**
+	 * Gives the candidate rules of a pair of terms in the order their 
+	 * expressions are currently evaluated.
+	 * 
+	 * @see #setAdaptiveOrdering(boolean)
+	 * @param source
+	 * @param target
+	 * @return
+	 * 			the candidate rules, in evaluation order
+	 */
+	public List<VariantRule> getEvaluationOrder(Term source, Term target) {
+		CandidateRules rules = getCandidates(source, target);
+		return rules == null ? ImmutableList.<VariantRule>of() : rules.getEvaluationOrder();
+	}
+
+	private CandidateRules getCandidates(Term source, Term target) {
+		List<CandidateRules> lists = candidates.get(source.getPattern(), target.getPattern());
+		if(lists == null)
+			return null;
+		return lists.get(getFlags(source.isCompound(), target.isCompound()));
+	}
+
+	/**
+	 * Gives the first rule of the rule list that matches a pair of terms.
+	 * 
+	 * @param source
+	 * @param target
+	 * @return
+	 * 			the first matching rule, <code>null</code> if no rule matches
+	 */
+	public VariantRule getMatchingRule(Term source, Term target) {
+		CandidateRules rules = getCandidates(source, target);
+		if(rules == null)
+			return null;
+		VariantRuleStats stats = collectingStats ? this.stats : null;
+		if(adaptiveOrdering)
+			return rules.getAdaptiveMatchingRule(source, target, stats);
+		else
+			return rules.getMatchingRule(source, target, stats);
+	}
+}
@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright 2015 - CNRS (Centre National de Recherche Scientifique)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ *******************************************************************************/
+package eu.project.ttc.engines.variant;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * 
+ * Counts how many times each variant rule of a {@link VariantRuleIndex} is
+ * evaluated, how many times it matches and how long its expression takes.
+ * 
+ * Counters are kept per thread, so that concurrent gathering workers do not
+ * contend on them, and are summed when read. Values are exact once the 
+ * evaluations are over.
+ * 
+ * @author Damien Cram
+ *
+ */
+public class VariantRuleStats {
+	private static final int TRIES = 0;
+	private static final int MATCHES = 1;
+	private static final int NANOS = 2;
+	private static final int NB_COUNTERS = 3;
+
+	private List<VariantRule> rules;
+	private Map<VariantRule, Integer> ids = new IdentityHashMap<>();
+	
+	/*
+	 * The counters of each thread, NB_COUNTERS per rule
+	 */
+	private List<long[]> allCounters = new CopyOnWriteArrayList<>();
+	private ThreadLocal<long[]> counters = new ThreadLocal<long[]>() {
+		@Override
+		protected long[] initialValue() {
+			long[] threadCounters = new long[NB_COUNTERS * rules.size()];
+			allCounters.add(threadCounters);
+			return threadCounters;
+		}
+	};
+	
+	VariantRuleStats(List<VariantRule> rules) {
+		this.rules = ImmutableList.copyOf(rules);
+		for(int i = 0; i < this.rules.size(); i++)
+			this.ids.put(this.rules.get(i), i);
+	}
+	
+	int getId(VariantRule rule) {
+		Integer id = ids.get(rule);
+		Preconditions.checkArgument(id != null, "Unknown variant rule: %s", rule.getName());
+		return id;
+	}
+	
+	void record(int ruleId, boolean matched, long nanos) {
+		long[] threadCounters = counters.get();
+		int offset = NB_COUNTERS * ruleId;
+		threadCounters[offset + TRIES]++;
+		if(matched)
+			threadCounters[offset + MATCHES]++;
+		threadCounters[offset + NANOS] += nanos;
+	}
+	
+	private long sum(VariantRule rule, int counter) {
+		int offset = NB_COUNTERS * getId(rule) + counter;
+		long sum = 0;
+		for(long[] threadCounters:allCounters)
+			sum += threadCounters[offset];
+		return sum;
+	}
+	
+	/**
+	 * @return
+	 * 			the rules of the index, in the order of the rule list
+	 */
+	public List<VariantRule> getRules() {
+		return rules;
+	}
+	
+	/**
+	 * @param rule
+	 * @return
+	 * 			the number of times the expression of <code>rule</code> has been evaluated
+	 */
+	public long getNbTries(VariantRule rule) {
+		return sum(rule, TRIES);
+	}
+
+	/**
+	 * @param rule
+	 * @return
+	 * 			the number of times the expression of <code>rule</code> has been true
+	 */
+	public long getNbMatches(VariantRule rule) {
+		return sum(rule, MATCHES);
+	}
+	
+	/**
+	 * @param rule
+	 * @return
+	 * 			the cumulated evaluation time of the expression of <code>rule</code>, in nanoseconds
+	 */
+	public long getNanos(VariantRule rule) {
+		return sum(rule, NANOS);
+	}
+	
+	/**
+	 * Resets all counters.
+	 * 
+	 * Must not be called while rules are evaluated.
+	 */
+	public void clear() {
+		for(long[] threadCounters:allCounters)
+			for(int i = 0; i < threadCounters.length; i++)
+				threadCounters[i] = 0;
+	}
+}
@@ -18,8 +18,11 @@
  */
 package eu.project.ttc.metrics;
 
+import java.nio.ByteBuffer;
 import java.text.Collator;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 
 /**
  * The {@link Levenshtein} {@link EditDistance} insensitive to diacritics, i.e.
@@ -62,31 +65,20 @@ public class DiacriticInsensitiveLevenshtein extends AbstractEditDistance{
 		int maxDistance = failThreshold == -1 ? Math.min(str.length(),
 				rst.length()) : (int) Math.round((1 - failThreshold) * l);
 
-		int[][] dp = new int[str.length() + 1][rst.length() + 1];
-		for (int i = 0; i < dp.length; i++) {
-			int bestPossibleEditDistance = dp.length;
-			for (int j = 0; j < dp[i].length; j++) {
-				dp[i][j] = i == 0 ? j : j == 0 ? i : 0;
-				if (i > 0 && j > 0) {
-					if (diacriticInsensitiveEquals(str.charAt(i - 1),
-							rst.charAt(j - 1))) {
-						dp[i][j] = dp[i - 1][j - 1];
-					} else {
-						dp[i][j] = Math.min(dp[i][j - 1] + 1, Math.min(
-								dp[i - 1][j - 1] + 1, dp[i - 1][j] + 1));
-					}
-					bestPossibleEditDistance = Math.min(
-							bestPossibleEditDistance, dp[i][j]);
-				}
-			}
-			// After calculating row i, look for the smallest value in a given
-			// column. Abort is maxDistance is strictly exceeded
-			if (i > maxDistance && bestPossibleEditDistance > maxDistance) {
-				FastFailures++;
-				return l;
-			}
+		// fold chars once per string
+		EditDistanceKernel kernel = EditDistanceKernel.get();
+		int[] source = kernel.getSource(str.length());
+		for (int i = 0; i < str.length(); i++)
+			source[i] = getCharClass(str.charAt(i));
+		int[] target = kernel.getTarget(rst.length());
+		for (int j = 0; j < rst.length(); j++)
+			target[j] = getCharClass(rst.charAt(j));
+		int distance = kernel.compute(str.length(), rst.length(), maxDistance);
+		if (distance == EditDistanceKernel.FAILED) {
+			FastFailures++;
+			return l;
 		}
-		return dp[str.length()][rst.length()];
+		return distance;
 	}
 
 	/** Locale sensitive string comparator */
@@ -110,8 +102,47 @@ public class DiacriticInsensitiveLevenshtein extends AbstractEditDistance{
 	 *         are equals, or <code>false</code> otherwise.
 	 */
 	public static boolean diacriticInsensitiveEquals(char char1, char char2) {
-		return StrCollator.equals(Character.toString(char1),
-				Character.toString(char2));
+		return char1 == char2 || getCharClass(char1) == getCharClass(char2);
+	}
+
+	/*
+	 * The class of each char, lazily computed. 0 when not computed yet.
+	 */
+	private static final int[] CharClasses = new int[Character.MAX_VALUE + 1];
+	
+	/*
+	 * Collation key -> class
+	 */
+	private static final Map<ByteBuffer, Integer> CollationKeyClasses = new HashMap<ByteBuffer, Integer>();
+	
+	/**
+	 * Gives the equivalence class of a char: two chars are equal 
+	 * independent of the presence of diacritic marks if, and only if, 
+	 * they have the same class.
+	 * 
+	 * Classes are computed once per char from its collation key, since
+	 * the collator is much slower than an array lookup and serializes
+	 * concurrent comparisons.
+	 * 
+	 * @param c
+	 * 			The char
+	 * @return a strictly positive class id
+	 */
+	public static int getCharClass(char c) {
+		int charClass = CharClasses[c];
+		if(charClass == 0) {
+			synchronized(CollationKeyClasses) {
+				ByteBuffer key = ByteBuffer.wrap(StrCollator.getCollationKey(Character.toString(c)).toByteArray());
+				Integer keyClass = CollationKeyClasses.get(key);
+				if(keyClass == null) {
+					keyClass = CollationKeyClasses.size() + 1;
+					CollationKeyClasses.put(key, keyClass);
+				}
+				charClass = keyClass;
+				CharClasses[c] = charClass;
+			}
+		}
+		return charClass;
 	}
 
 	@Override
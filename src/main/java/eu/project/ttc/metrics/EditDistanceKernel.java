@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright 2, 2015nership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package eu.project.ttc.metrics;
+
+/**
+ *
+ * The per-thread, allocation-free Levenshtein kernel of {@link Levenshtein}
+ * and {@link DiacriticInsensitiveLevenshtein}.
+ *
+ * Strings are first copied (and folded if needed) as symbols into
+ * {@link #getSource(int)} and {@link #getTarget(int)}. The distance is
+ * then computed with the bit-parallel algorithm of Myers (as formulated
+ * by Hyyrö) when one of the strings has at most 64 symbols, or with a
+ * two-row dynamic programming otherwise.
+ *
+ * @author Damien Cram
+ *
+ */
+final class EditDistanceKernel {
+
+	/**
+	 * Returned by {@link #compute(int, int, int)} when the distance is
+	 * known to exceed the max distance.
+	 */
+	static final int FAILED = -1;
+
+	private static final int WORD_SIZE = 64;
+
+	/*
+	 * Symbols are chars or char classes, i.e. at most Character.MAX_VALUE + 1
+	 */
+	private static final int NB_SYMBOLS = Character.MAX_VALUE + 2;
+
+	private static final ThreadLocal<EditDistanceKernel> KERNELS = new ThreadLocal<EditDistanceKernel>() {
+		@Override
+		protected EditDistanceKernel initialValue() {
+			return new EditDistanceKernel();
+		}
+	};
+
+	static EditDistanceKernel get() {
+		return KERNELS.get();
+	}
+
+	private int[] source = new int[WORD_SIZE];
+	private int[] target = new int[WORD_SIZE];
+	private int[] row = new int[WORD_SIZE + 1];
+	private int[] previousRow = new int[WORD_SIZE + 1];
+
+	/*
+	 * Symbol -> bit mask of its positions in the pattern. Only
+	 * the entries of the current pattern are non-zero.
+	 */
+	private long[] peq = new long[NB_SYMBOLS];
+
+	/*
+	 * Vertical deltas of the last column computed by #myers
+	 */
+	private long vp;
+	private long vn;
+
+	/*
+	 * The min of the bottom row of the last #myers run
+	 */
+	private int lastRowMin;
+
+	private EditDistanceKernel() {
+		super();
+	}
+
+	int[] getSource(int length) {
+		if(source.length < length)
+			source = new int[Math.max(length, 2 * source.length)];
+		return source;
+	}
+
+	int[] getTarget(int length) {
+		if(target.length < length)
+			target = new int[Math.max(length, 2 * target.length)];
+		return target;
+	}
+
+	/**
+	 * Computes the edit distance between the <code>n</code> first
+	 * symbols of the source and the <code>m</code> first symbols of the
+	 * target.
+	 *
+	 * The computation fails, as soon as it is known, when every cell of
+	 * the last row of the <code>(n+1)x(m+1)</code> distance matrix exceeds
+	 * <code>maxDistance</code> and <code>n &gt; maxDistance</code>.
+	 *
+	 * @param n
+	 * 			the length of the source
+	 * @param m
+	 * 			the length of the target
+	 * @param maxDistance
+	 * 			the fail distance
+	 * @return
+	 * 			the edit distance, or {@link #FAILED}
+	 */
+	int compute(int n, int m, int maxDistance) {
+		if(n <= WORD_SIZE && n > 0)
+			// rows of the matrix are the columns of myers' algorithm
+			return myersByRow(n, m, maxDistance);
+		else if(m <= WORD_SIZE && m > 0)
+			return myersByColumn(n, m, maxDistance);
+		else
+			return twoRows(n, m, maxDistance);
+	}
+
+	/*
+	 * Myers' algorithm with the source as pattern. The bottom of each
+	 * column of the algorithm walks along the last row of the matrix.
+	 */
+	private int myersByRow(int n, int m, int maxDistance) {
+		int distance = myers(source, n, target, m, maxDistance);
+		return distance == FAILED || (n > maxDistance && distance > maxDistance && lastRowMin > maxDistance) ? FAILED : distance;
+	}
+
+	/*
+	 * Myers' algorithm with the target as pattern. The last column of
+	 * the algorithm is the last row of the matrix.
+	 */
+	private int myersByColumn(int n, int m, int maxDistance) {
+		int distance = myers(target, m, source, n, Integer.MAX_VALUE);
+		if(n > maxDistance && distance > maxDistance) {
+			int value = n;
+			int min = n;
+			for(int k=0; k<m; k++) {
+				value += (int)((vp >>> k) & 1L) - (int)((vn >>> k) & 1L);
+				min = Math.min(min, value);
+			}
+			if(min > maxDistance)
+				return FAILED;
+		}
+		return distance;
+	}
+
+	private int myers(int[] pattern, int p, int[] text, int t, int maxDistance) {
+		long last = 1L << (p - 1);
+		for(int k=0; k<p; k++)
+			peq[pattern[k]] |= 1L << k;
+		long pv = -1L;
+		long nv = 0L;
+		long eq, xv, xh, ph, nh;
+		int score = p;
+		int min = p;
+		boolean failed = false;
+		for(int j=0; j<t; j++) {
+			eq = peq[text[j]];
+			xv = eq | nv;
+			xh = (((eq & pv) + pv) ^ pv) | eq;
+			ph = nv | ~(xh | pv);
+			nh = pv & xh;
+			if((ph & last) != 0)
+				score++;
+			else if((nh & last) != 0)
+				score--;
+			ph = (ph << 1) | 1L;
+			nh = nh << 1;
+			pv = nh | ~(xv | ph);
+			nv = ph & xv;
+			min = Math.min(min, score);
+			if(p > maxDistance && min > maxDistance && score - (t - j - 1) > maxDistance) {
+				// the bottom row cannot go under maxDistance anymore
+				failed = true;
+				break;
+			}
+		}
+		for(int k=0; k<p; k++)
+			peq[pattern[k]] = 0L;
+		this.vp = pv;
+		this.vn = nv;
+		this.lastRowMin = min;
+		return failed ? FAILED : score;
+	}
+
+	private int twoRows(int n, int m, int maxDistance) {
+		if(row.length < m + 1) {
+			row = new int[Math.max(m + 1, 2 * row.length)];
+			previousRow = new int[row.length];
+		}
+		int[] current = row;
+		int[] previous = previousRow;
+		int[] swap;
+		for (int i = 0; i <= n; i++) {
+			int bestPossibleEditDistance = n + 1;
+			current[0] = i;
+			for (int j = 1; j <= m; j++) {
+				if(i == 0)
+					current[j] = j;
+				else {
+					if (source[i - 1] == target[j - 1])
+						current[j] = previous[j - 1];
+					else
+						current[j] = Math.min(current[j - 1] + 1, Math.min(
+								previous[j - 1] + 1, previous[j] + 1));
+					bestPossibleEditDistance = Math.min(
+							bestPossibleEditDistance, current[j]);
+				}
+			}
+			// Abort if maxDistance is strictly exceeded on the whole row
+			if (i > maxDistance && bestPossibleEditDistance > maxDistance)
+				return FAILED;
+			swap = previous;
+			previous = current;
+			current = swap;
+		}
+		return previous[m];
+	}
+}
@@ -28,30 +28,15 @@ public class Levenshtein extends AbstractEditDistance {
 		int maxDistance = failThreshold == -1 ? Math.min(s1.length(),
 				s2.length()) : (int) Math.round((1 - failThreshold) * l);
 
-		int[][] dp = new int[s1.length() + 1][s2.length() + 1];
-		for (int i = 0; i < dp.length; i++) {
-			int bestPossibleEditDistance = dp.length;
-			for (int j = 0; j < dp[i].length; j++) {
-				dp[i][j] = i == 0 ? j : j == 0 ? i : 0;
-				if (i > 0 && j > 0) {
-					if (s1.charAt(i - 1) == s2.charAt(j - 1)) {
-						dp[i][j] = dp[i - 1][j - 1];
-					} else {
-						dp[i][j] = Math.min(dp[i][j - 1] + 1, Math.min(
-								dp[i - 1][j - 1] + 1, dp[i - 1][j] + 1));
-					}
-					bestPossibleEditDistance = Math.min(
-							bestPossibleEditDistance, dp[i][j]);
-				}
-			}
-
-			// After calculating row i, look for the smallest value in a given
-			// column. Abort is maxDistance is strictly exceeded
-			if (i > maxDistance && bestPossibleEditDistance > maxDistance) {
-				return l;
-			}
-		}
-		return dp[s1.length()][s2.length()];
+		EditDistanceKernel kernel = EditDistanceKernel.get();
+		int[] source = kernel.getSource(s1.length());
+		for (int i = 0; i < s1.length(); i++)
+			source[i] = s1.charAt(i);
+		int[] target = kernel.getTarget(s2.length());
+		for (int j = 0; j < s2.length(); j++)
+			target[j] = s2.charAt(j);
+		int distance = kernel.compute(s1.length(), s2.length(), maxDistance);
+		return distance == EditDistanceKernel.FAILED ? l : distance;
 	}
 
 	@Override
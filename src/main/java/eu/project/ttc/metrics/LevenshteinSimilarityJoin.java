@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright 2, 2015nership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package eu.project.ttc.metrics;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ *
+ * A threshold-aware similarity join for {@link DiacriticInsensitiveLevenshtein}.
+ *
+ * Given a list of strings, it returns the pairs of strings that can
+ * reach a normalized similarity of at least <code>threshold</code>,
+ * without computing any edit distance. Strings are folded to their
+ * diacritic-insensitive char classes and two filters are applied:
+ *
+ * <ul>
+ * <li>the length filter: the edit distance of two strings is at least
+ * the difference of their lengths,</li>
+ * <li>the q-gram count filter: two strings at edit distance <code>d</code>
+ * share at least <code>max(|s|,|t|) - q + 1 - q.d</code> q-grams.</li>
+ * </ul>
+ *
+ * Both filters are lower bounds, so every pair passing the threshold
+ * is returned. The returned pairs still have to be verified.
+ *
+ * @author Damien Cram
+ *
+ */
+public class LevenshteinSimilarityJoin {
+	private static final int Q = 2;
+
+	private double threshold;
+
+	public LevenshteinSimilarityJoin(double threshold) {
+		super();
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Gives the candidate pairs of a list of strings.
+	 *
+	 * @param strings
+	 * 			the strings to join
+	 * @return
+	 * 			the candidate pairs as <code>{i, j}</code> indexes in
+	 * 			<code>strings</code>, with <code>i &lt; j</code>, sorted
+	 * 			by <code>i</code>, then by <code>j</code>
+	 */
+	public List<int[]> getCandidatePairs(List<String> strings) {
+		Preconditions.checkNotNull(strings);
+		int n = strings.size();
+		int maxLength = 0;
+		int[] lengths = new int[n];
+		for(int i=0; i<n; i++) {
+			lengths[i] = strings.get(i).length();
+			maxLength = Math.max(maxLength, lengths[i]);
+		}
+		int[] maxDistances = getMaxDistances(maxLength);
+
+		/*
+		 * Q-gram profiles: ids of the distinct grams of each string,
+		 * with their number of occurrences
+		 */
+		Map<Long, Integer> gramIds = Maps.newHashMap();
+		int[][] grams = new int[n][];
+		int[][] gramCounts = new int[n][];
+		for(int i=0; i<n; i++)
+			setProfile(strings.get(i), gramIds, grams, gramCounts, i);
+
+		/*
+		 * Inverted index gram -> strings, filled as strings are probed,
+		 * so that a string is only compared to the ones before it.
+		 */
+		int[][] postings = new int[gramIds.size()][];
+		int[][] postingCounts = new int[gramIds.size()][];
+		int[] postingSizes = new int[gramIds.size()];
+
+		// strings by length, also filled as strings are probed
+		List<List<Integer>> byLength = Lists.newArrayListWithCapacity(maxLength + 1);
+		for(int l=0; l<=maxLength; l++)
+			byLength.add(Lists.<Integer>newArrayList());
+
+		List<int[]> pairs = Lists.newArrayList();
+		int[] common = new int[n];
+		int[] touched = new int[n];
+		int nbTouched;
+		int[] partners = new int[n];
+		int nbPartners;
+		int j, m, g, p;
+		for(int i=0; i<n; i++) {
+			// count common grams with previous strings
+			nbTouched = 0;
+			for(g=0; g<grams[i].length; g++) {
+				int gram = grams[i][g];
+				for(p=0; p<postingSizes[gram]; p++) {
+					j = postings[gram][p];
+					if(common[j] == 0)
+						touched[nbTouched++] = j;
+					common[j] += Math.min(gramCounts[i][g], postingCounts[gram][p]);
+				}
+			}
+
+			nbPartners = 0;
+			for(int l=0; l<=maxLength; l++) {
+				if(byLength.get(l).isEmpty())
+					continue;
+				m = Math.max(l, lengths[i]);
+				if(Math.abs(l - lengths[i]) > maxDistances[m])
+					// length filter
+					continue;
+				int required = m - Q + 1 - Q * maxDistances[m];
+				if(required <= 0) {
+					// the count filter cannot prune anything
+					for(int k:byLength.get(l))
+						partners[nbPartners++] = k;
+				} else {
+					for(int k:byLength.get(l))
+						if(common[k] >= required)
+							partners[nbPartners++] = k;
+				}
+			}
+			for(int k=0; k<nbPartners; k++)
+				pairs.add(new int[]{partners[k], i});
+
+			for(int k=0; k<nbTouched; k++)
+				common[touched[k]] = 0;
+
+			// index string i
+			byLength.get(lengths[i]).add(i);
+			for(g=0; g<grams[i].length; g++) {
+				int gram = grams[i][g];
+				if(postings[gram] == null) {
+					postings[gram] = new int[4];
+					postingCounts[gram] = new int[4];
+				} else if(postingSizes[gram] == postings[gram].length) {
+					postings[gram] = Arrays.copyOf(postings[gram], 2*postingSizes[gram]);
+					postingCounts[gram] = Arrays.copyOf(postingCounts[gram], 2*postingSizes[gram]);
+				}
+				postings[gram][postingSizes[gram]] = i;
+				postingCounts[gram][postingSizes[gram]] = gramCounts[i][g];
+				postingSizes[gram]++;
+			}
+		}
+
+		Collections.sort(pairs, PAIR_ORDER);
+		return pairs;
+	}
+
+	private static final Comparator<int[]> PAIR_ORDER = new Comparator<int[]>() {
+		@Override
+		public int compare(int[] o1, int[] o2) {
+			return o1[0] == o2[0] ? Integer.compare(o1[1], o2[1]) : Integer.compare(o1[0], o2[0]);
+		}
+	};
+
+	/*
+	 * The largest edit distance allowed by the threshold for each max length,
+	 * computed with the same formula as DiacriticInsensitiveLevenshtein#normalize.
+	 * -1 when no distance can reach the threshold.
+	 */
+	private int[] getMaxDistances(int maxLength) {
+		int[] maxDistances = new int[maxLength + 1];
+		for(int m=0; m<=maxLength; m++) {
+			maxDistances[m] = -1;
+			for(int d=m; d>=0; d--) {
+				if(m == 0 || 1.0 - ((double) d / m) >= threshold) {
+					maxDistances[m] = d;
+					break;
+				}
+			}
+		}
+		return maxDistances;
+	}
+
+	private static void setProfile(String str, Map<Long, Integer> gramIds, int[][] grams, int[][] gramCounts, int i) {
+		int nbGrams = Math.max(0, str.length() - Q + 1);
+		int[] ids = new int[nbGrams];
+		for(int k=0; k<nbGrams; k++) {
+			long gram = ((long)DiacriticInsensitiveLevenshtein.getCharClass(str.charAt(k)) << 32)
+					| DiacriticInsensitiveLevenshtein.getCharClass(str.charAt(k+1));
+			Integer id = gramIds.get(gram);
+			if(id == null) {
+				id = gramIds.size();
+				gramIds.put(gram, id);
+			}
+			ids[k] = id;
+		}
+		Arrays.sort(ids);
+		int nbDistinct = 0;
+		int[] distinct = new int[nbGrams];
+		int[] counts = new int[nbGrams];
+		for(int k=0; k<nbGrams; k++) {
+			if(nbDistinct > 0 && distinct[nbDistinct-1] == ids[k])
+				counts[nbDistinct-1]++;
+			else {
+				distinct[nbDistinct] = ids[k];
+				counts[nbDistinct] = 1;
+				nbDistinct++;
+			}
+		}
+		grams[i] = Arrays.copyOf(distinct, nbDistinct);
+		gramCounts[i] = Arrays.copyOf(counts, nbDistinct);
+	}
+}
@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright 2015 - CNRS (Centre National de Recherche Scientifique)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ *******************************************************************************/
+package eu.project.ttc.models;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Iterator;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ComparisonChain;
+import com.google.common.io.CharStreams;
+
+import eu.project.ttc.utils.TermUtils;
+
+/**
+ * 
+ * An occurrence of a {@link Term} in a {@link Document}. 
+ * 
+ * This class holds no state, so that occurrences can be either plain 
+ * objects ({@link TermOccurrence}) or views over the rows of an 
+ * {@link OccurrenceStore}.
+ * 
+ * @author Damien Cram
+ *
+ */
+public abstract class AbstractTermOccurrence implements Comparable<AbstractTermOccurrence> {
+	
+	public abstract Term getTerm();
+	
+	public abstract String getCoveredText();
+	
+	public abstract Document getSourceDocument();
+	
+	public abstract int getBegin();
+	
+	public abstract int getEnd();
+	
+	@Override
+	public int hashCode() {
+		return Objects.hashCode(getSourceDocument(), getBegin(), getEnd());
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (obj instanceof AbstractTermOccurrence) {
+			AbstractTermOccurrence o = (AbstractTermOccurrence) obj;
+			return Objects.equal(getSourceDocument(), o.getSourceDocument()) 
+					&& getBegin() == o.getBegin()
+					&& getEnd() == o.getEnd();
+		} else
+			return false;
+	}
+	
+	@Override
+	public int compareTo(AbstractTermOccurrence o) {
+		return ComparisonChain.start()
+				.compare(getSourceDocument().getUrl(), o.getSourceDocument().getUrl())
+				.compare(getBegin(), o.getBegin())
+				.compare(o.getEnd(), getEnd())
+				.result();
+	}
+	
+	public String getForm() {
+		return TermUtils.collapseText(getCoveredText().toLowerCase());
+	}
+	
+	/**
+	 * 
+	 * @param contextSize
+	 * 			The number of characters before and after the occurrence.
+	 * @return
+	 * @throws IOException 
+	 */
+	public String getTextualContext(int contextSize) throws IOException {
+		FileReader r = new FileReader(getSourceDocument().getUrl().replaceFirst("file:", ""));
+		String text = CharStreams.toString(r);
+		r.close();
+		int begin = Math.max(getBegin() - contextSize, 0);
+		int end = Math.min(getEnd() + contextSize, text.length());
+		return TermUtils.collapseText(text.substring(begin, end));
+	}
+	
+	public Iterator<AbstractTermOccurrence> contextIterator(OccurrenceType coTermsType, int contextSize) {
+		return getSourceDocument().getOccurrenceContext(this, coTermsType, contextSize);
+	}
+
+	@Override
+	public String toString() {
+		return getForm();
+	}
+	
+	/**
+	 * The index in the list of occurrences in the source document.
+	 * 
+	 * @return
+	 */
+	abstract int getOccurrenceIndex();
+	
+	abstract void setOccurrenceIndex(int occurrenceIndex);
+	
+	
+	/**
+	 * True if this occurrence is marked as primary, i.e. if
+	 * it can be considered as a true occurrence of term in a 
+	 * non-overlapping sequence of term occurrences
+	 * 
+	 * 
+	 * @return
+	 */
+	public abstract boolean isPrimaryOccurrence();
+
+	public abstract void setPrimaryOccurrence(boolean primaryOccurrence);
+	
+	/**
+	 * True if both source documents are the same and if the 
+	 * offsets in the document overlaps.
+	 * 
+	 * The overlap is interpreted in the sense of opening intervals. I.e
+	 * if the begin of the second interval is the end of the first interval, this
+	 * is not an overlap.
+	 * 
+	 * @param theOcc
+	 * @return
+	 */
+	public boolean overlaps(AbstractTermOccurrence theOcc) {
+		return getSourceDocument().equals(theOcc.getSourceDocument()) 
+				  && getBegin() < theOcc.getEnd() 
+				  && theOcc.getBegin() < getEnd();
+	}
+}
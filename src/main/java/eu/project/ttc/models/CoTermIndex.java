@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright 2015 - CNRS (Centre National de Recherche Scientifique)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ *******************************************************************************/
+package eu.project.ttc.models;
+
+import java.util.Collections;
+import java.util.Set;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.SetMultimap;
+
+/**
+ * 
+ * A reverse index of {@link ContextVector}s, from co-terms to the terms
+ * whose context vector contain them.
+ * 
+ * The index is maintained by the context vectors themselves once their owner 
+ * term is attached to it (see {@link Term#setCoTermIndex(CoTermIndex)}), so that 
+ * the context vectors mentioning a term can be found without scanning all
+ * terms.
+ * 
+ * @author Damien Cram
+ *
+ */
+public class CoTermIndex {
+	
+	private SetMultimap<Term, Term> ownersByCoTerm = HashMultimap.create();
+
+	void index(Term coTerm, Term owner) {
+		ownersByCoTerm.put(coTerm, owner);
+	}
+
+	void unindex(Term coTerm, Term owner) {
+		ownersByCoTerm.remove(coTerm, owner);
+	}
+
+	/**
+	 * The terms having the param co-term in their context vector.
+	 * 
+	 * @param coTerm
+	 * @return
+	 * 			an unmodifiable view of the owner terms
+	 */
+	public Set<Term> getOwners(Term coTerm) {
+		return Collections.unmodifiableSet(ownersByCoTerm.get(coTerm));
+	}
+	
+	/**
+	 * The number of (co-term, owner term) pairs in this index.
+	 * 
+	 * @return
+	 */
+	public int size() {
+		return ownersByCoTerm.size();
+	}
+	
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this)
+				.add("coTerms", ownersByCoTerm.keySet().size())
+				.add("size", ownersByCoTerm.size())
+				.toString();
+	}
+}
@@ -31,6 +31,7 @@ import org.apache.commons.lang3.mutable.MutableInt;
 
 import com.google.common.base.Joiner;
 import com.google.common.base.Objects;
+import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ComparisonChain;
 import com.google.common.collect.Iterables;
@@ -56,6 +57,8 @@ public class ContextVector {
 	
 	private Term term;
 	
+	private Optional<CoTermIndex> coTermIndex = Optional.absent();
+	
 	/**
 	 * Default constructor for {@link ContextVector}. Must be used if no normalization is required.
 	 */
@@ -93,16 +96,19 @@ public class ContextVector {
 		this.term = term;
 	}
 
-	public void addAllCooccurrences(Iterator<TermOccurrence> it) {
+	public void addAllCooccurrences(Iterator<AbstractTermOccurrence> it) {
 		while(it.hasNext()) {
 			addCooccurrence(it.next());
 		}
 	}
 
-	public void addCooccurrence(TermOccurrence occ) {
+	public void addCooccurrence(AbstractTermOccurrence occ) {
 		Term term2 = getTermToAdd(occ.getTerm());
-		if(!entries.containsKey(term2))
+		if(!entries.containsKey(term2)) {
 			entries.put(term2, new Entry(term2));
+			if(coTermIndex.isPresent())
+				coTermIndex.get().index(term2, this.term);
+		}
 		entries.get(term2).increment();
 		this.totalCooccurrences++;
 		setDirty();
@@ -124,6 +130,8 @@ public class ContextVector {
 		if(entries.containsKey(termToAdd))
 			this.totalCooccurrences -= entries.get(termToAdd).getNbCooccs();
 		entries.put(termToAdd, new Entry(termToAdd, nbCooccs, assocRate));
+		if(coTermIndex.isPresent())
+			coTermIndex.get().index(termToAdd, this.term);
 		this.totalCooccurrences+=nbCooccs;
 		setDirty();
 	}
@@ -133,10 +141,56 @@ public class ContextVector {
 		if(this.entries.containsKey(termToAdd)) {
 			Entry e = this.entries.remove(termToAdd);
 			this.totalCooccurrences -= e.getNbCooccs();
+			if(coTermIndex.isPresent())
+				coTermIndex.get().unindex(termToAdd, this.term);
 		}
 		setDirty();
 	}
 
+	/**
+	 * Removes several co-terms at once.
+	 * 
+	 * @see #removeCoTerm(Term)
+	 * @param terms
+	 * 			the co-terms to remove
+	 */
+	public void removeCoTerms(Set<Term> terms) {
+		if(!useTermClasses && entries.size() < terms.size()) {
+			for(Iterator<Map.Entry<Term, Entry>> it = entries.entrySet().iterator(); it.hasNext();) {
+				Map.Entry<Term, Entry> e = it.next();
+				if(terms.contains(e.getKey())) {
+					this.totalCooccurrences -= e.getValue().getNbCooccs();
+					if(coTermIndex.isPresent())
+						coTermIndex.get().unindex(e.getKey(), this.term);
+					it.remove();
+				}
+			}
+			setDirty();
+		} else {
+			for(Term t:terms)
+				removeCoTerm(t);
+		}
+	}
+
+	/**
+	 * Registers all co-terms of this vector in a {@link CoTermIndex} and keeps
+	 * the index up-to-date on every subsequent change.
+	 * 
+	 * @param coTermIndex
+	 * 			the co-term index, <code>null</code> to detach this vector from 
+	 * 			its current index
+	 */
+	void setCoTermIndex(CoTermIndex coTermIndex) {
+		Preconditions.checkState(this.term != null, "Cannot index a context vector without owner term");
+		if(this.coTermIndex.isPresent())
+			for(Term coTerm:entries.keySet())
+				this.coTermIndex.get().unindex(coTerm, this.term);
+		this.coTermIndex = Optional.fromNullable(coTermIndex);
+		if(this.coTermIndex.isPresent())
+			for(Term coTerm:entries.keySet())
+				this.coTermIndex.get().index(coTerm, this.term);
+	}
+
 	private void setDirty() {
 		this._sortedEntries = null;
 	}
@@ -46,7 +46,7 @@ public class Document {
 	/**
 	 * The ordered LinkedList of occurrences.
 	 */
-	private List<TermOccurrence> _occurrences = Lists.newArrayList();
+	private List<AbstractTermOccurrence> _occurrences = Lists.newArrayList();
 
 	/**
 	 * A flag that tells of occurrences must be sorted again
@@ -67,13 +67,13 @@ public class Document {
 	 * @param termOccurrence
 	 * @return
 	 */
-	public int indexTermOccurrence(TermOccurrence termOccurrence) {
+	public int indexTermOccurrence(AbstractTermOccurrence termOccurrence) {
 		this.occurrencesDirty = true;
 		_occurrences.add(termOccurrence);
 		return _occurrences.size();
 	}
 	
-	public List<TermOccurrence> getOccurrences() {
+	public List<AbstractTermOccurrence> getOccurrences() {
 		computeOccurrences();
 		return this._occurrences;
 	}
@@ -82,7 +82,7 @@ public class Document {
 		if(this.occurrencesDirty) {
 			java.util.Collections.sort(this._occurrences);
 			int index = 0;
-			for(TermOccurrence o:this._occurrences) {
+			for(AbstractTermOccurrence o:this._occurrences) {
 				o.setOccurrenceIndex(index);
 				index++;
 			}
@@ -105,7 +105,7 @@ public class Document {
 	 * @return
 	 * 			an iterator over the occurrences
 	 */
-	public Iterator<TermOccurrence> getOccurrenceContext(final TermOccurrence occurrence, final OccurrenceType coTermsType, final int contextSize) {
+	public Iterator<AbstractTermOccurrence> getOccurrenceContext(final AbstractTermOccurrence occurrence, final OccurrenceType coTermsType, final int contextSize) {
 		computeOccurrences();
 		return Iterators.concat(
 				new LeftContextIterator(coTermsType, occurrence, contextSize),
@@ -113,16 +113,16 @@ public class Document {
 			);
 	}
 	
-	private abstract class DirectionalContextIterator extends AbstractIterator<TermOccurrence> {
-		protected TermOccurrence occurrence;
+	private abstract class DirectionalContextIterator extends AbstractIterator<AbstractTermOccurrence> {
+		protected AbstractTermOccurrence occurrence;
 		private int radius;
 		private OccurrenceType occType;
 
 		protected int index;
 		private int returnedOccCnt = 0;
-		private TermOccurrence current;
+		private AbstractTermOccurrence current;
 		
-		private DirectionalContextIterator(OccurrenceType occType, TermOccurrence occurrence, int radius) {
+		private DirectionalContextIterator(OccurrenceType occType, AbstractTermOccurrence occurrence, int radius) {
 			super();
 			this.occurrence = occurrence;
 			this.radius = radius;
@@ -132,7 +132,7 @@ public class Document {
 		}
 
 		@Override
-		protected TermOccurrence computeNext() {
+		protected AbstractTermOccurrence computeNext() {
 			while (returnedOccCnt < radius && index >=0 && index < Document.this.getOccurrences().size()) {
 				this.current = Document.this.getOccurrences().get(this.index);
 				
@@ -147,7 +147,7 @@ public class Document {
 			return endOfData();
 		}
 
-		private boolean keepOccurrence(TermOccurrence o) {
+		private boolean keepOccurrence(AbstractTermOccurrence o) {
 			if(overlap(o))
 				return false;
 			switch (occType) {
@@ -162,7 +162,7 @@ public class Document {
 			}
 		}
 
-		protected abstract boolean overlap(TermOccurrence o);
+		protected abstract boolean overlap(AbstractTermOccurrence o);
 		protected abstract void moveCursor();
 	};
 	
@@ -171,7 +171,7 @@ public class Document {
 	 * single-word neighbour term occurrences in the document.
 	 */
 	private class LeftContextIterator extends DirectionalContextIterator {
-		private LeftContextIterator(OccurrenceType occType, TermOccurrence occurrence, int radius) {
+		private LeftContextIterator(OccurrenceType occType, AbstractTermOccurrence occurrence, int radius) {
 			super(occType, occurrence, radius);
 		}
 		@Override
@@ -179,7 +179,7 @@ public class Document {
 			this.index--;
 		}
 		@Override
-		protected boolean overlap(TermOccurrence o) {
+		protected boolean overlap(AbstractTermOccurrence o) {
 			return o.getEnd() > this.occurrence.getBegin();
 		}
 	}
@@ -189,7 +189,7 @@ public class Document {
 	 * single-word neighbour term occurrences in the document.
 	 */
 	private class RightContextIterator extends DirectionalContextIterator {
-		private RightContextIterator(OccurrenceType occType, TermOccurrence occurrence, int radius) {
+		private RightContextIterator(OccurrenceType occType, AbstractTermOccurrence occurrence, int radius) {
 			super(occType, occurrence, radius);
 		}
 		@Override
@@ -197,7 +197,7 @@ public class Document {
 			this.index++;
 		}
 		@Override
-		protected boolean overlap(TermOccurrence o) {
+		protected boolean overlap(AbstractTermOccurrence o) {
 			return o.getBegin() < this.occurrence.getEnd();
 		}
 	}
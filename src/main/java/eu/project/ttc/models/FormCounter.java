@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright 2015 - CNRS (Centre National de Recherche Scientifique)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ *******************************************************************************/
+package eu.project.ttc.models;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.apache.commons.lang.mutable.MutableInt;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * 
+ * Incrementally counts the forms of a {@link Term}'s occurrences.
+ * 
+ * The counter is exact until it is given a capacity. Bounded counters
+ * follow the <i>Space-Saving</i> heavy-hitters algorithm: when a new form 
+ * arrives and the counter is full, the least frequent form is replaced by 
+ * the new one, which inherits its count. The most frequent forms and their 
+ * order are then preserved with a bounded memory, while counts may be 
+ * over-estimated.
+ * 
+ * Forms having the same count are ordered by form, in {@link #getForms()} as 
+ * well as for {@link #getMostFrequentForm()}, which is always the first form.
+ * 
+ * @author Damien Cram
+ *
+ */
+class FormCounter {
+	
+	private Map<String, MutableInt> counts = Maps.newLinkedHashMap();
+	private int capacity = Integer.MAX_VALUE;
+	private String mostFrequentForm = null;
+	private Set<String> sortedForms = null;
+	
+	private static final Comparator<Entry<String, MutableInt>> BY_COUNT_DESC = new Comparator<Entry<String, MutableInt>>() {
+		@Override
+		public int compare(Entry<String, MutableInt> o1, Entry<String, MutableInt> o2) {
+			return compareForms(o1.getKey(), o1.getValue().intValue(), o2.getKey(), o2.getValue().intValue());
+		}
+	};
+	
+	/*
+	 * The form order: by decreasing count, then by form
+	 */
+	private static int compareForms(String form1, int count1, String form2, int count2) {
+		return count1 != count2 ? Integer.compare(count2, count1) : form1.compareTo(form2);
+	}
+	
+	/*
+	 * Whether a form comes before the current most frequent form
+	 */
+	private boolean isBeforeMostFrequentForm(String form, int count) {
+		return mostFrequentForm == null 
+				|| compareForms(form, count, mostFrequentForm, counts.get(mostFrequentForm).intValue()) < 0;
+	}
+	
+	/**
+	 * Bounds the number of forms counted, evicting the least frequent 
+	 * ones if needed.
+	 * 
+	 * @param capacity
+	 * 			the max number of forms counted
+	 */
+	void setCapacity(int capacity) {
+		Preconditions.checkArgument(capacity > 0, "Capacity must be positive: %s", capacity);
+		this.capacity = capacity;
+		while(counts.size() > capacity)
+			evictLeastFrequent();
+		this.sortedForms = null;
+	}
+	
+	boolean isBounded() {
+		return capacity != Integer.MAX_VALUE;
+	}
+	
+	void add(String form) {
+		MutableInt count = counts.get(form);
+		if(count == null) {
+			count = new MutableInt(counts.size() >= capacity ? evictLeastFrequent() : 0);
+			counts.put(form, count);
+		}
+		count.increment();
+		if(isBeforeMostFrequentForm(form, count.intValue()))
+			mostFrequentForm = form;
+		this.sortedForms = null;
+	}
+
+	void remove(String form) {
+		MutableInt count = counts.get(form);
+		if(count == null)
+			return;
+		count.decrement();
+		if(count.intValue() <= 0)
+			counts.remove(form);
+		if(form.equals(mostFrequentForm))
+			mostFrequentForm = findMostFrequentForm();
+		this.sortedForms = null;
+	}
+	
+	int getCount(String form) {
+		MutableInt count = counts.get(form);
+		return count == null ? 0 : count.intValue();
+	}
+
+	/**
+	 * 
+	 * @return
+	 * 		the most frequent form, <code>null</code> if no form was counted
+	 */
+	String getMostFrequentForm() {
+		return mostFrequentForm;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * 		the forms, by decreasing frequency
+	 */
+	Set<String> getForms() {
+		if(sortedForms == null) {
+			List<Entry<String, MutableInt>> entries = Lists.newArrayList(counts.entrySet());
+			Collections.sort(entries, BY_COUNT_DESC);
+			Set<String> forms = new LinkedHashSet<String>();
+			for(Entry<String, MutableInt> e:entries)
+				forms.add(e.getKey());
+			sortedForms = Collections.unmodifiableSet(forms);
+		}
+		return sortedForms;
+	}
+
+	/*
+	 * Removes the last form in form order and returns its count.
+	 */
+	private int evictLeastFrequent() {
+		Entry<String, MutableInt> min = null;
+		for(Entry<String, MutableInt> e:counts.entrySet())
+			if(min == null || BY_COUNT_DESC.compare(e, min) > 0)
+				min = e;
+		int minCount = min.getValue().intValue();
+		counts.remove(min.getKey());
+		if(min.getKey().equals(mostFrequentForm))
+			mostFrequentForm = findMostFrequentForm();
+		return minCount;
+	}
+
+	private String findMostFrequentForm() {
+		Entry<String, MutableInt> max = null;
+		for(Entry<String, MutableInt> e:counts.entrySet())
+			if(max == null || BY_COUNT_DESC.compare(e, max) < 0)
+				max = e;
+		return max == null ? null : max.getKey();
+	}
+}
@@ -21,32 +21,90 @@
  *******************************************************************************/
 package eu.project.ttc.models;
 
-import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
+import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Maps;
 
+/**
+ * 
+ * Caches the Groovy views of terms, words and components.
+ * 
+ * This class is thread-safe, so that variant rules can be matched 
+ * concurrently. Two threads may build the same view at the same time,
+ * in which case only one of them is cached.
+ * 
+ * By default, views are cached until {@link #clear()} is invoked. A bounded 
+ * adapter evicts the least recently used term views instead, so that its memory
+ * stays bounded while terms are gathered class by class. Word and component 
+ * views are never evicted, since they are shared by the term views: an equal 
+ * word or component always has the same view until {@link #clear()}, as 
+ * compiled rule expressions assume. Their number is bounded by the vocabulary 
+ * rather than by the number of terms.
+ * 
+ * @author Damien Cram
+ *
+ */
 public class GroovyAdapter {
 
-	private Map<TermWord, GroovyWord> groovyWords = Maps.newHashMap();
-	private Map<Term, GroovyTerm> groovyTerms = Maps.newHashMap();
-	private Map<Component, GroovyComponent> groovyComponents = Maps.newHashMap();
+	private ConcurrentMap<TermWord, GroovyWord> groovyWords;
+	private ConcurrentMap<Term, GroovyTerm> groovyTerms;
+	private ConcurrentMap<Component, GroovyComponent> groovyComponents;
+	
+	/**
+	 * Creates an unbounded adapter.
+	 */
+	public GroovyAdapter() {
+		this.groovyWords = Maps.newConcurrentMap();
+		this.groovyTerms = Maps.newConcurrentMap();
+		this.groovyComponents = Maps.newConcurrentMap();
+	}
+
+	/**
+	 * Creates a bounded adapter.
+	 * 
+	 * @param maxTerms
+	 * 			the max number of term views kept in cache
+	 */
+	public GroovyAdapter(int maxTerms) {
+		Preconditions.checkArgument(maxTerms > 0, "Max number of terms must be positive: %s", maxTerms);
+		this.groovyTerms = CacheBuilder.newBuilder().maximumSize(maxTerms).<Term, GroovyTerm>build().asMap();
+		this.groovyWords = Maps.newConcurrentMap();
+		this.groovyComponents = Maps.newConcurrentMap();
+	}
 
 	public GroovyTerm asGroovyTerm(Term term) {
-		if(this.groovyTerms.get(term) == null)
-			this.groovyTerms.put(term, new GroovyTerm(term, this));
-		return this.groovyTerms.get(term);
+		GroovyTerm groovyTerm = this.groovyTerms.get(term);
+		if(groovyTerm == null) {
+			groovyTerm = new GroovyTerm(term, this);
+			GroovyTerm previous = this.groovyTerms.putIfAbsent(term, groovyTerm);
+			if(previous != null)
+				groovyTerm = previous;
+		}
+		return groovyTerm;
 	}
 
 	public GroovyComponent asGroovyComponent(Component component) {
-		if(this.groovyComponents.get(component) == null)
-			this.groovyComponents.put(component, new GroovyComponent(component));
-		return this.groovyComponents.get(component);
+		GroovyComponent groovyComponent = this.groovyComponents.get(component);
+		if(groovyComponent == null) {
+			groovyComponent = new GroovyComponent(component);
+			GroovyComponent previous = this.groovyComponents.putIfAbsent(component, groovyComponent);
+			if(previous != null)
+				groovyComponent = previous;
+		}
+		return groovyComponent;
 	}
 	
 	public GroovyWord asGroovyWord(TermWord termWord) {
-		if(this.groovyWords.get(termWord) == null)
-			this.groovyWords.put(termWord, new GroovyWord(termWord, this));
-		return groovyWords.get(termWord);
+		GroovyWord groovyWord = this.groovyWords.get(termWord);
+		if(groovyWord == null) {
+			groovyWord = new GroovyWord(termWord, this);
+			GroovyWord previous = this.groovyWords.putIfAbsent(termWord, groovyWord);
+			if(previous != null)
+				groovyWord = previous;
+		}
+		return groovyWord;
 	}
 	
 	public void clear() {
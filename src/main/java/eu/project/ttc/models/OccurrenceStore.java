@@ -0,0 +1,361 @@
+/*******************************************************************************
+ * Copyright 2015 - CNRS (Centre National de Recherche Scientifique)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ *******************************************************************************/
+package eu.project.ttc.models;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import eu.project.ttc.utils.TermUtils;
+
+/**
+ * 
+ * A columnar store for {@link AbstractTermOccurrence}s.
+ * 
+ * Each occurrence is a row made of primitive columns (document id, 
+ * begin, end, covered text id, occurrence index and flags). Documents and 
+ * covered texts are dictionary-encoded. Columns are kept on the heap or, 
+ * optionally, in direct (off-heap) {@link ByteBuffer}s.
+ * 
+ * Terms using this store (see {@link Term#setOccurrenceStore(OccurrenceStore)}) 
+ * only hold the row numbers of their occurrences and return lightweight 
+ * {@link AbstractTermOccurrence} views over the rows.
+ * 
+ * Rows are never reclaimed: removing an occurrence from a term only 
+ * removes its row number from the term.
+ * 
+ * @author Damien Cram
+ *
+ */
+public class OccurrenceStore {
+	private static final int INITIAL_CAPACITY = 1024;
+	private static final byte FLAG_PRIMARY = 1;
+	
+	private boolean offHeap;
+	private int size = 0;
+	private int capacity = 0;
+	
+	/*
+	 * Columns
+	 */
+	private IntBuffer docIds;
+	private IntBuffer begins;
+	private IntBuffer ends;
+	private IntBuffer textIds;
+	private IntBuffer occurrenceIndexes;
+	private ByteBuffer flags;
+	
+	/*
+	 * Dictionaries
+	 */
+	private List<Document> documents = Lists.newArrayList();
+	private Map<Document, Integer> documentIds = Maps.newHashMap();
+	private List<String> texts = Lists.newArrayList();
+	private List<String> forms = Lists.newArrayList();
+	private Map<String, Integer> textIdsByText = Maps.newHashMap();
+	
+	/**
+	 * Creates an empty store.
+	 * 
+	 * @param offHeap
+	 * 			<code>true</code> if the columns must be allocated as 
+	 * 			direct {@link ByteBuffer}s.
+	 */
+	public OccurrenceStore(boolean offHeap) {
+		this.offHeap = offHeap;
+		ensureCapacity(INITIAL_CAPACITY);
+	}
+	
+	public boolean isOffHeap() {
+		return offHeap;
+	}
+	
+	/**
+	 * The number of rows in this store.
+	 * 
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * The number of distinct covered texts in this store.
+	 * 
+	 * @return
+	 */
+	public int getNbTexts() {
+		return texts.size();
+	}
+	
+	/**
+	 * Copies an occurrence into a new row.
+	 * 
+	 * @param occurrence
+	 * @return
+	 * 			the row number of the stored occurrence
+	 */
+	int add(AbstractTermOccurrence occurrence) {
+		if(size == capacity)
+			ensureCapacity(capacity * 2);
+		int row = size++;
+		docIds.put(row, getDocumentId(occurrence.getSourceDocument()));
+		begins.put(row, occurrence.getBegin());
+		ends.put(row, occurrence.getEnd());
+		textIds.put(row, getTextId(occurrence.getCoveredText()));
+		occurrenceIndexes.put(row, occurrence.getOccurrenceIndex());
+		flags.put(row, occurrence.isPrimaryOccurrence() ? FLAG_PRIMARY : 0);
+		return row;
+	}
+	
+	Document getDocument(int row) {
+		return documents.get(docIds.get(row));
+	}
+
+	int getBegin(int row) {
+		return begins.get(row);
+	}
+
+	int getEnd(int row) {
+		return ends.get(row);
+	}
+	
+	String getCoveredText(int row) {
+		return texts.get(textIds.get(row));
+	}
+
+	String getForm(int row) {
+		int textId = textIds.get(row);
+		String form = forms.get(textId);
+		if(form == null) {
+			form = TermUtils.collapseText(texts.get(textId).toLowerCase());
+			forms.set(textId, form);
+		}
+		return form;
+	}
+
+	int getOccurrenceIndex(int row) {
+		return occurrenceIndexes.get(row);
+	}
+
+	void setOccurrenceIndex(int row, int occurrenceIndex) {
+		occurrenceIndexes.put(row, occurrenceIndex);
+	}
+
+	boolean isPrimaryOccurrence(int row) {
+		return (flags.get(row) & FLAG_PRIMARY) != 0;
+	}
+
+	void setPrimaryOccurrence(int row, boolean primaryOccurrence) {
+		byte f = flags.get(row);
+		flags.put(row, (byte) (primaryOccurrence ? f | FLAG_PRIMARY : f & ~FLAG_PRIMARY));
+	}
+	
+	/**
+	 * Creates an empty occurrence list for a term, backed by this store.
+	 * 
+	 * @param term
+	 * @return
+	 */
+	List<AbstractTermOccurrence> newOccurrenceList(Term term) {
+		return new StoredOccurrenceList(term);
+	}
+
+	private int getDocumentId(Document document) {
+		Integer id = documentIds.get(document);
+		if(id == null) {
+			id = documents.size();
+			documents.add(document);
+			documentIds.put(document, id);
+		}
+		return id;
+	}
+
+	private int getTextId(String text) {
+		Integer id = textIdsByText.get(text);
+		if(id == null) {
+			id = texts.size();
+			texts.add(text);
+			forms.add(null);
+			textIdsByText.put(text, id);
+		}
+		return id;
+	}
+
+	private void ensureCapacity(int newCapacity) {
+		docIds = growIntColumn(docIds, newCapacity);
+		begins = growIntColumn(begins, newCapacity);
+		ends = growIntColumn(ends, newCapacity);
+		textIds = growIntColumn(textIds, newCapacity);
+		occurrenceIndexes = growIntColumn(occurrenceIndexes, newCapacity);
+		ByteBuffer newFlags = offHeap ? ByteBuffer.allocateDirect(newCapacity) : ByteBuffer.allocate(newCapacity);
+		if(flags != null) {
+			ByteBuffer old = flags.duplicate();
+			old.clear();
+			newFlags.put(old);
+			newFlags.clear();
+		}
+		flags = newFlags;
+		capacity = newCapacity;
+	}
+	
+	private IntBuffer growIntColumn(IntBuffer column, int newCapacity) {
+		IntBuffer newColumn = offHeap ?
+				ByteBuffer.allocateDirect(newCapacity * 4).order(ByteOrder.nativeOrder()).asIntBuffer()
+				: IntBuffer.allocate(newCapacity);
+		if(column != null) {
+			IntBuffer old = column.duplicate();
+			old.clear();
+			newColumn.put(old);
+			newColumn.clear();
+		}
+		return newColumn;
+	}
+	
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this)
+				.add("occurrences", size)
+				.add("texts", texts.size())
+				.add("documents", documents.size())
+				.add("offHeap", offHeap)
+				.toString();
+	}
+	
+	/*
+	 * The occurrences of a term, as an array of row numbers. 
+	 */
+	private class StoredOccurrenceList extends AbstractList<AbstractTermOccurrence> {
+		private Term term;
+		private int[] rows = new int[2];
+		private int nbRows = 0;
+		
+		private StoredOccurrenceList(Term term) {
+			super();
+			this.term = term;
+		}
+
+		@Override
+		public AbstractTermOccurrence get(int index) {
+			Preconditions.checkElementIndex(index, nbRows);
+			return new StoredOccurrence(rows[index]);
+		}
+
+		@Override
+		public int size() {
+			return nbRows;
+		}
+		
+		@Override
+		public boolean add(AbstractTermOccurrence e) {
+			if(nbRows == rows.length)
+				rows = Arrays.copyOf(rows, rows.length * 2);
+			rows[nbRows++] = OccurrenceStore.this.add(e);
+			modCount++;
+			return true;
+		}
+		
+		@Override
+		public AbstractTermOccurrence remove(int index) {
+			AbstractTermOccurrence removed = get(index);
+			System.arraycopy(rows, index + 1, rows, index, nbRows - index - 1);
+			nbRows--;
+			modCount++;
+			return removed;
+		}
+		
+		/*
+		 * A view over a row. It only holds the row number and, implicitly, 
+		 * its list, which gives the term and the store.
+		 * 
+		 * Setters write through to the store, so that all views of the same row
+		 * share their primary status and occurrence index.
+		 */
+		private class StoredOccurrence extends AbstractTermOccurrence {
+			private int row;
+			
+			private StoredOccurrence(int row) {
+				super();
+				this.row = row;
+			}
+			
+			@Override
+			public Term getTerm() {
+				return term;
+			}
+			
+			@Override
+			public String getCoveredText() {
+				return OccurrenceStore.this.getCoveredText(row);
+			}
+			
+			@Override
+			public Document getSourceDocument() {
+				return getDocument(row);
+			}
+			
+			@Override
+			public int getBegin() {
+				return OccurrenceStore.this.getBegin(row);
+			}
+			
+			@Override
+			public int getEnd() {
+				return OccurrenceStore.this.getEnd(row);
+			}
+			
+			@Override
+			public String getForm() {
+				return OccurrenceStore.this.getForm(row);
+			}
+			
+			@Override
+			int getOccurrenceIndex() {
+				return OccurrenceStore.this.getOccurrenceIndex(row);
+			}
+			
+			@Override
+			void setOccurrenceIndex(int occurrenceIndex) {
+				OccurrenceStore.this.setOccurrenceIndex(row, occurrenceIndex);
+			}
+			
+			@Override
+			public boolean isPrimaryOccurrence() {
+				return OccurrenceStore.this.isPrimaryOccurrence(row);
+			}
+			
+			@Override
+			public void setPrimaryOccurrence(boolean primaryOccurrence) {
+				OccurrenceStore.this.setPrimaryOccurrence(row, primaryOccurrence);
+			}
+		}
+	}
+}
@@ -25,9 +25,9 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import com.google.common.base.Joiner;
 import com.google.common.base.Optional;
@@ -38,18 +38,32 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 import eu.project.ttc.utils.IteratorUtils;
+import eu.project.ttc.utils.SymbolTable;
 import eu.project.ttc.utils.TermSuiteConstants;
-import eu.project.ttc.utils.TermSuiteUtils;
 
 
-public class Term implements Iterable<TermOccurrence>, Comparable<Term> {
+public class Term implements Iterable<AbstractTermOccurrence>, Comparable<Term> {
 	
 	private static final String NO_OCCURRENCE = "[No occurrence]";
-	private List<TermOccurrence> occurrences = Lists.newArrayList();
+	private static final AtomicIntegerFieldUpdater<Term> FREQUENCY_UPDATER = 
+			AtomicIntegerFieldUpdater.newUpdater(Term.class, "frequency");
+	
+	/*
+	 * The max number of forms counted for a term as soon as 
+	 * some of its occurrences are not kept.
+	 */
+	private static final int MAX_FORMS_WITHOUT_OCCURRENCES = 16;
+	
+	private List<AbstractTermOccurrence> occurrences = Lists.newArrayList();
 	private Set<Document> documents = Sets.newHashSet();
+	private FormCounter forms = new FormCounter();
 
-	private Set<TermVariation> variations = Sets.newHashSet();
-	private Set<TermVariation> bases = Sets.newHashSet();
+	/*
+	 * The store of the variations of this term, and the node of this
+	 * term in it.
+	 */
+	private VariationGraph variationGraph = null;
+	private int variationNode = -1;
 	
 	private Set<Term> extensions = Sets.newHashSet();
 	private Set<Term> extensionBases = Sets.newHashSet();
@@ -84,9 +98,11 @@ public class Term implements Iterable<TermOccurrence>, Comparable<Term> {
 //	private double wrLogZScore;
 
 	/*
-	 * The frequency of this term
+	 * The frequency of this term. Updated through 
+	 * FREQUENCY_UPDATER so that concurrent spotters do not lose
+	 * increments.
 	 */
-	private int frequency = 0;
+	private volatile int frequency = 0;
 	
 	/*
 	 * The syntactic pattern of this term
@@ -107,6 +123,7 @@ public class Term implements Iterable<TermOccurrence>, Comparable<Term> {
 	 * The context vector
 	 */
 	private Optional<ContextVector> contextVector = Optional.absent();
+	private CoTermIndex coTermIndex = null;
 	
 	/**
 	 * The term class
@@ -153,12 +170,12 @@ public class Term implements Iterable<TermOccurrence>, Comparable<Term> {
 //		return wrLogZScore;
 //	}
 	
-	public Collection<TermOccurrence> getOccurrences() {
+	public Collection<AbstractTermOccurrence> getOccurrences() {
 		return Collections.unmodifiableCollection(occurrences);
 	}
 	
 	@Override
-	public Iterator<TermOccurrence> iterator() {
+	public Iterator<AbstractTermOccurrence> iterator() {
 		return getOccurrences().iterator();
 	}
 
@@ -172,6 +189,8 @@ public class Term implements Iterable<TermOccurrence>, Comparable<Term> {
 	 * and optionnaly updates the inner list of occurrences of this term if param 
 	 * <code>keepOccurrence</code> is set to true.
 	 * 
+	 * This method can be safely invoked from several threads at the same time.
+	 * 
 	 * @param e
 	 * 			the occurrence object to add
 	 * @param keepOccurrence
@@ -180,29 +199,50 @@ public class Term implements Iterable<TermOccurrence>, Comparable<Term> {
 	 * @see #getOccurrences()
 	 * @see #removeOccurrence(String, int, int)
 	 */
-	public void addOccurrence(TermOccurrence e, boolean keepOccurrence) {
-		this.frequency++;
-		this.documents.add(e.getSourceDocument());
-		if(keepOccurrence)
-			occurrences.add(e);
+	public void addOccurrence(AbstractTermOccurrence e, boolean keepOccurrence) {
+		FREQUENCY_UPDATER.incrementAndGet(this);
+		synchronized(this) {
+			this.documents.add(e.getSourceDocument());
+			if(keepOccurrence)
+				occurrences.add(e);
+			else if(!forms.isBounded())
+				forms.setCapacity(MAX_FORMS_WITHOUT_OCCURRENCES);
+			forms.add(e.getForm());
+		}
 	}
 
 	
 	/**
 	 * Adds the parameter occurrence and stores it to the inner occurrence list.
 	 * 
-	 * @see #addOccurrence(TermOccurrence, boolean)
+	 * @see #addOccurrence(AbstractTermOccurrence, boolean)
 	 * @param e
 	 * 			the occurrence object
 	 */
-	public void addOccurrence(TermOccurrence e) {
+	public void addOccurrence(AbstractTermOccurrence e) {
 		this.addOccurrence(e, true);
 	}
 
-	public boolean addAll(Collection<TermOccurrence> c) {
+	public synchronized boolean addAll(Collection<? extends AbstractTermOccurrence> c) {
+		for(AbstractTermOccurrence o:c)
+			forms.add(o.getForm());
 		return occurrences.addAll(c);
 	}
 	
+	/**
+	 * Moves the occurrences of this term to a columnar {@link OccurrenceStore}. 
+	 * All occurrences subsequently added to this term will be copied to 
+	 * the store.
+	 * 
+	 * @param store
+	 * 			the occurrence store
+	 */
+	public synchronized void setOccurrenceStore(OccurrenceStore store) {
+		List<AbstractTermOccurrence> storedOccurrences = store.newOccurrenceList(this);
+		storedOccurrences.addAll(this.occurrences);
+		this.occurrences = storedOccurrences;
+	}
+	
 	
 	
 	@Override
@@ -244,27 +284,57 @@ public class Term implements Iterable<TermOccurrence>, Comparable<Term> {
 	}
 
 	/**
-	 * Builds a {@link TermVariation} object and add it to {@link #variations} and
-	 * variant{@link #bases}.
+	 * Adds a variation from this term to the variant in the {@link VariationGraph}
+	 * of this term, and in the one of the variant if they are different.
 	 * 
 	 * @param variant
 	 * @param type
 	 * @param info
 	 */
 	public void addTermVariation(Term variant, VariationType type, Object info) {
-		TermVariation variation = new TermVariation(type, this, variant, info);
-		this.variations.add(variation);
-		variant.bases.add(variation);
+		if(this.variationGraph == null)
+			new VariationGraph().attach(this);
+		this.variationGraph.attach(variant);
+		this.variationGraph.addVariation(this, variant, type, info);
+		if(variant.variationGraph != this.variationGraph)
+			variant.variationGraph.addVariation(this, variant, type, info);
 	}
 	
 	/**
-	 * Removes the param variation from this{@link #variations} and
-	 * from variant's {@link #bases}.
+	 * Removes the param variation from this term's variations and
+	 * from variant's bases.
 	 * @param variation
 	 */
 	public void removeTermVariation(TermVariation variation) {
-		this.variations.remove(variation);
-		variation.getVariant().bases.remove(variation);
+		if(this.variationGraph != null)
+			this.variationGraph.removeVariation(variation);
+		VariationGraph variantGraph = variation.getVariant().variationGraph;
+		if(variantGraph != null && variantGraph != this.variationGraph)
+			variantGraph.removeVariation(variation);
+	}
+	
+	/**
+	 * The {@link VariationGraph} storing the variations of this term.
+	 * 
+	 * @return
+	 * 			the variation graph, <code>null</code> if this term has never 
+	 * 			been attached to any
+	 */
+	public VariationGraph getVariationGraph() {
+		return variationGraph;
+	}
+	
+	void setVariationGraph(VariationGraph variationGraph) {
+		this.variationGraph = variationGraph;
+		this.variationNode = -1;
+	}
+	
+	int getVariationNode() {
+		return variationNode;
+	}
+	
+	void setVariationNode(int variationNode) {
+		this.variationNode = variationNode;
 	}
 
 	/**
@@ -307,6 +377,34 @@ public class Term implements Iterable<TermOccurrence>, Comparable<Term> {
 		return pattern;
 	}
 	
+	/**
+	 * Replaces the syntactic labels, pattern and spotting rule of 
+	 * this term by their canonical instances in a {@link SymbolTable}.
+	 * 
+	 * @see Word#internSymbols(SymbolTable)
+	 * @param symbolTable
+	 */
+	public void internSymbols(SymbolTable symbolTable) {
+		for(TermWord tw:termWords)
+			tw.setSyntacticLabel(symbolTable.intern(tw.getSyntacticLabel()));
+		this.pattern = symbolTable.intern(getPattern());
+		this.spottingRule = symbolTable.intern(this.spottingRule);
+	}
+	
+	/**
+	 * Releases the references taken on a {@link SymbolTable} by 
+	 * {@link #internSymbols(SymbolTable)}, when this term is removed 
+	 * from its term index.
+	 * 
+	 * @param symbolTable
+	 */
+	public void releaseSymbols(SymbolTable symbolTable) {
+		for(TermWord tw:termWords)
+			symbolTable.release(tw.getSyntacticLabel());
+		symbolTable.release(getPattern());
+		symbolTable.release(this.spottingRule);
+	}
+	
 	public List<TermWord> getWords() {
 		return this.termWords;
 	}
@@ -317,15 +415,16 @@ public class Term implements Iterable<TermOccurrence>, Comparable<Term> {
 	
 	public void removeOccurrence(String file, int begin, int end) {
 		// TODO Operation requires a linked list and is still too long. HashMap ?
-		Iterator<TermOccurrence> it = this.occurrences.iterator();
+		Iterator<AbstractTermOccurrence> it = this.occurrences.iterator();
 		while(it.hasNext()) {
-			TermOccurrence occ = it.next();
+			AbstractTermOccurrence occ = it.next();
 			if(occ.getBegin() == begin && occ.getEnd() == end && file.equals(occ.getSourceDocument().getUrl())) {
+				forms.remove(occ.getForm());
 				it.remove();
 				break;
 			}
 		}
-		this.frequency --;
+		FREQUENCY_UPDATER.decrementAndGet(this);
 	}
 	
 	public TermWord firstWord() {
@@ -345,23 +444,30 @@ public class Term implements Iterable<TermOccurrence>, Comparable<Term> {
 	}
 	
 	public boolean isVariant() {
-		return !bases.isEmpty();
+		return !getBases().isEmpty();
 	}
 	
-	public Set<String> getForms() {
-		List<String> forms = Lists.newArrayList();
-		for(TermOccurrence o:getOccurrences())
-			forms.add(o.getForm());
-		LinkedHashMap<String, Integer> counters = TermSuiteUtils.getCounters(forms);
-		return counters.keySet();
+	/**
+	 * The forms of this term's occurrences, by decreasing frequency.
+	 * 
+	 * Forms are counted incrementally, so they are available even if the 
+	 * occurrences were not kept. In that case, only the most frequent forms 
+	 * are counted.
+	 * 
+	 * @return
+	 * 			the forms of this term
+	 */
+	public synchronized Set<String> getForms() {
+		return forms.getForms();
 	}
 	
-	public String getPilot() {
-		Iterator<String> it = getForms().iterator();
-		if(it.hasNext())
-			return it.next();
-		else
-			return NO_OCCURRENCE;
+	public synchronized int getFormFrequency(String form) {
+		return forms.getCount(form);
+	}
+	
+	public synchronized String getPilot() {
+		String pilot = forms.getMostFrequentForm();
+		return pilot == null ? NO_OCCURRENCE : pilot;
 	}
 	
 	
@@ -397,7 +503,7 @@ public class Term implements Iterable<TermOccurrence>, Comparable<Term> {
 			)
 			return;
 			
-		for(TermVariation tv:this.variations) {
+		for(TermVariation tv:getVariations()) {
 			currentPath.add(tv);
 			accu.add(new VariationPath(currentPath));
 			tv.getVariant().accumulateVariations(baseTerm, currentPath, depth-1, accu);
@@ -453,7 +559,7 @@ public class Term implements Iterable<TermOccurrence>, Comparable<Term> {
 		ContextVector vector = new ContextVector(this, useTermClasses);
 		vector.addAllCooccurrences(Iterators.concat(contextIterator(coTermsType, contextSize)));
 		vector.removeCoTerm(this);
-		this.contextVector = Optional.of(vector);
+		replaceContextVector(vector);
 		
 		// 2- filter entries that under the co-occurrence threshold
 		if(cooccFrequencyThreshhold > 1) {
@@ -467,13 +573,13 @@ public class Term implements Iterable<TermOccurrence>, Comparable<Term> {
 	}
 
 	
-	public Iterator<Iterator<TermOccurrence>> contextIterator(final OccurrenceType coTermsType, final int contextSize) {
-		return new AbstractIterator<Iterator<TermOccurrence>>() {
-			private Iterator<TermOccurrence> it = Term.this.occurrences.iterator();
+	public Iterator<Iterator<AbstractTermOccurrence>> contextIterator(final OccurrenceType coTermsType, final int contextSize) {
+		return new AbstractIterator<Iterator<AbstractTermOccurrence>>() {
+			private Iterator<AbstractTermOccurrence> it = Term.this.occurrences.iterator();
 			
 			
 			@Override
-			protected Iterator<TermOccurrence> computeNext() {
+			protected Iterator<AbstractTermOccurrence> computeNext() {
 				if(this.it.hasNext())
 					return it.next().contextIterator(coTermsType, contextSize);
 				else
@@ -495,10 +601,32 @@ public class Term implements Iterable<TermOccurrence>, Comparable<Term> {
 	}
 	
 	public void setContextVector(ContextVector vector) {
-		this.contextVector = Optional.of(vector);
+		replaceContextVector(vector);
 	}
 	public void clearContext() {
-		this.contextVector = Optional.absent();
+		replaceContextVector(null);
+	}
+	
+	private void replaceContextVector(ContextVector vector) {
+		if(this.coTermIndex != null && this.contextVector.isPresent())
+			this.contextVector.get().setCoTermIndex(null);
+		this.contextVector = Optional.fromNullable(vector);
+		if(this.coTermIndex != null && vector != null)
+			vector.setCoTermIndex(this.coTermIndex);
+	}
+	
+	/**
+	 * Attaches this term to a {@link CoTermIndex}. The co-terms of the 
+	 * context vectors of this term will be registered in the index.
+	 * 
+	 * @param coTermIndex
+	 * 			the co-term index, <code>null</code> to detach this term from
+	 * 			its current index
+	 */
+	public void setCoTermIndex(CoTermIndex coTermIndex) {
+		this.coTermIndex = coTermIndex;
+		if(this.contextVector.isPresent())
+			this.contextVector.get().setCoTermIndex(coTermIndex);
 	}
 	
 	public void setTermClass(TermClass termClass) {
@@ -512,12 +640,28 @@ public class Term implements Iterable<TermOccurrence>, Comparable<Term> {
 //		return Math.log10(1 + getWR());
 //	}
 	
+	/**
+	 * The variations of this term, i.e. the ones this term is the base of.
+	 * 
+	 * @return
+	 * 			an unmodifiable view of the variations of this term
+	 */
 	public Set<TermVariation> getVariations() {
-		return Collections.unmodifiableSet(variations);
+		if(variationGraph == null)
+			return Collections.emptySet();
+		return variationGraph.getVariations(this);
 	}
 
+	/**
+	 * The variations this term is the variant of.
+	 * 
+	 * @return
+	 * 			an unmodifiable view of the bases of this term
+	 */
 	public Set<TermVariation> getBases() {
-		return Collections.unmodifiableSet(bases);
+		if(variationGraph == null)
+			return Collections.emptySet();
+		return variationGraph.getBases(this);
 	}
 
 
@@ -547,7 +691,7 @@ public class Term implements Iterable<TermOccurrence>, Comparable<Term> {
 	 * @return
 	 */
 	public Iterable<TermVariation> getVariations(final VariationType... variantTypes) {
-		return IteratorUtils.toIterable(getTermVariationsIterator(this.variations, variantTypes));
+		return IteratorUtils.toIterable(getTermVariationsIterator(getVariations(), variantTypes));
 	}
 	
 	/**
@@ -557,7 +701,7 @@ public class Term implements Iterable<TermOccurrence>, Comparable<Term> {
 	 * @return
 	 */
 	public Iterable<TermVariation> getBases(final VariationType... variantTypes) {
-		return IteratorUtils.toIterable(getTermVariationsIterator(this.bases, variantTypes));
+		return IteratorUtils.toIterable(getTermVariationsIterator(getBases(), variantTypes));
 	}
 	
 	public void setFrequencyNorm(double normalizedTermFrequency) {
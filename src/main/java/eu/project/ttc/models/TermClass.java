@@ -44,7 +44,7 @@ public class TermClass implements Iterable<Term> {
 	
 	private Term head;
 	private Set<Term> terms;
-	private List<TermOccurrence> _occurrences;
+	private List<AbstractTermOccurrence> _occurrences;
 	
 	
 	public TermClass(Term head, Iterable<Term> terms) {
@@ -98,19 +98,19 @@ public class TermClass implements Iterable<Term> {
 	 * 
 	 * @return
 	 */
-	public List<TermOccurrence> getOccurrences() {
+	public List<AbstractTermOccurrence> getOccurrences() {
 		if(_occurrences == null) {
-			List<TermOccurrence> occs = Lists.newArrayList();
+			List<AbstractTermOccurrence> occs = Lists.newArrayList();
 			for(Term t:terms)
 				occs.addAll(t.getOccurrences());
 			Collections.sort(occs, TermOccurrenceUtils.uimaNaturalOrder);
 			this._occurrences = Lists.newArrayList();
 			if(occs.size() > 1) {
 				
-				TermOccurrence last = occs.get(0);
+				AbstractTermOccurrence last = occs.get(0);
 				this._occurrences.add(last);
 				for(int i=1;i<occs.size();i++) {
-					TermOccurrence current = occs.get(i);
+					AbstractTermOccurrence current = occs.get(i);
 					if(last.overlaps(current))
 						continue;
 					else {
@@ -60,10 +60,29 @@ public interface TermIndex {
 	public Term getTermById(int termId);
 //	public TermBuilder newTerm(String termId);
 	public void removeTerm(Term t);
+	
+	/**
+	 * Removes several terms from this index at once, with their variations
+	 * and their entries in custom indexes and context vectors.
+	 * 
+	 * Prefer this method over successive invocations of {@link #removeTerm(Term)} 
+	 * when many terms are removed.
+	 * 
+	 * @param terms
+	 * 			the terms to remove
+	 */
+	public void removeTerms(Collection<Term> terms);
 	public void addTerm(Term term);
 	public Collection<Term> getTerms();
 	public Collection<TermClass> getTermClasses();
 	public void classifyTerms(Term classHead, Iterable<Term> classTerms);
+	
+	/**
+	 * The store of the variations between the terms of this index.
+	 * 
+	 * @return
+	 */
+	public VariationGraph getVariationGraph();
 
 	/*
 	 * Words
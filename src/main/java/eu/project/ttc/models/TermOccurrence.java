@@ -21,17 +21,14 @@
  *******************************************************************************/
 package eu.project.ttc.models;
 
-import java.io.FileReader;
-import java.io.IOException;
-import java.util.Iterator;
-
-import com.google.common.base.Objects;
-import com.google.common.collect.ComparisonChain;
-import com.google.common.io.CharStreams;
-
-import eu.project.ttc.utils.TermUtils;
-
-public class TermOccurrence implements Comparable<TermOccurrence> {
+/**
+ * 
+ * An occurrence of a {@link Term} in a {@link Document}, holding its own state.
+ * 
+ * @author Damien Cram
+ *
+ */
+public class TermOccurrence extends AbstractTermOccurrence {
 	
 	private Term term;
 	private String coveredText;
@@ -58,120 +55,53 @@ public class TermOccurrence implements Comparable<TermOccurrence> {
 		this.begin = begin;
 		this.end = end;
 	}
+	
+	@Override
 	public Term getTerm() {
 		return term;
 	}
 	
+	@Override
 	public String getCoveredText() {
 		return coveredText;
 	}
-	public Document getSourceDocument() {
-		return sourceDocument;
-	}
-	public int getBegin() {
-		return begin;
-	}
-	public int getEnd() {
-		return end;
-	}
 	
 	@Override
-	public int hashCode() {
-		return Objects.hashCode(sourceDocument, begin, end);
-	}
-	
-	@Override
-	public boolean equals(Object obj) {
-		if (obj instanceof TermOccurrence) {
-			TermOccurrence o = (TermOccurrence) obj;
-			return Objects.equal(sourceDocument, o.sourceDocument) 
-					&& Objects.equal(begin, o.begin)
-					&& Objects.equal(end, o.end);
-		} else
-			return false;
+	public Document getSourceDocument() {
+		return sourceDocument;
 	}
 	
 	@Override
-	public int compareTo(TermOccurrence o) {
-		return ComparisonChain.start()
-				.compare(sourceDocument.getUrl(), o.sourceDocument.getUrl())
-				.compare(begin, o.begin)
-				.compare(o.end, end)
-				.result();
-	}
-	
-	public String getForm() {
-		return TermUtils.collapseText(coveredText.toLowerCase());
-	}
-	
-	/**
-	 * 
-	 * @param contextSize
-	 * 			The number of characters before and after the occurrence.
-	 * @return
-	 * @throws IOException 
-	 */
-	public String getTextualContext(int contextSize) throws IOException {
-		FileReader r = new FileReader(sourceDocument.getUrl().replaceFirst("file:", ""));
-		String text = CharStreams.toString(r);
-		r.close();
-		int begin = Math.max(this.begin - contextSize, 0);
-		int end = Math.min(this.end + contextSize, text.length());
-		return TermUtils.collapseText(text.substring(begin, end));
+	public int getBegin() {
+		return begin;
 	}
 	
-	public Iterator<TermOccurrence> contextIterator(OccurrenceType coTermsType, int contextSize) {
-		return this.sourceDocument.getOccurrenceContext(this, coTermsType, contextSize);
-	}
-
 	@Override
-	public String toString() {
-		return getForm();
+	public int getEnd() {
+		return end;
 	}
 	
 	void setTerm(Term term2) {
 		this.term = term2;
 	}
 	
+	@Override
 	int getOccurrenceIndex() {
 		return occurrenceIndex;
 	}
 	
+	@Override
 	void setOccurrenceIndex(int occurrenceIndex) {
 		this.occurrenceIndex = occurrenceIndex;
 	}
 	
-	
-	/**
-	 * True if this occurrence is marked as primary, i.e. if
-	 * it can be considered as a true occurrence of term in a 
-	 * non-overlapping sequence of term occurrences
-	 * 
-	 * 
-	 * @return
-	 */
+	@Override
 	public boolean isPrimaryOccurrence() {
 		return primaryOccurrence;
 	}
 
+	@Override
 	public void setPrimaryOccurrence(boolean primaryOccurrence) {
 		this.primaryOccurrence = primaryOccurrence;
 	}
-	
-	/**
-	 * True if both source documents are the same and if the 
-	 * offsets in the document overlaps.
-	 * 
-	 * The overlap is interpreted in the sense of opening intervals. I.e
-	 * if the begin of the second interval is the end of the first interval, this
-	 * is not an overlap.
-	 * 
-	 * @param theOcc
-	 * @return
-	 */
-	public boolean overlaps(TermOccurrence theOcc) {
-		return this.sourceDocument.equals(theOcc.sourceDocument) 
-				  && this.begin < theOcc.end 
-				  && theOcc.begin < this.end;
-	}
 }
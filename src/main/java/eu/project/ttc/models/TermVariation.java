@@ -32,9 +32,12 @@ public class TermVariation {
 	private Object info;
 	private String _label;
 	
-	private boolean includedIn;
-	private boolean prefixOf;
-	private boolean suffixOf;
+	/*
+	 * Affix flags, computed on demand
+	 */
+	private Boolean includedIn;
+	private Boolean prefixOf;
+	private Boolean suffixOf;
 	
 	public TermVariation(VariationType variationType, Term base, Term variant, Object info) {
 		super();
@@ -42,9 +45,6 @@ public class TermVariation {
 		this.base = base;
 		this.variant = variant;
 		this.info = info;
-		this.includedIn = TermUtils.isIncludedIn(base, variant);
-		this.prefixOf = TermUtils.isPrefixOf(base, variant);
-		this.suffixOf = TermUtils.isSuffixOf(base, variant);
 	}
 	
 	public VariationType getVariationType() {
@@ -70,7 +70,8 @@ public class TermVariation {
 	
 	@Override
 	public int hashCode() {
-		return Objects.hashCode(this.base, this.variant, this.variationType, this.info);
+		// consistent with #equals(Object), which ignores the variation type
+		return Objects.hashCode(this.base, this.variant, this.info);
 	}
 	
 	public String getLabel() {
@@ -90,14 +91,20 @@ public class TermVariation {
 	}
 	
 	public boolean isIncludedIn() {
+		if(includedIn == null)
+			includedIn = TermUtils.isIncludedIn(base, variant);
 		return includedIn;
 	}
 	
 	public boolean isSuffixOf() {
+		if(suffixOf == null)
+			suffixOf = TermUtils.isSuffixOf(base, variant);
 		return suffixOf;
 	}
 	
 	public boolean isPrefixOf() {
+		if(prefixOf == null)
+			prefixOf = TermUtils.isPrefixOf(base, variant);
 		return prefixOf;
 	}
 }
@@ -54,6 +54,10 @@ public class TermWord {
 		return word;
 	}
 	
+	void setSyntacticLabel(String syntacticlabel) {
+		this.syntacticlabel = syntacticlabel;
+	}
+	
 
 	@Override
 	public String toString() {
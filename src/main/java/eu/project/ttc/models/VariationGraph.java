@@ -0,0 +1,559 @@
+/*******************************************************************************
+ * Copyright 2015 - CNRS (Centre National de Recherche Scientifique)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ *******************************************************************************/
+package eu.project.ttc.models;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ *
+ * The store of the {@link TermVariation}s between the terms of a {@link TermIndex}.
+ *
+ * Variations are kept as rows of primitive arrays (base, variant, type,
+ * info) instead of objects. {@link Term#getVariations()} and {@link Term#getBases()}
+ * are views over this store, the {@link TermVariation} objects being built
+ * when they are iterated.
+ *
+ * Variations are first added to a mutable delta buffer. Once they are
+ * gathered, {@link #freeze()} compacts them into compressed sparse rows,
+ * with forward (base to variants) and reverse (variant to bases) adjacency.
+ * Variations added or removed after a freeze go to the delta buffer again
+ * until the next freeze.
+ *
+ * As in {@link TermVariation#equals(Object)}, a variation is identified by its
+ * base, its variant and its info, regardless of its type: adding a variation
+ * that only differs from an existing one by its type does nothing. Variations
+ * are found through an open-addressing hash table of the edges, so adding and
+ * removing a variation does not depend on the number of variations of its terms.
+ *
+ * Updates are synchronized. Like the former per-term sets, the views are not: 
+ * they must not be read while the graph is updated from another thread, and 
+ * their iterators fail fast if the graph is updated while iterating.
+ *
+ * @author Damien Cram
+ *
+ */
+public class VariationGraph {
+	private static final int NULL_INFO = -1;
+
+	/*
+	 * Info ids of the variations whose info is a {@link Double} score
+	 */
+	private static final int SCORE_INFO = -2;
+
+	private static final VariationType[] TYPES = VariationType.values();
+
+	/*
+	 * The nodes of the graph. The node of a term attached to this graph
+	 * is kept by the term itself, the ones of other terms in foreignNodes.
+	 */
+	private List<Term> nodes = Lists.newArrayList();
+	private Map<Term, Integer> foreignNodes = Maps.newHashMap();
+
+	/*
+	 * The variations
+	 */
+	private int nbEdges = 0;
+	private int[] bases = new int[16];
+	private int[] variants = new int[16];
+	private byte[] types = new byte[16];
+	private int[] infos = new int[16];
+	private double[] scores = new double[16];
+	private BitSet removed = new BitSet();
+	private int nbRemoved = 0;
+	private volatile int modCount = 0;
+
+	/*
+	 * The edge table: edge + 1 by hash of (base, variant, info), 0 for empty slots.
+	 * Removed edges stay in the table until the next freeze.
+	 */
+	private int[] edgeTable = new int[32];
+
+	/*
+	 * Non-score infos, by id
+	 */
+	private List<Object> infoTable = Lists.newArrayList();
+	private Map<Object, Integer> infoIds = Maps.newHashMap();
+
+	/*
+	 * The compressed sparse rows of the frozen variations [0, frozenEdges),
+	 * sorted by base node. The variations of node n are [outOffsets[n], outOffsets[n+1]),
+	 * its bases are inEdges[inOffsets[n]] to inEdges[inOffsets[n+1] - 1].
+	 */
+	private int frozenEdges = 0;
+	private int frozenNodes = 0;
+	private int[] outOffsets = new int[1];
+	private int[] inOffsets = new int[1];
+	private int[] inEdges = new int[0];
+
+	/*
+	 * The delta buffer: variations added since the last freeze, by node
+	 */
+	private int[][] deltaOut = new int[16][];
+	private int[] deltaOutSizes = new int[16];
+	private int[][] deltaIn = new int[16][];
+	private int[] deltaInSizes = new int[16];
+
+	/**
+	 * Attaches a term to this graph, unless it is already attached
+	 * to another one.
+	 *
+	 * @param term
+	 */
+	public synchronized void attach(Term term) {
+		if(term.getVariationGraph() == null)
+			term.setVariationGraph(this);
+	}
+
+	synchronized void addVariation(Term base, Term variant, VariationType type, Object info) {
+		int baseNode = getOrCreateNode(base);
+		int variantNode = getOrCreateNode(variant);
+		if(findEdge(baseNode, variantNode, info) != -1)
+			return;
+		modCount++;
+		int e = nbEdges;
+		if(e == bases.length) {
+			int capacity = Math.max(16, 2 * bases.length);
+			bases = Arrays.copyOf(bases, capacity);
+			variants = Arrays.copyOf(variants, capacity);
+			types = Arrays.copyOf(types, capacity);
+			infos = Arrays.copyOf(infos, capacity);
+			scores = Arrays.copyOf(scores, capacity);
+		}
+		bases[e] = baseNode;
+		variants[e] = variantNode;
+		types[e] = (byte) type.ordinal();
+		if(info instanceof Double) {
+			infos[e] = SCORE_INFO;
+			scores[e] = (Double) info;
+		} else
+			infos[e] = getInfoId(info);
+		nbEdges++;
+		if(2 * nbEdges > edgeTable.length)
+			rehash(2 * edgeTable.length);
+		else
+			insertEdge(e);
+		append(deltaOut, deltaOutSizes, baseNode, e);
+		append(deltaIn, deltaInSizes, variantNode, e);
+	}
+
+	synchronized void removeVariation(TermVariation variation) {
+		int baseNode = getNode(variation.getBase());
+		int variantNode = getNode(variation.getVariant());
+		if(baseNode == -1 || variantNode == -1)
+			return;
+		int e = findEdge(baseNode, variantNode, variation.getInfo());
+		if(e == -1)
+			return;
+		modCount++;
+		if(e >= frozenEdges) {
+			remove(deltaOut[baseNode], deltaOutSizes, baseNode, e);
+			remove(deltaIn[variantNode], deltaInSizes, variantNode, e);
+		}
+		removed.set(e);
+		nbRemoved++;
+	}
+
+	Set<TermVariation> getVariations(Term term) {
+		return new VariationSet(term, true);
+	}
+
+	Set<TermVariation> getBases(Term term) {
+		return new VariationSet(term, false);
+	}
+
+	/**
+	 * Compacts all variations into compressed sparse rows and clears the
+	 * delta buffer. The terms having no variation anymore are dropped from
+	 * the graph.
+	 */
+	public synchronized void freeze() {
+		modCount++;
+		// renumber the nodes having variations
+		int[] newNodes = new int[nodes.size()];
+		Arrays.fill(newNodes, -1);
+		int nbNodes = 0;
+		for(int e = 0; e < nbEdges; e++) {
+			if(removed.get(e))
+				continue;
+			newNodes[bases[e]] = 0;
+			newNodes[variants[e]] = 0;
+		}
+		List<Term> keptNodes = Lists.newArrayListWithCapacity(nodes.size());
+		for(int n = 0; n < nodes.size(); n++) {
+			Term term = nodes.get(n);
+			if(newNodes[n] == 0) {
+				newNodes[n] = nbNodes++;
+				keptNodes.add(term);
+				setNode(term, newNodes[n]);
+			} else
+				setNode(term, -1);
+		}
+
+		// sort the variations by base, keeping their insertion order
+		int nbLive = nbEdges - nbRemoved;
+		int[] newOutOffsets = new int[nbNodes + 1];
+		int[] newInOffsets = new int[nbNodes + 1];
+		for(int e = 0; e < nbEdges; e++) {
+			if(removed.get(e))
+				continue;
+			newOutOffsets[newNodes[bases[e]] + 1]++;
+			newInOffsets[newNodes[variants[e]] + 1]++;
+		}
+		for(int n = 0; n < nbNodes; n++) {
+			newOutOffsets[n + 1] += newOutOffsets[n];
+			newInOffsets[n + 1] += newInOffsets[n];
+		}
+		int[] outCursors = Arrays.copyOf(newOutOffsets, nbNodes);
+		int[] newBases = new int[nbLive];
+		int[] newVariants = new int[nbLive];
+		byte[] newTypes = new byte[nbLive];
+		int[] newInfos = new int[nbLive];
+		double[] newScores = new double[nbLive];
+		for(int e = 0; e < nbEdges; e++) {
+			if(removed.get(e))
+				continue;
+			int ne = outCursors[newNodes[bases[e]]]++;
+			newBases[ne] = newNodes[bases[e]];
+			newVariants[ne] = newNodes[variants[e]];
+			newTypes[ne] = types[e];
+			newInfos[ne] = infos[e];
+			newScores[ne] = scores[e];
+		}
+		int[] inCursors = Arrays.copyOf(newInOffsets, nbNodes);
+		int[] newInEdges = new int[nbLive];
+		for(int e = 0; e < nbLive; e++)
+			newInEdges[inCursors[newVariants[e]]++] = e;
+
+		this.nodes = keptNodes;
+		this.nbEdges = nbLive;
+		this.bases = newBases;
+		this.variants = newVariants;
+		this.types = newTypes;
+		this.infos = newInfos;
+		this.scores = newScores;
+		this.removed = new BitSet();
+		this.nbRemoved = 0;
+		this.frozenEdges = nbLive;
+		this.frozenNodes = nbNodes;
+		this.outOffsets = newOutOffsets;
+		this.inOffsets = newInOffsets;
+		this.inEdges = newInEdges;
+		this.deltaOut = new int[Math.max(16, nbNodes)][];
+		this.deltaOutSizes = new int[deltaOut.length];
+		this.deltaIn = new int[deltaOut.length][];
+		this.deltaInSizes = new int[deltaOut.length];
+		rehash(edgeTable.length);
+	}
+
+	/**
+	 * The number of variations in this graph.
+	 *
+	 * @return
+	 */
+	public synchronized int size() {
+		return nbEdges - nbRemoved;
+	}
+
+	/**
+	 * The number of variations added or removed since the last {@link #freeze()}.
+	 *
+	 * @return
+	 */
+	public synchronized int getDeltaSize() {
+		return nbEdges - frozenEdges + nbRemoved;
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this)
+				.add("nodes", nodes.size())
+				.add("size", size())
+				.add("delta", getDeltaSize())
+				.toString();
+	}
+
+	private int getNode(Term term) {
+		if(term.getVariationGraph() == this)
+			return term.getVariationNode();
+		Integer node = foreignNodes.get(term);
+		return node == null ? -1 : node;
+	}
+
+	private void setNode(Term term, int node) {
+		if(term.getVariationGraph() == this)
+			term.setVariationNode(node);
+		else if(node == -1)
+			foreignNodes.remove(term);
+		else
+			foreignNodes.put(term, node);
+	}
+
+	private int getOrCreateNode(Term term) {
+		int node = getNode(term);
+		if(node == -1) {
+			node = nodes.size();
+			nodes.add(term);
+			setNode(term, node);
+			if(node == deltaOut.length) {
+				deltaOut = Arrays.copyOf(deltaOut, 2 * node);
+				deltaOutSizes = Arrays.copyOf(deltaOutSizes, 2 * node);
+				deltaIn = Arrays.copyOf(deltaIn, 2 * node);
+				deltaInSizes = Arrays.copyOf(deltaInSizes, 2 * node);
+			}
+		}
+		return node;
+	}
+
+	private int getInfoId(Object info) {
+		if(info == null)
+			return NULL_INFO;
+		Integer id = infoIds.get(info);
+		if(id == null) {
+			id = infoTable.size();
+			infoTable.add(info);
+			infoIds.put(info, id);
+		}
+		return id;
+	}
+
+	private Object getInfo(int e) {
+		switch(infos[e]) {
+		case NULL_INFO:
+			return null;
+		case SCORE_INFO:
+			return scores[e];
+		default:
+			return infoTable.get(infos[e]);
+		}
+	}
+
+	/*
+	 * The live edge from a base to a variant having the given info, -1 if none
+	 */
+	private int findEdge(int baseNode, int variantNode, Object info) {
+		int infoId;
+		long infoBits;
+		if(info instanceof Double) {
+			infoId = SCORE_INFO;
+			infoBits = Double.doubleToLongBits((Double) info);
+		} else if(info == null) {
+			infoId = NULL_INFO;
+			infoBits = NULL_INFO;
+		} else {
+			Integer id = infoIds.get(info);
+			if(id == null)
+				return -1;
+			infoId = id;
+			infoBits = id;
+		}
+		int mask = edgeTable.length - 1;
+		for(int i = hash(baseNode, variantNode, infoBits) & mask; edgeTable[i] != 0; i = (i + 1) & mask) {
+			int e = edgeTable[i] - 1;
+			if(bases[e] == baseNode 
+					&& variants[e] == variantNode 
+					&& infos[e] == infoId 
+					&& getInfoBits(e) == infoBits
+					&& !removed.get(e))
+				return e;
+		}
+		return -1;
+	}
+	
+	private long getInfoBits(int e) {
+		return infos[e] == SCORE_INFO ? Double.doubleToLongBits(scores[e]) : infos[e];
+	}
+	
+	private static int hash(int baseNode, int variantNode, long infoBits) {
+		long h = (31L * baseNode + variantNode) * 0x9E3779B97F4A7C15L + infoBits * 0xC2B2AE3D27D4EB4FL;
+		return (int) (h ^ (h >>> 32));
+	}
+	
+	private void insertEdge(int e) {
+		int mask = edgeTable.length - 1;
+		int i = hash(bases[e], variants[e], getInfoBits(e)) & mask;
+		while(edgeTable[i] != 0)
+			i = (i + 1) & mask;
+		edgeTable[i] = e + 1;
+	}
+	
+	/*
+	 * Rebuilds the edge table with the given capacity, or more 
+	 * if needed, dropping the removed edges.
+	 */
+	private void rehash(int capacity) {
+		while(capacity < 2 * nbEdges)
+			capacity *= 2;
+		this.edgeTable = new int[capacity];
+		for(int e = 0; e < nbEdges; e++)
+			if(!removed.get(e))
+				insertEdge(e);
+	}
+
+	private static void append(int[][] lists, int[] sizes, int node, int e) {
+		if(lists[node] == null)
+			lists[node] = new int[2];
+		else if(sizes[node] == lists[node].length)
+			lists[node] = Arrays.copyOf(lists[node], 2 * sizes[node]);
+		lists[node][sizes[node]++] = e;
+	}
+
+	private static void remove(int[] list, int[] sizes, int node, int e) {
+		for(int k = 0; k < sizes[node]; k++) {
+			if(list[k] == e) {
+				System.arraycopy(list, k + 1, list, k, sizes[node] - k - 1);
+				sizes[node]--;
+				return;
+			}
+		}
+	}
+
+	private int count(Term term, boolean forward) {
+		int node = getNode(term);
+		if(node == -1)
+			return 0;
+		int count = 0;
+		if(node < frozenNodes) {
+			if(forward) {
+				for(int e = outOffsets[node]; e < outOffsets[node + 1]; e++)
+					if(!removed.get(e))
+						count++;
+			} else {
+				for(int k = inOffsets[node]; k < inOffsets[node + 1]; k++)
+					if(!removed.get(inEdges[k]))
+						count++;
+			}
+		}
+		return count + (forward ? deltaOutSizes[node] : deltaInSizes[node]);
+	}
+
+	private TermVariation toVariation(int e) {
+		return new TermVariation(
+				TYPES[types[e]],
+				nodes.get(bases[e]),
+				nodes.get(variants[e]),
+				getInfo(e));
+	}
+
+	/*
+	 * A read-only view of the variations or the bases of a term.
+	 */
+	private class VariationSet extends AbstractSet<TermVariation> {
+		private Term term;
+		private boolean forward;
+
+		private VariationSet(Term term, boolean forward) {
+			super();
+			this.term = term;
+			this.forward = forward;
+		}
+
+		@Override
+		public Iterator<TermVariation> iterator() {
+			return new VariationIterator(getNode(term), forward);
+		}
+
+		@Override
+		public int size() {
+			return count(term, forward);
+		}
+		
+		@Override
+		public boolean isEmpty() {
+			return !iterator().hasNext();
+		}
+	}
+	
+	/*
+	 * Iterates over the frozen edges of a node, then over its delta edges, 
+	 * building the variations on the fly.
+	 */
+	private class VariationIterator implements Iterator<TermVariation> {
+		private int node;
+		private boolean forward;
+		private int expectedModCount;
+		private int frozenCursor;
+		private int frozenEnd;
+		private int deltaCursor = 0;
+		private int next = -1;
+		
+		private VariationIterator(int node, boolean forward) {
+			super();
+			this.node = node;
+			this.forward = forward;
+			this.expectedModCount = modCount;
+			if(node != -1 && node < frozenNodes) {
+				this.frozenCursor = forward ? outOffsets[node] : inOffsets[node];
+				this.frozenEnd = forward ? outOffsets[node + 1] : inOffsets[node + 1];
+			}
+			advance();
+		}
+		
+		private void advance() {
+			next = -1;
+			if(node == -1)
+				return;
+			while(frozenCursor < frozenEnd) {
+				int e = forward ? frozenCursor : inEdges[frozenCursor];
+				frozenCursor++;
+				if(!removed.get(e)) {
+					next = e;
+					return;
+				}
+			}
+			if(deltaCursor < (forward ? deltaOutSizes[node] : deltaInSizes[node]))
+				next = (forward ? deltaOut[node] : deltaIn[node])[deltaCursor++];
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next != -1;
+		}
+
+		@Override
+		public TermVariation next() {
+			if(modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+			if(next == -1)
+				throw new NoSuchElementException();
+			TermVariation variation = toVariation(next);
+			advance();
+			return variation;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -27,6 +27,7 @@ import com.google.common.base.MoreObjects;
 import com.google.common.collect.ImmutableList;
 
 import eu.project.ttc.utils.StringUtils;
+import eu.project.ttc.utils.SymbolTable;
 
 public class Word extends LemmaStemHolder {
 	
@@ -49,11 +50,22 @@ public class Word extends LemmaStemHolder {
 		return stem;
 	}
 
-	public void setStem(String stem) {
-		this.stem = stem;
+	public synchronized void setStem(String stem) {
+		if(this.symbolTable != null) {
+			this.symbolTable.release(this.stem);
+			this.symbolTable.release(this.normalizedStem);
+		}
+		this.stem = intern(stem);
+		this.normalizedStem = null;
 	}
 
-	public void setComposition(List<Component> components) {
+	public synchronized void setComposition(List<Component> components) {
+		if(this.symbolTable != null) {
+			for(Component c:this.components)
+				this.symbolTable.release(c.getLemma());
+			for(Component c:components)
+				c.setLemma(intern(c.getLemma()));
+		}
 		this.components = ImmutableList.copyOf(components);
 	}
 	
@@ -94,15 +106,78 @@ public class Word extends LemmaStemHolder {
 
 	private String normalizedStem;
 	public String getNormalizedStem() {
+		String normalized = this.normalizedStem;
+		return normalized == null ? initNormalizedStem() : normalized;
+	}
+
+	private synchronized String initNormalizedStem() {
 		if(normalizedStem == null)
-			this.normalizedStem = StringUtils.replaceAccents(stem).toLowerCase();
+			this.normalizedStem = intern(StringUtils.replaceAccents(stem).toLowerCase());
 		return this.normalizedStem;
 	}
 
 	private String normalizedLemma;
 	public String getNormalizedLemma() {
+		String normalized = this.normalizedLemma;
+		return normalized == null ? initNormalizedLemma() : normalized;
+	}
+	
+	private synchronized String initNormalizedLemma() {
 		if(normalizedLemma == null)
-			this.normalizedLemma = StringUtils.replaceAccents(this.lemma).toLowerCase();
+			this.normalizedLemma = intern(StringUtils.replaceAccents(this.lemma).toLowerCase());
 		return this.normalizedLemma;
 	}
+	
+	/*
+	 * The table this word has interned its symbols to, if any.
+	 */
+	private SymbolTable symbolTable;
+	
+	private String intern(String symbol) {
+		return symbolTable == null ? symbol : symbolTable.intern(symbol);
+	}
+	
+	/**
+	 * Replaces the lemmas and stems of this word and of its components 
+	 * by their canonical instances in a {@link SymbolTable}.
+	 * 
+	 * Normalized lemmas and stems are interned on first access.
+	 * 
+	 * @see #releaseSymbols()
+	 * @param symbolTable
+	 * @return
+	 * 			<code>true</code> if the symbols have been interned, <code>false</code>
+	 * 			if this word had already interned them.
+	 */
+	public synchronized boolean internSymbols(SymbolTable symbolTable) {
+		if(this.symbolTable == null) {
+			this.symbolTable = symbolTable;
+			this.lemma = intern(this.lemma);
+			this.stem = intern(this.stem);
+			this.normalizedLemma = intern(this.normalizedLemma);
+			this.normalizedStem = intern(this.normalizedStem);
+			for(Component c:components)
+				c.setLemma(intern(c.getLemma()));
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Releases the symbols interned by this word, when it is 
+	 * removed from its term index.
+	 * 
+	 * @see #internSymbols(SymbolTable)
+	 */
+	public synchronized void releaseSymbols() {
+		if(this.symbolTable != null) {
+			this.symbolTable.release(this.lemma);
+			this.symbolTable.release(this.stem);
+			this.symbolTable.release(this.normalizedLemma);
+			this.symbolTable.release(this.normalizedStem);
+			for(Component c:components)
+				this.symbolTable.release(c.getLemma());
+			this.symbolTable = null;
+		}
+	}
 }
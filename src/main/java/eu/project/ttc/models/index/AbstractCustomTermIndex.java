@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright 2015 - CNRS (Centre National de Recherche Scientifique)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ *******************************************************************************/
+package eu.project.ttc.models.index;
+
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.project.ttc.models.Term;
+
+/**
+ * 
+ * The deferred build shared by {@link CustomTermIndex} implementations.
+ * 
+ * A deferred index is built from a live view of the terms of a term index 
+ * on first access. Until then, {@link #indexTerm(Term)} and {@link #removeTerm(Term)} 
+ * do nothing, since the view already reflects added and removed terms.
+ * 
+ * @author Damien Cram
+ *
+ */
+abstract class AbstractCustomTermIndex implements CustomTermIndex {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(AbstractCustomTermIndex.class);
+	
+	/*
+	 * The max number of terms indexed by a single fork-join task
+	 */
+	static final int TASK_SIZE = 20000;
+	
+	static final ForkJoinPool POOL = new ForkJoinPool();
+
+	private String name;
+
+	/*
+	 * The terms to index on first access, if this index is deferred
+	 */
+	private Collection<Term> deferredTerms;
+	private volatile boolean built;
+	
+	AbstractCustomTermIndex(String name) {
+		super();
+		this.name = name;
+		this.built = true;
+	}
+
+	/**
+	 * Creates a deferred index.
+	 * 
+	 * @param name
+	 * 			the name of the value provider, for logging
+	 * @param terms
+	 * 			the live view of the terms to index
+	 */
+	AbstractCustomTermIndex(String name, Collection<Term> terms) {
+		super();
+		this.name = name;
+		this.deferredTerms = terms;
+		this.built = false;
+	}
+	
+	/**
+	 * @return
+	 * 			<code>false</code> if this index is deferred and 
+	 * 			has not been accessed yet
+	 */
+	boolean isBuilt() {
+		return built;
+	}
+	
+	/**
+	 * Builds this index from the deferred terms if it is not built yet.
+	 * Must be called before any access to the entries.
+	 */
+	void ensureBuilt() {
+		if(!built) {
+			synchronized(this) {
+				if(!built) {
+					LOGGER.debug("Indexing {} terms to index {}", deferredTerms.size(), name);
+					clearEntries();
+					indexTerms(deferredTerms);
+					this.deferredTerms = null;
+					this.built = true;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Removes all entries, before the deferred terms are indexed.
+	 */
+	abstract void clearEntries();
+	
+	/**
+	 * Indexes a collection of terms at once.
+	 * 
+	 * @param terms
+	 */
+	abstract void indexTerms(Collection<Term> terms);
+}
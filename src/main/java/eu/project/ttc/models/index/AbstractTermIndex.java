@@ -0,0 +1,653 @@
+/*******************************************************************************
+ * Copyright 2015 - CNRS (Centre National de Recherche Scientifique)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ *******************************************************************************/
+package eu.project.ttc.models.index;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import eu.project.ttc.engines.desc.Lang;
+import eu.project.ttc.models.AbstractTermOccurrence;
+import eu.project.ttc.models.CoTermIndex;
+import eu.project.ttc.models.Document;
+import eu.project.ttc.models.OccurrenceStore;
+import eu.project.ttc.models.Term;
+import eu.project.ttc.models.TermBuilder;
+import eu.project.ttc.models.TermClass;
+import eu.project.ttc.models.TermIndex;
+import eu.project.ttc.models.TermOccurrence;
+import eu.project.ttc.models.TermVariation;
+import eu.project.ttc.models.TermWord;
+import eu.project.ttc.models.VariationGraph;
+import eu.project.ttc.models.Word;
+import eu.project.ttc.types.TermOccAnnotation;
+import eu.project.ttc.types.WordAnnotation;
+import eu.project.ttc.utils.SymbolTable;
+import eu.project.ttc.utils.TermSuiteUtils;
+
+/**
+ * 
+ * The indexing logic shared by in-memory {@link TermIndex} implementations.
+ * 
+ * Subclasses only choose the maps and sets backing the index, and how
+ * the registration of new terms and words is guarded.
+ * 
+ * @see MemoryTermIndex
+ * @see ConcurrentTermIndex
+ * @author Damien Cram
+ *
+ */
+abstract class AbstractTermIndex implements TermIndex {
+	private static final String MSG_NO_SUCH_PROVIDER = "No such value provider: %s";
+	private static final String MEASURE_WR = "wr";
+	private static final String MEASURE_WRLOG = "wrLog";
+	private static final String MEASURE_FREQUENCY = "frequency";
+
+	/*
+	 * The root index of terms. Variants must not be referenced at 
+	 * this level of index. They me be indexed from their base-term
+	 * instead. 
+	 */
+	final TermIdTable termsById = new TermIdTable();
+	final Map<String, Term> termsByGroupingKey = newMap();
+	
+	/*
+	 * The single-word and multi-word partitions of the index
+	 */
+	final Set<Term> singleWordTerms = newSet();
+	final Set<Term> multiWordTerms = newSet();
+	
+	/*
+	 * Grouping key hashes of terms, so that spotted occurrences can be 
+	 * resolved to their terms without building their grouping key strings.
+	 */
+	final TermHashTable termsByGroupingKeyHash = new TermHashTable();
+	final Map<String, CustomTermIndex> customIndexes = newMap();
+	final Map<String, Word> wordIndex = newMap();
+	final Map<String, Document> documents = newMap();
+	final Set<TermClass> termClasses = newSet();
+	private Map<String, TermMeasure> termMeasures = Maps.newHashMap();
+	private VariationGraph variationGraph = new VariationGraph();
+	
+	/*
+	 * The canonical instances of lemmas, stems, labels and patterns
+	 */
+	final SymbolTable symbolTable = new SymbolTable();
+	
+	private String name;
+	private Lang lang;
+	private volatile String corpusId;
+	
+	private volatile int nbWordAnnotations = 0;
+	private AtomicInteger nbSpottedTerms = new AtomicInteger(0);
+	
+	/*
+	 * The columnar store holding the occurrences of all terms, if any.
+	 */
+	private Optional<OccurrenceStore> occurrenceStore;
+	
+	/*
+	 * The reverse index of context vectors, if enabled.
+	 */
+	private Optional<CoTermIndex> coTermIndex = Optional.absent();
+
+	AbstractTermIndex(String name, Lang lang, Optional<OccurrenceStore> occurrenceStore) {
+		this.lang = lang;
+		this.name = name;
+		this.occurrenceStore = occurrenceStore;
+		this.termMeasures.put(MEASURE_WR, new WRMeasure(this));
+		this.termMeasures.put(MEASURE_WRLOG, new WRLogMeasure(this));
+		this.termMeasures.put(MEASURE_FREQUENCY, new FrequencyMeasure(this));
+	}
+	
+	/**
+	 * Creates an empty map backing this index. Invoked at construction time.
+	 */
+	abstract <K, V> Map<K, V> newMap();
+	
+	/**
+	 * Creates an empty set backing this index. Invoked at construction time.
+	 */
+	abstract <E> Set<E> newSet();
+	
+	/**
+	 * Maps a key to a value in a map created by {@link #newMap()},
+	 * unless the key is already mapped.
+	 * 
+	 * @return
+	 * 			the value already mapped to the key, <code>null</code> if 
+	 * 			the value has been put.
+	 */
+	abstract <K, V> V putIfAbsent(Map<K, V> map, K key, V value);
+	
+	public void inspect() {
+		System.out.format("termsById: %d\n", termsById.size());
+		System.out.format("termsByGroupingKey: %d\n", termsByGroupingKey.size());
+		System.out.format("wordIndex: %d\n", wordIndex.size());
+		System.out.format("documents: %d\n", documents.size());
+		System.out.format("termClasses: %d\n", termClasses.size());
+		System.out.format("customIndexes: %d\n", customIndexes.size());
+		for(Document d:documents.values()) {
+			d.inspect("\t");
+		}
+	}
+	
+	public Optional<OccurrenceStore> getOccurrenceStore() {
+		return occurrenceStore;
+	}
+	
+	/**
+	 * Maintains a {@link CoTermIndex} over the context vectors of 
+	 * all terms of this index, so that terms can be removed from 
+	 * context vectors without scanning them all.
+	 */
+	public void enableCoTermIndex() {
+		if(!this.coTermIndex.isPresent()) {
+			this.coTermIndex = Optional.of(new CoTermIndex());
+			for(Term t:termsById)
+				t.setCoTermIndex(this.coTermIndex.get());
+		}
+	}
+	
+	public Optional<CoTermIndex> getCoTermIndex() {
+		return coTermIndex;
+	}
+	
+	public SymbolTable getSymbolTable() {
+		return symbolTable;
+	}
+
+	@Override
+	public void addTerm(Term term) {
+		Preconditions.checkNotNull(term.getId());
+		Preconditions.checkArgument(registerTermIfAbsent(term) == null);
+	}
+
+	/**
+	 * Indexes a term, unless another term with the same grouping 
+	 * key is already indexed.
+	 * 
+	 * The term is published in termsByGroupingKey last, so that a term 
+	 * found by its grouping key is always fully registered.
+	 * 
+	 * @param term
+	 * @return
+	 * 			the term already indexed under the grouping key, <code>null</code> 
+	 * 			if the term has been indexed.
+	 */
+	Term registerTermIfAbsent(Term term) {
+		Term indexed = this.termsByGroupingKey.get(term.getGroupingKey());
+		if(indexed == null) {
+			registerTerm(term);
+			this.termsByGroupingKey.put(term.getGroupingKey(), term);
+		}
+		return indexed;
+	}
+
+	private void registerTerm(Term term) {
+		this.termsById.put(term.getId(), term);
+		term.internSymbols(this.symbolTable);
+		this.termsByGroupingKeyHash.put(TermSuiteUtils.getGroupingKeyHash(term.getGroupingKey()), term);
+		(term.isSingleWord() ? this.singleWordTerms : this.multiWordTerms).add(term);
+		if(this.occurrenceStore.isPresent())
+			term.setOccurrenceStore(this.occurrenceStore.get());
+		if(this.coTermIndex.isPresent())
+			term.setCoTermIndex(this.coTermIndex.get());
+		this.variationGraph.attach(term);
+		for(CustomTermIndex termIndex:this.customIndexes.values())
+			termIndex.indexTerm(term);
+		for(TermWord tw:term.getWords())
+			registerWord(tw.getWord());
+	}
+	
+	/**
+	 * Interns the symbols of a word and indexes it under its lemma, 
+	 * unless this word or another word with the same lemma is already 
+	 * indexed.
+	 * 
+	 * A word that is not indexed shares the canonical instances of 
+	 * its symbols, but holds no reference to them in the symbol table, 
+	 * since it is never released by {@link #cleanOrphanWords()}.
+	 * 
+	 * @param word
+	 * @return
+	 * 			the other word already indexed under the lemma, <code>null</code> 
+	 * 			otherwise.
+	 */
+	Word registerWord(Word word) {
+		Word indexed = this.wordIndex.get(word.getLemma());
+		if(indexed != word) {
+			boolean interned = word.internSymbols(this.symbolTable);
+			if(indexed == null)
+				indexed = putIfAbsent(this.wordIndex, word.getLemma(), word);
+			if(indexed != null && interned)
+				word.releaseSymbols();
+		}
+		return indexed == word ? null : indexed;
+	}
+	
+	/**
+	 * Releases the id of a term that has lost its grouping key 
+	 * to a concurrently registered term.
+	 * 
+	 * @param id
+	 */
+	void releaseId(int id) {
+		this.termsById.release(id);
+	}
+
+	@Override
+	public void addWord(Word word) {
+		Preconditions.checkArgument(registerWord(word) == null);
+	}
+
+	@Override
+	public Collection<Term> getTerms() {
+		return Collections.unmodifiableCollection(this.termsByGroupingKey.values());
+	}
+
+	@Override
+	public Word getWord(String wordId) {
+		return this.wordIndex.get(wordId);
+	}
+
+	public Word addWord(WordAnnotation anno) {
+		Word word = this.wordIndex.get(anno.getLemma());
+		if(word == null) {
+			Word newWord = new Word(anno.getLemma(), anno.getStem());
+			word = registerWord(newWord);
+			if(word == null)
+				word = newWord;
+		}
+		return word;
+	}
+
+	/**
+	 * Resolves a spotted occurrence to its term.
+	 * 
+	 * @param annotation
+	 * @return
+	 * 			the term, <code>null</code> if the occurrence does not belong
+	 * 			to any term of this index yet.
+	 */
+	Term findTerm(TermOccAnnotation annotation) {
+		Term term = this.termsByGroupingKeyHash.get(TermSuiteUtils.getGroupingKeyHash(annotation));
+		if(term == null || !TermSuiteUtils.isGroupingKeyOf(term.getGroupingKey(), annotation)) {
+			/*
+			 * Hash miss or hash collision: fall back to the grouping key string.
+			 */
+			term = this.termsByGroupingKey.get(TermSuiteUtils.getGroupingKey(annotation));
+		}
+		return term;
+	}
+
+	@Override
+	public Term addTermOccurrence(TermOccAnnotation annotation, String fileUrl, boolean keepOccurrence) {
+		this.nbSpottedTerms.incrementAndGet();
+		Term term = findTerm(annotation);
+		if(term == null) {
+			TermBuilder builder = TermBuilder.start(this);
+			for (int i = 0; i < annotation.getWords().size(); i++) {
+				WordAnnotation wa = annotation.getWords(i);
+				Word w = this.addWord(wa);
+				builder.addWord(
+						w, 
+						annotation.getPattern(i) 
+					);
+			}
+			builder.setSpottingRule(annotation.getSpottingRuleName());
+			builder.setId(newId());
+			Term newTerm = builder.create();
+			
+			/*
+			 * Another thread may have created the same term in the meantime. 
+			 * Only the first registered term is kept.
+			 */
+			term = registerTermIfAbsent(newTerm);
+			if(term == null)
+				term = newTerm;
+			else
+				releaseId(newTerm.getId());
+		}
+		term.addOccurrence(
+			new TermOccurrence(
+				term, 
+				annotation.getCoveredText(), 
+				this.getDocument(fileUrl), 
+				annotation.getBegin(), 
+				annotation.getEnd()),
+			keepOccurrence
+		);
+		return term;
+	}
+
+	@Override
+	public Iterator<Term> singleWordTermIterator() {
+		return Iterators.unmodifiableIterator(this.singleWordTerms.iterator()); 
+	}
+
+	@Override
+	public Iterator<Term> multiWordTermIterator() {
+		return Iterators.unmodifiableIterator(this.multiWordTerms.iterator()); 
+	}
+	
+	/**
+	 * Iterates over the single-word partition only, since words may
+	 * be split into compounds after their terms are indexed.
+	 */
+	@Override
+	public Iterator<Term> compoundWordTermIterator() {
+		return new CompoundIterator(); 
+	}
+	
+	private class CompoundIterator extends AbstractIterator<Term> {
+		private Iterator<Term> it = AbstractTermIndex.this.singleWordTerms.iterator();
+		private Term t;
+
+		@Override
+		protected Term computeNext() {
+			while(it.hasNext()) {
+				if((t = it.next()).isCompound())
+					return t;
+			}
+			return endOfData();
+		}
+		
+	}
+
+	@Override
+	public int newId() {
+		return this.termsById.nextFreeId();
+	}
+
+	@Override
+	public CustomTermIndex getCustomIndex(String indexName) {
+		if(this.customIndexes.get(indexName) == null) {
+			TermValueProvider valueProvider = TermValueProviders.get(indexName);
+			createCustomIndex(indexName, valueProvider);
+		}
+		return this.customIndexes.get(indexName);
+	}
+
+	@Override
+	public CustomTermIndex createCustomIndex(String indexName,
+			TermValueProvider valueProvider) {
+		Preconditions.checkArgument(valueProvider != null, 
+				MSG_NO_SUCH_PROVIDER,
+				indexName);
+		/*
+		 * The index is built on first access, in parallel for large term indexes.
+		 * Providers able to hash their classes get a hash-keyed index.
+		 */
+		CustomTermIndex customIndex = valueProvider instanceof TermHashValueProvider ?
+				new HashedCustomTermIndex((TermHashValueProvider) valueProvider, this, this.getTerms()) :
+					new CustomTermIndexImpl(valueProvider, this.getTerms());
+		Preconditions.checkArgument(
+				putIfAbsent(this.customIndexes, indexName, customIndex) == null,
+				String.format("Custom term index %s already exists.", indexName));
+		return customIndex;
+	}
+
+	@Override
+	public void dropCustomIndex(String indexName) {
+		this.customIndexes.remove(indexName);
+	}
+
+	@Override
+	public Collection<Word> getWords() {
+		return Collections.unmodifiableCollection(this.wordIndex.values());
+	}
+
+	@Override
+	public Term getTermByGroupingKey(String groupingKey) {
+		return this.termsByGroupingKey.get(groupingKey);
+	}
+	
+	@Override
+	public Term getTermById(int id) {
+		return this.termsById.get(id);
+	}
+
+	@Override
+	public void cleanOrphanWords() {
+		Set<String> usedWordLemmas = Sets.newHashSet();
+		for(Term t:getTerms()) {
+			for(TermWord tw:t.getWords())
+				usedWordLemmas.add(tw.getWord().getLemma());
+		}
+		Iterator<Word> it = this.wordIndex.values().iterator();
+		Word word;
+		while(it.hasNext()) {
+			word = it.next();
+			if(!usedWordLemmas.contains(word.getLemma())) {
+				it.remove();
+				word.releaseSymbols();
+			}
+		}
+	}
+
+	@Override
+	public void removeTerm(Term t) {
+		removeTerms(Collections.singleton(t));
+	}
+
+	@Override
+	public void removeTerms(Collection<Term> terms) {
+		Set<Term> removed = Sets.newHashSet(terms);
+		boolean hasContextVector = false;
+		for(Term t:removed) {
+			termsByGroupingKey.remove(t.getGroupingKey());
+			termsByGroupingKeyHash.remove(TermSuiteUtils.getGroupingKeyHash(t.getGroupingKey()), t);
+			if(termsById.remove(t.getId()) == t)
+				t.releaseSymbols(symbolTable);
+			(t.isSingleWord() ? singleWordTerms : multiWordTerms).remove(t);
+			
+			// remove from variants
+			for(TermVariation v:Lists.newArrayList(t.getVariations()))
+				t.removeTermVariation(v);
+			
+			// remove from bases
+			for(TermVariation v:Lists.newArrayList(t.getBases()))
+				v.getBase().removeTermVariation(v);
+			
+			hasContextVector |= t.isContextVectorComputed();
+		}
+		
+		// remove from custom indexes
+		for(CustomTermIndex customIndex:customIndexes.values())
+			customIndex.removeTerms(removed);
+		
+		/*
+		 * Removes from context vectors.
+		 * 
+		 * When the co-term index is enabled, only the vectors mentioning
+		 * a removed term (or its class head) are updated.
+		 * 
+		 * Otherwise, we assumes that if a removed term has a context vector 
+		 * then all others terms may have it as co-term,
+		 * thus they must be checked from removal. All removed terms
+		 * are handled in a single pass over the remaining terms.
+		 * 
+		 */
+		if(coTermIndex.isPresent()) {
+			Set<Term> owners = Sets.newHashSet();
+			for(Term t:removed) {
+				t.setCoTermIndex(null);
+				owners.addAll(coTermIndex.get().getOwners(t));
+				if(t.getTermClass() != null)
+					owners.addAll(coTermIndex.get().getOwners(t.getTermClass().getHead()));
+			}
+			for(Term o:owners) {
+				if(!removed.contains(o) && o.isContextVectorComputed())
+					o.getContextVector().removeCoTerms(removed);
+			}
+		} else if(hasContextVector) {
+			for(Term o:termsById) {
+				if(o.isContextVectorComputed())
+					o.getContextVector().removeCoTerms(removed);
+			}
+		}
+	}
+
+	@Override
+	public String getName() {
+		return this.name;
+	}
+	
+	@Override
+	public int hashCode() {
+		return this.name.hashCode();
+	}
+
+	@Override
+	public Document getDocument(String url) {
+		Document document = documents.get(url);
+		if(document == null) {
+			Document newDocument = new Document(url);
+			document = putIfAbsent(documents, url, newDocument);
+			if(document == null)
+				document = newDocument;
+		}
+		return document;
+	}
+	
+	@Override
+	public Collection<Document> getDocuments() {
+		return this.documents.values();
+	}
+
+	@Override
+	public void createOccurrenceIndex() {
+		for(Term t:this.getTerms()) {
+			for(AbstractTermOccurrence o:t.getOccurrences()) {
+				/*
+				 * Explicitely index all occurrences within each source document. The context 
+				 * generation would not work without that step.
+				 * 
+				 * FIXME Move these occurrence indexes inside the present AE (because the 
+				 * indexes are never used anywhere else).
+				 */
+				o.getSourceDocument().indexTermOccurrence(o);
+			}
+		}
+	}
+	
+	@Override
+	public void clearOccurrenceIndex() {
+		for(Document d:this.getDocuments())
+			d.clearOccurrenceIndex();
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).addValue(name)
+				.add("terms", this.termsById.size())
+				.toString();
+	}
+	
+	@Override
+	public Lang getLang() {
+		return this.lang;
+	}
+	
+	@Override
+	public String getCorpusId() {
+		return corpusId;
+	}
+	
+	@Override
+	public void setCorpusId(String corpusId) {
+		this.corpusId = corpusId;
+	}
+
+	@Override
+	public Collection<TermClass> getTermClasses() {
+		return Collections.unmodifiableSet(termClasses);
+	}
+
+	@Override
+	public VariationGraph getVariationGraph() {
+		return variationGraph;
+	}
+
+	@Override
+	public void classifyTerms(Term classHead, Iterable<Term> classTerms) {
+		Preconditions.checkArgument(Iterables.contains(classTerms, classHead), "head must be contained in class terms");
+		TermClass termClass = new TermClass(classHead, classTerms);
+		this.termClasses.add(termClass);
+		for(Term t2:termClass)
+			t2.setTermClass(termClass);
+	}
+
+	@Override
+	public void setWordAnnotationsNum(int nbWordAnnotations) {
+		this.nbWordAnnotations = nbWordAnnotations;
+	}
+
+	@Override
+	public int getWordAnnotationsNum() {
+		return this.nbWordAnnotations;
+	}
+
+	@Override
+	public TermMeasure getWRMeasure() {
+		return this.termMeasures.get(MEASURE_WR);
+	}
+
+	@Override
+	public TermMeasure getWRLogMeasure() {
+		return this.termMeasures.get(MEASURE_WRLOG);
+	}
+
+	@Override
+	public TermMeasure getFrequencyMeasure() {
+		return this.termMeasures.get(MEASURE_FREQUENCY);
+	}
+
+	@Override
+	public Iterable<TermMeasure> getMeasures() {
+		return this.termMeasures.values();
+	}
+	
+	@Override
+	public int getSpottedTermsNum() {
+		return nbSpottedTerms.get();
+	}
+	
+	@Override
+	public void setSpottedTermsNum(int spottedTermsNum) {
+		this.nbSpottedTerms.set(spottedTermsNum);
+	}
+}
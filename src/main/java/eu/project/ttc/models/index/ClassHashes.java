@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright 2015 - CNRS (Centre National de Recherche Scientifique)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ *******************************************************************************/
+package eu.project.ttc.models.index;
+
+import java.util.Arrays;
+
+import com.google.common.primitives.UnsignedLongs;
+
+import eu.project.ttc.models.Term;
+
+/**
+ * 
+ * The class hashes of a {@link TermHashValueProvider}, as they are stored 
+ * and exposed as keys by the custom indexes created with such a provider.
+ * 
+ * Hash 0 is stored as 1, and keys are the hexadecimal representations of 
+ * the stored hashes.
+ * 
+ * @author Damien Cram
+ *
+ */
+public final class ClassHashes {
+	
+	private ClassHashes() {}
+	
+	static long normalize(long hash) {
+		return hash == 0L ? 1L : hash;
+	}
+	
+	/**
+	 * @param hash
+	 * 			a stored class hash
+	 * @return
+	 * 			the custom index key of this hash
+	 */
+	public static String toKey(long hash) {
+		return UnsignedLongs.toString(hash, 16);
+	}
+	
+	/**
+	 * @param key
+	 * 			a key of a hash-keyed custom index
+	 * @return
+	 * 			the stored class hash of this key
+	 * @throws NumberFormatException
+	 * 			if <code>key</code> is not a class hash
+	 */
+	public static long fromKey(String key) {
+		return UnsignedLongs.parseUnsignedLong(key, 16);
+	}
+
+	/**
+	 * Gives the distinct stored class hashes of a term.
+	 * 
+	 * @param valueProvider
+	 * @param term
+	 * @return
+	 * 			the stored class hashes of <code>term</code>, sorted 
+	 * 			in ascending order, without duplicates
+	 */
+	public static long[] getSortedHashes(TermHashValueProvider valueProvider, Term term) {
+		long[] hashes = valueProvider.getClassHashes(term);
+		for(int i = 0; i < hashes.length; i++)
+			hashes[i] = normalize(hashes[i]);
+		Arrays.sort(hashes);
+		int nbDistinct = 0;
+		for(int i = 0; i < hashes.length; i++)
+			if(nbDistinct == 0 || hashes[nbDistinct - 1] != hashes[i])
+				hashes[nbDistinct++] = hashes[i];
+		return nbDistinct == hashes.length ? hashes : Arrays.copyOf(hashes, nbDistinct);
+	}
+}
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright 2015 - CNRS (Centre National de Recherche Scientifique)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ *******************************************************************************/
+package eu.project.ttc.models.index;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import eu.project.ttc.engines.desc.Lang;
+import eu.project.ttc.models.OccurrenceStore;
+import eu.project.ttc.models.Term;
+import eu.project.ttc.models.TermIndex;
+import eu.project.ttc.models.Word;
+import eu.project.ttc.types.TermOccAnnotation;
+import eu.project.ttc.utils.TermSuiteUtils;
+
+/**
+ * A thread-safe in-memory implementation of a {@link TermIndex}.
+ * 
+ * Terms, words and documents are looked up without locking, so that 
+ * several spotter replicas can feed the same index through 
+ * {@link #addTermOccurrence(TermOccAnnotation, String, boolean)}. Only
+ * the registration of new terms and words is serialized.
+ * 
+ * Post-processing operations (custom indexes, term removal, 
+ * classification) are expected to run on one thread once spotting 
+ * is over, as with {@link MemoryTermIndex}.
+ * 
+ * @author Damien Cram
+ *
+ */
+public class ConcurrentTermIndex extends AbstractTermIndex {
+	
+	public ConcurrentTermIndex(String name, Lang lang) {
+		super(name, lang, Optional.<OccurrenceStore>absent());
+	}
+
+	@Override
+	<K, V> Map<K, V> newMap() {
+		return Maps.newConcurrentMap();
+	}
+	
+	@Override
+	<E> Set<E> newSet() {
+		return Sets.newConcurrentHashSet();
+	}
+	
+	@Override
+	<K, V> V putIfAbsent(Map<K, V> map, K key, V value) {
+		return ((ConcurrentMap<K, V>) map).putIfAbsent(key, value);
+	}
+	
+	/*
+	 * Resolves occurrences from the grouping key map only, since the 
+	 * hash table cannot be read while another thread registers a term.
+	 */
+	@Override
+	Term findTerm(TermOccAnnotation annotation) {
+		return this.termsByGroupingKey.get(TermSuiteUtils.getGroupingKey(annotation));
+	}
+	
+	@Override
+	synchronized Term registerTermIfAbsent(Term term) {
+		return super.registerTermIfAbsent(term);
+	}
+	
+	@Override
+	synchronized Word registerWord(Word word) {
+		return super.registerWord(word);
+	}
+	
+	@Override
+	synchronized void releaseId(int id) {
+		super.releaseId(id);
+	}
+	
+	/*
+	 * Reserves the id, so that concurrent builders get distinct ids.
+	 */
+	@Override
+	public synchronized int newId() {
+		return this.termsById.reserveId();
+	}
+	
+	@Override
+	public synchronized Term getTermById(int id) {
+		return super.getTermById(id);
+	}
+	
+	@Override
+	public synchronized void removeTerms(Collection<Term> terms) {
+		super.removeTerms(terms);
+	}
+}
@@ -23,6 +23,7 @@ package eu.project.ttc.models.index;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 import eu.project.ttc.models.Term;
 
@@ -42,6 +43,13 @@ public interface CustomTermIndex {
 	public int size();
 	public void removeTerm(Term t);
 	
+	/**
+	 * Removes several terms at once. Each affected entry is compacted once.
+	 * 
+	 * @param terms
+	 */
+	public void removeTerms(Set<Term> terms);
+	
 	/**
 	 * For each entry of this index, increase the frequency threshhold and 
 	 * remove all terms under the frequency threshold until there are
@@ -21,21 +21,24 @@
  *******************************************************************************/
 package eu.project.ttc.models.index;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.RecursiveTask;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 import eu.project.ttc.models.Term;
 
-public class CustomTermIndexImpl implements CustomTermIndex {
+public class CustomTermIndexImpl extends AbstractCustomTermIndex {
 	
 	private static final Logger LOGGER = LoggerFactory.getLogger(CustomTermIndexImpl.class);
 	
@@ -44,34 +47,107 @@ public class CustomTermIndexImpl implements CustomTermIndex {
 	private TermValueProvider valueProvider;
 	
 	CustomTermIndexImpl(TermValueProvider valueProvider) {
-		super();
+		super(valueProvider.getName());
 		this.valueProvider = valueProvider;
 		this.index = ArrayListMultimap.create();
 	}
+	
+	/**
+	 * Creates a deferred index, built from a live view of the 
+	 * terms of a term index on first access.
+	 * 
+	 * @see AbstractCustomTermIndex#AbstractCustomTermIndex(String, Collection)
+	 * @param valueProvider
+	 * @param terms
+	 * 			the live view of the terms to index
+	 */
+	CustomTermIndexImpl(TermValueProvider valueProvider, Collection<Term> terms) {
+		super(valueProvider.getName(), terms);
+		this.valueProvider = valueProvider;
+	}
+	
+	@Override
+	void clearEntries() {
+		this.index = ArrayListMultimap.create();
+	}
+
+	/**
+	 * Indexes a collection of terms at once. Large collections are 
+	 * partitioned across a fork-join pool and the resulting multimaps
+	 * are merged in the order of the collection, so the value provider 
+	 * must be thread-safe.
+	 * 
+	 * @param terms
+	 */
+	@Override
+	void indexTerms(Collection<Term> terms) {
+		if(terms.size() <= TASK_SIZE) {
+			for(Term t:terms)
+				indexTerm(t, this.index);
+		} else
+			this.index.putAll(POOL.invoke(new IndexingTask(Lists.newArrayList(terms))));
+	}
 
 	@Override
 	public Collection<String> keySet() {
+		ensureBuilt();
 		return this.index.keySet();
 	}
 
 	@Override
 	public List<Term> getTerms(String key) {
+		ensureBuilt();
 		return this.index.get(key);
 	}
 
 	@Override
 	public void indexTerm(Term term) {
+		if(isBuilt())
+			indexTerm(term, this.index);
+	}
+	
+	private void indexTerm(Term term, ListMultimap<String, Term> index) {
 		Collection<String> classes = valueProvider.getClasses(term);
 		if(classes != null) {
 			for(String cls:classes) {
 				if(cls!= null)			
-					this.index.put(cls, term);
+					index.put(cls, term);
+			}
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private class IndexingTask extends RecursiveTask<ListMultimap<String, Term>> {
+		private List<Term> terms;
+		
+		private IndexingTask(List<Term> terms) {
+			super();
+			this.terms = terms;
+		}
+
+		@Override
+		protected ListMultimap<String, Term> compute() {
+			if(terms.size() <= TASK_SIZE) {
+				ListMultimap<String, Term> index = ArrayListMultimap.create();
+				for(Term t:terms)
+					indexTerm(t, index);
+				return index;
+			} else {
+				int middle = terms.size() / 2;
+				IndexingTask left = new IndexingTask(terms.subList(0, middle));
+				IndexingTask right = new IndexingTask(terms.subList(middle, terms.size()));
+				left.fork();
+				ListMultimap<String, Term> rightIndex = right.compute();
+				ListMultimap<String, Term> leftIndex = left.join();
+				leftIndex.putAll(rightIndex);
+				return leftIndex;
 			}
 		}
 	}
 
 	@Override
 	public void cleanSingletonKeys() {
+		ensureBuilt();
 		Iterator<String> it = this.index.keySet().iterator();
 		while(it.hasNext())
 			if(this.index.get(it.next()).size() == 1)
@@ -80,17 +156,36 @@ public class CustomTermIndexImpl implements CustomTermIndex {
 
 	@Override
 	public int size() {
+		ensureBuilt();
 		return this.index.size();
 	}
 
 	@Override
 	public void removeTerm(Term t) {
+		if(!isBuilt())
+			return;
 		for(String k:valueProvider.getClasses(t))
 			this.index.remove(k, t);
 	}
 
+	@Override
+	public void removeTerms(Set<Term> terms) {
+		if(!isBuilt())
+			return;
+		Set<String> keys = Sets.newHashSet();
+		for(Term t:terms) {
+			Collection<String> classes = valueProvider.getClasses(t);
+			if(classes != null)
+				keys.addAll(classes);
+		}
+		for(String k:keys)
+			if(this.index.containsKey(k))
+				this.index.get(k).removeAll(terms);
+	}
+
 	@Override
 	public void dropBiggerEntries(int threshholdSize, boolean logWarning) {
+		ensureBuilt();
 		Set<String> toRemove = Sets.newHashSet();
 		for(String key:index.keySet()) {
 			if(index.get(key).size() >= threshholdSize)
@@ -108,33 +203,53 @@ public class CustomTermIndexImpl implements CustomTermIndex {
 
 	@Override
 	public void cleanEntriesByMaxSize(int maxSize) {
+		ensureBuilt();
 		String msg = "Index entry {} had too many elements. Applied th={} filter. Before -> after filtering: {} -> {}";
 		int th;
-		Iterator<Term> it;
-		Term t;
-		int initialSize;
-		for(String key:index.keySet()) {
-			th = 1;
-			initialSize = index.get(key).size();
-			while (index.get(key).size() > maxSize) {
-				th++;
-				it = index.get(key).iterator();
-				while(it.hasNext()) {
-					t = it.next();
-					if(t.getFrequency()<th)
-						it.remove();
-				}
-			}
-			if(th>1) {
-				LOGGER.warn(msg,
-						key,
-						th,
-						initialSize,
-						index.get(key).size()
-						);
-			}
+		List<Term> terms;
+		List<Term> kept;
+		int[] frequencies;
+		for(String key:Lists.newArrayList(index.keySet())) {
+			terms = index.get(key);
+			if(terms.size() <= maxSize)
+				continue;
+			frequencies = new int[terms.size()];
+			for(int i = 0; i < frequencies.length; i++)
+				frequencies[i] = terms.get(i).getFrequency();
+			th = getFrequencyThreshold(frequencies, maxSize);
+			kept = Lists.newArrayListWithCapacity(maxSize);
+			for(Term t:terms)
+				if(t.getFrequency() >= th)
+					kept.add(t);
+			LOGGER.warn(msg,
+					key,
+					th,
+					frequencies.length,
+					kept.size()
+					);
+			index.replaceValues(key, kept);
 		}
-		
+	}
+
+	/**
+	 * Gives the lowest frequency threshold <code>th &gt; 1</code> such that 
+	 * at most <code>maxSize</code> frequencies are greater than or equal to
+	 * <code>th</code>, i.e. the threshold that increasing <code>th</code> one 
+	 * by one from 1 would reach, in a single sort.
+	 * 
+	 * @param frequencies
+	 * 			the frequencies of the terms of an entry, sorted in place
+	 * @param maxSize
+	 * 			the max number of terms to keep, smaller than the number of frequencies
+	 * @return
+	 * 			the frequency threshold
+	 */
+	static int getFrequencyThreshold(int[] frequencies, int maxSize) {
+		Arrays.sort(frequencies);
+		/*
+		 * Only the frequencies strictly above the (maxSize+1)-th biggest one are kept.
+		 */
+		return Math.max(2, frequencies[frequencies.length - 1 - maxSize] + 1);
 	}
 
 }
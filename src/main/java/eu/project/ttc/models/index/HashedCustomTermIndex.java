@@ -0,0 +1,450 @@
+/*******************************************************************************
+ * Copyright 2015 - CNRS (Centre National de Recherche Scientifique)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ *******************************************************************************/
+package eu.project.ttc.models.index;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RecursiveAction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+import eu.project.ttc.models.Term;
+import eu.project.ttc.models.TermIndex;
+
+/**
+ * 
+ * A {@link CustomTermIndex} keyed by the 64-bit class hashes of a 
+ * {@link TermHashValueProvider}. 
+ * 
+ * Entries are stored in an open-addressing (linear probing) table mapping 
+ * each hash to the int array of the ids of its terms, so no class string 
+ * is ever built. The keys exposed by {@link #keySet()} are the hexadecimal 
+ * representations of the hashes (see {@link ClassHashes}). Two classes 
+ * having the same hash share the same entry.
+ * 
+ * @author Damien Cram
+ *
+ */
+class HashedCustomTermIndex extends AbstractCustomTermIndex {
+	private static final Logger LOGGER = LoggerFactory.getLogger(HashedCustomTermIndex.class);
+
+	private static final int DEFAULT_CAPACITY = 1024;
+	private static final int DEFAULT_POSTINGS_CAPACITY = 2;
+	
+	/*
+	 * 0 is reserved for empty slots
+	 */
+	private static final long EMPTY = 0L;
+
+	private TermHashValueProvider valueProvider;
+	private TermIndex termIndex;
+	
+	private long[] keys;
+	private int[][] postings;
+	private int[] sizes;
+	private int nbKeys;
+	private int mask;
+
+	HashedCustomTermIndex(TermHashValueProvider valueProvider, TermIndex termIndex) {
+		super(valueProvider.getName());
+		this.valueProvider = valueProvider;
+		this.termIndex = termIndex;
+		clear(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a deferred index, built from the live view of the 
+	 * terms of a term index on first access.
+	 * 
+	 * @see AbstractCustomTermIndex#AbstractCustomTermIndex(String, Collection)
+	 * @param valueProvider
+	 * @param termIndex
+	 * @param terms
+	 * 			the live view of the terms to index
+	 */
+	HashedCustomTermIndex(TermHashValueProvider valueProvider, TermIndex termIndex, Collection<Term> terms) {
+		super(valueProvider.getName(), terms);
+		this.valueProvider = valueProvider;
+		this.termIndex = termIndex;
+	}
+	
+	private void clear(int capacity) {
+		this.keys = new long[capacity];
+		this.postings = new int[capacity][];
+		this.sizes = new int[capacity];
+		this.mask = capacity - 1;
+		this.nbKeys = 0;
+	}
+	
+	@Override
+	void clearEntries() {
+		clear(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Indexes a collection of terms at once. The class hashes of large 
+	 * collections are computed across a fork-join pool, then inserted 
+	 * in the order of the collection, so the value provider must 
+	 * be thread-safe.
+	 * 
+	 * @param terms
+	 */
+	@Override
+	void indexTerms(Collection<Term> terms) {
+		if(terms.size() <= TASK_SIZE) {
+			for(Term t:terms)
+				put(valueProvider.getClassHashes(t), t.getId());
+		} else {
+			List<Term> termList = Lists.newArrayList(terms);
+			long[][] hashes = new long[termList.size()][];
+			POOL.invoke(new HashingTask(termList, hashes, 0, termList.size()));
+			for(int i = 0; i < hashes.length; i++)
+				put(hashes[i], termList.get(i).getId());
+		}
+	}
+	
+	@SuppressWarnings("serial")
+	private class HashingTask extends RecursiveAction {
+		private List<Term> terms;
+		private long[][] hashes;
+		private int from;
+		private int to;
+		
+		private HashingTask(List<Term> terms, long[][] hashes, int from, int to) {
+			super();
+			this.terms = terms;
+			this.hashes = hashes;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from <= TASK_SIZE) {
+				for(int i = from; i < to; i++)
+					hashes[i] = valueProvider.getClassHashes(terms.get(i));
+			} else {
+				int middle = (from + to) / 2;
+				invokeAll(
+						new HashingTask(terms, hashes, from, middle), 
+						new HashingTask(terms, hashes, middle, to));
+			}
+		}
+	}
+
+	@Override
+	public Collection<String> keySet() {
+		ensureBuilt();
+		List<String> keySet = Lists.newArrayListWithCapacity(nbKeys);
+		for(int i = 0; i < keys.length; i++)
+			if(keys[i] != EMPTY && sizes[i] > 0)
+				keySet.add(ClassHashes.toKey(keys[i]));
+		return keySet;
+	}
+
+	@Override
+	public List<Term> getTerms(String key) {
+		long hash;
+		try {
+			hash = ClassHashes.fromKey(key);
+		} catch(NumberFormatException e) {
+			// not a class hash, hence an unknown key
+			return Collections.emptyList();
+		}
+		return getTerms(hash);
+	}
+	
+	/**
+	 * Gives the terms of a class hash.
+	 * 
+	 * @param hash
+	 * @return
+	 * 			a view over the terms of this class, supporting removal, that 
+	 * 			remains valid until the next term is indexed or the index 
+	 * 			is cleaned. An empty list if there is no such class.
+	 */
+	public List<Term> getTerms(long hash) {
+		ensureBuilt();
+		final int slot = find(normalize(hash));
+		if(slot == -1)
+			return Collections.emptyList();
+		return new AbstractList<Term>() {
+			@Override
+			public Term get(int index) {
+				checkIndex(index);
+				return termIndex.getTermById(postings[slot][index]);
+			}
+
+			@Override
+			public int size() {
+				return sizes[slot];
+			}
+			
+			@Override
+			public Term remove(int index) {
+				checkIndex(index);
+				Term removed = get(index);
+				removePosting(slot, index);
+				modCount++;
+				return removed;
+			}
+			
+			private void checkIndex(int index) {
+				if(index < 0 || index >= sizes[slot])
+					throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + sizes[slot]);
+			}
+		};
+	}
+
+	@Override
+	public void indexTerm(Term term) {
+		if(isBuilt())
+			put(valueProvider.getClassHashes(term), term.getId());
+	}
+
+	private void put(long[] hashes, int termId) {
+		for(long hash:hashes)
+			put(hash, termId);
+	}
+	
+	private void put(long hash, int termId) {
+		long key = normalize(hash);
+		int slot = find(key);
+		if(slot == -1) {
+			if(2 * (nbKeys + 1) > keys.length)
+				rehash(keys.length * 2);
+			slot = home(key);
+			while(keys[slot] != EMPTY)
+				slot = (slot + 1) & mask;
+			keys[slot] = key;
+			postings[slot] = new int[DEFAULT_POSTINGS_CAPACITY];
+			nbKeys++;
+		} else if(sizes[slot] == postings[slot].length) {
+			int[] grown = new int[postings[slot].length * 2];
+			System.arraycopy(postings[slot], 0, grown, 0, sizes[slot]);
+			postings[slot] = grown;
+		}
+		postings[slot][sizes[slot]++] = termId;
+	}
+	
+	private int find(long key) {
+		int i = home(key);
+		while(keys[i] != EMPTY) {
+			if(keys[i] == key)
+				return i;
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+	
+	private void removePosting(int slot, int index) {
+		System.arraycopy(postings[slot], index + 1, postings[slot], index, sizes[slot] - index - 1);
+		sizes[slot]--;
+	}
+	
+	/*
+	 * Removes the given sorted ids from an entry, in a single pass.
+	 */
+	private void removePostings(int slot, int[] sortedIds) {
+		int[] ids = postings[slot];
+		int kept = 0;
+		for(int i = 0; i < sizes[slot]; i++) {
+			if(Arrays.binarySearch(sortedIds, ids[i]) < 0)
+				ids[kept++] = ids[i];
+		}
+		sizes[slot] = kept;
+	}
+
+	@Override
+	public void cleanSingletonKeys() {
+		ensureBuilt();
+		for(int i = 0; i < keys.length; i++)
+			if(keys[i] != EMPTY && sizes[i] == 1)
+				sizes[i] = 0;
+		compact();
+	}
+
+	@Override
+	public int size() {
+		ensureBuilt();
+		int size = 0;
+		for(int i = 0; i < keys.length; i++)
+			if(keys[i] != EMPTY)
+				size += sizes[i];
+		return size;
+	}
+
+	@Override
+	public void removeTerm(Term t) {
+		if(!isBuilt())
+			return;
+		for(long hash:valueProvider.getClassHashes(t)) {
+			int slot = find(normalize(hash));
+			if(slot != -1) {
+				for(int i = 0; i < sizes[slot]; i++) {
+					if(postings[slot][i] == t.getId()) {
+						removePosting(slot, i);
+						break;
+					}
+				}
+			}
+		}
+	}
+
+	@Override
+	public void removeTerms(Set<Term> terms) {
+		if(!isBuilt())
+			return;
+		/*
+		 * Removed terms may not be resolvable by id anymore, 
+		 * so postings are compared by ids.
+		 */
+		int[] sortedIds = new int[terms.size()];
+		int i = 0;
+		BitSet slots = new BitSet(keys.length);
+		for(Term t:terms) {
+			sortedIds[i++] = t.getId();
+			for(long hash:valueProvider.getClassHashes(t)) {
+				int slot = find(normalize(hash));
+				if(slot != -1)
+					slots.set(slot);
+			}
+		}
+		Arrays.sort(sortedIds);
+		for(int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1))
+			removePostings(slot, sortedIds);
+	}
+
+	@Override
+	public void dropBiggerEntries(int threshholdSize, boolean logWarning) {
+		ensureBuilt();
+		for(int i = 0; i < keys.length; i++) {
+			if(keys[i] != EMPTY && sizes[i] >= threshholdSize) {
+				LOGGER.warn("Removing key {} from custom index {} because its size {} is bigger than the threshhold {}",
+						ClassHashes.toKey(keys[i]),
+						this.valueProvider.getName(),
+						sizes[i],
+						threshholdSize);
+				sizes[i] = 0;
+			}
+		}
+		compact();
+	}
+
+	@Override
+	public void cleanEntriesByMaxSize(int maxSize) {
+		ensureBuilt();
+		String msg = "Index entry {} had too many elements. Applied th={} filter. Before -> after filtering: {} -> {}";
+		int th;
+		int initialSize;
+		int kept;
+		int[] ids;
+		int[] frequencies;
+		for(int slot = 0; slot < keys.length; slot++) {
+			if(keys[slot] == EMPTY || sizes[slot] <= maxSize)
+				continue;
+			initialSize = sizes[slot];
+			ids = postings[slot];
+			frequencies = new int[initialSize];
+			for(int i = 0; i < initialSize; i++)
+				frequencies[i] = termIndex.getTermById(ids[i]).getFrequency();
+			th = CustomTermIndexImpl.getFrequencyThreshold(frequencies, maxSize);
+			kept = 0;
+			for(int i = 0; i < initialSize; i++) {
+				if(termIndex.getTermById(ids[i]).getFrequency() >= th)
+					ids[kept++] = ids[i];
+			}
+			sizes[slot] = kept;
+			LOGGER.warn(msg,
+					ClassHashes.toKey(keys[slot]),
+					th,
+					initialSize,
+					kept
+					);
+		}
+	}
+
+	/*
+	 * Drops empty entries and trims the postings of the other ones.
+	 */
+	private void compact() {
+		long[] oldKeys = keys;
+		int[][] oldPostings = postings;
+		int[] oldSizes = sizes;
+		int nbLiveKeys = 0;
+		for(int i = 0; i < oldKeys.length; i++)
+			if(oldKeys[i] != EMPTY && oldSizes[i] > 0)
+				nbLiveKeys++;
+		int capacity = DEFAULT_CAPACITY;
+		while(2 * nbLiveKeys > capacity)
+			capacity *= 2;
+		clear(capacity);
+		for(int i = 0; i < oldKeys.length; i++) {
+			if(oldKeys[i] != EMPTY && oldSizes[i] > 0) {
+				int j = home(oldKeys[i]);
+				while(keys[j] != EMPTY)
+					j = (j + 1) & mask;
+				keys[j] = oldKeys[i];
+				postings[j] = oldPostings[i].length == oldSizes[i] ? 
+						oldPostings[i] : 
+							Arrays.copyOf(oldPostings[i], oldSizes[i]);
+				sizes[j] = oldSizes[i];
+				nbKeys++;
+			}
+		}
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		int[][] oldPostings = postings;
+		int[] oldSizes = sizes;
+		int oldNbKeys = nbKeys;
+		clear(capacity);
+		for(int i = 0; i < oldKeys.length; i++) {
+			if(oldKeys[i] != EMPTY) {
+				int j = home(oldKeys[i]);
+				while(keys[j] != EMPTY)
+					j = (j + 1) & mask;
+				keys[j] = oldKeys[i];
+				postings[j] = oldPostings[i];
+				sizes[j] = oldSizes[i];
+			}
+		}
+		nbKeys = oldNbKeys;
+	}
+	
+	private int home(long key) {
+		return (int)(key ^ (key >>> 32)) & mask;
+	}
+
+	private static long normalize(long key) {
+		return ClassHashes.normalize(key);
+	}
+}
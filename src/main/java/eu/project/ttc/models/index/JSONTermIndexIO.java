@@ -41,6 +41,7 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 import eu.project.ttc.engines.desc.Lang;
+import eu.project.ttc.models.AbstractTermOccurrence;
 import eu.project.ttc.models.Component;
 import eu.project.ttc.models.CompoundType;
 import eu.project.ttc.models.ContextVector;
@@ -48,7 +49,6 @@ import eu.project.ttc.models.Document;
 import eu.project.ttc.models.Term;
 import eu.project.ttc.models.TermBuilder;
 import eu.project.ttc.models.TermIndex;
-import eu.project.ttc.models.TermOccurrence;
 import eu.project.ttc.models.TermVariation;
 import eu.project.ttc.models.TermWord;
 import eu.project.ttc.models.VariationType;
@@ -390,6 +390,7 @@ public class JSONTermIndexIO {
 					term.setContextVector(contextVector);
 			}
 		}
+		termIndex.getVariationGraph().freeze();
 
 		return termIndex;
 	}
@@ -499,7 +500,7 @@ public class JSONTermIndexIO {
 			if(withOccurrences) {
 				jg.writeFieldName(OCCURRENCES);
 				jg.writeStartArray();
-				for(TermOccurrence termOcc:t.getOccurrences()) {
+				for(AbstractTermOccurrence termOcc:t.getOccurrences()) {
 					jg.writeStartObject();
 					jg.writeFieldName(BEGIN);
 					jg.writeNumber(termOcc.getBegin());
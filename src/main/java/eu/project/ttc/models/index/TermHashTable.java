@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * Copyright 2015 - CNRS (Centre National de Recherche Scientifique)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ *******************************************************************************/
+package eu.project.ttc.models.index;
+
+import eu.project.ttc.models.Term;
+
+/**
+ * 
+ * An open-addressing (linear probing) table mapping 64-bit hash keys
+ * to {@link Term}s.
+ * 
+ * The table does not handle collisions between different terms having 
+ * the same hash: only the first term put for a given key is kept, and 
+ * callers are expected to verify the returned term.
+ * 
+ * @author Damien Cram
+ *
+ */
+class TermHashTable {
+	private static final int DEFAULT_CAPACITY = 1024;
+	
+	/*
+	 * 0 is reserved for empty slots
+	 */
+	private static final long EMPTY = 0L;
+	
+	private long[] keys;
+	private Term[] values;
+	private int size = 0;
+	private int mask;
+	
+	TermHashTable() {
+		this.keys = new long[DEFAULT_CAPACITY];
+		this.values = new Term[DEFAULT_CAPACITY];
+		this.mask = DEFAULT_CAPACITY - 1;
+	}
+	
+	public Term get(long key) {
+		key = normalize(key);
+		int i = home(key);
+		while(keys[i] != EMPTY) {
+			if(keys[i] == key)
+				return values[i];
+			i = (i + 1) & mask;
+		}
+		return null;
+	}
+	
+	/**
+	 * Binds a term to a key, unless the key is already bound.
+	 * 
+	 * @param key
+	 * @param term
+	 * @return
+	 * 			<code>true</code> if the term has been added, <code>false</code> 
+	 * 			if another term is already bound to this key.
+	 */
+	public boolean put(long key, Term term) {
+		key = normalize(key);
+		if(2 * (size + 1) > keys.length)
+			rehash(keys.length * 2);
+		int i = home(key);
+		while(keys[i] != EMPTY) {
+			if(keys[i] == key)
+				return false;
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = term;
+		size++;
+		return true;
+	}
+	
+	/**
+	 * Unbinds a key if, and only if, it is bound to the given term.
+	 * 
+	 * @param key
+	 * @param term
+	 */
+	public void remove(long key, Term term) {
+		key = normalize(key);
+		int i = home(key);
+		while(keys[i] != EMPTY) {
+			if(keys[i] == key) {
+				if(values[i] == term) 
+					deleteSlot(i);
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+	}
+	
+	public int size() {
+		return size;
+	}
+
+	/*
+	 * Backward-shift deletion, so that no tombstone is needed.
+	 */
+	private void deleteSlot(int i) {
+		int j = i;
+		while(true) {
+			j = (j + 1) & mask;
+			if(keys[j] == EMPTY)
+				break;
+			int k = home(keys[j]);
+			if(i <= j ? (i < k && k <= j) : (i < k || k <= j))
+				continue;
+			keys[i] = keys[j];
+			values[i] = values[j];
+			i = j;
+		}
+		keys[i] = EMPTY;
+		values[i] = null;
+		size--;
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		Term[] oldValues = values;
+		keys = new long[capacity];
+		values = new Term[capacity];
+		mask = capacity - 1;
+		for(int i = 0; i < oldKeys.length; i++) {
+			if(oldKeys[i] != EMPTY) {
+				int j = home(oldKeys[i]);
+				while(keys[j] != EMPTY)
+					j = (j + 1) & mask;
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+			}
+		}
+	}
+	
+	private int home(long key) {
+		return (int)(key ^ (key >>> 32)) & mask;
+	}
+
+	private static long normalize(long key) {
+		return key == EMPTY ? 1L : key;
+	}
+}
@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright 2015 - CNRS (Centre National de Recherche Scientifique)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ *******************************************************************************/
+package eu.project.ttc.models.index;
+
+import eu.project.ttc.models.Term;
+
+/**
+ * 
+ * A {@link TermValueProvider} that can also give 64-bit hashes of 
+ * the classes of a term without building their strings.
+ * 
+ * Custom indexes created with such a provider are keyed by hashes
+ * (see {@link HashedCustomTermIndex}).
+ * 
+ * @author Damien Cram
+ *
+ */
+public interface TermHashValueProvider extends TermValueProvider {
+	
+	/**
+	 * The hashes of the classes of a term, in the order of 
+	 * {@link #getClasses(Term)}.
+	 * 
+	 * @param term
+	 * @return
+	 * 			the class hashes, never <code>null</code>
+	 */
+	public long[] getClassHashes(Term term);
+}
@@ -0,0 +1,249 @@
+/*******************************************************************************
+ * Copyright 2015 - CNRS (Centre National de Recherche Scientifique)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ *******************************************************************************/
+package eu.project.ttc.models.index;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Maps;
+
+import eu.project.ttc.models.Term;
+
+/**
+ * 
+ * A growable array-backed id -> {@link Term} table.
+ * 
+ * Term ids are used as direct array indexes, so that lookups do not
+ * box their key. Ids released by {@link #remove(int)}, and ids skipped
+ * by {@link #put(int, Term)}, are given back first by {@link #nextFreeId()}, 
+ * which keeps the id space dense and allows other components to use 
+ * term ids as array indexes for side tables.
+ * 
+ * Explicit ids far beyond the current bound (e.g. ids loaded from a filtered
+ * index) are kept in a sparse overflow map instead, so that the array does 
+ * not grow as large as the id. They are moved to the array once it reaches 
+ * them.
+ * 
+ * @author Damien Cram
+ *
+ */
+class TermIdTable implements Iterable<Term> {
+	private static final int DEFAULT_CAPACITY = 1024;
+	
+	/*
+	 * The number of ids an explicit id may skip beyond the bound 
+	 * before it is stored sparsely, when the array is smaller than that.
+	 */
+	private static final int MAX_ID_GAP = 1 << 22;
+
+	private Term[] terms;
+	
+	/*
+	 * All ids greater than or equal to bound are free, 
+	 * except those of sparseTerms.
+	 */
+	private int bound = 0;
+	
+	/*
+	 * Terms whose ids are too far beyond bound to be stored in the array.
+	 * All their ids are greater than or equal to bound.
+	 */
+	private NavigableMap<Integer, Term> sparseTerms = Maps.newTreeMap();
+	private int size = 0;
+	
+	/*
+	 * The ids bound to a term or reserved. Holes below bound are the 
+	 * clear bits, so that they do not need to be stored.
+	 */
+	private BitSet usedIds = new BitSet();
+	
+	/*
+	 * All ids below firstFreeId are used.
+	 */
+	private int firstFreeId = 0;
+
+	TermIdTable() {
+		this.terms = new Term[DEFAULT_CAPACITY];
+	}
+	
+	public Term get(int id) {
+		if(id >= 0 && id < bound)
+			return terms[id];
+		else
+			return sparseTerms.isEmpty() ? null : sparseTerms.get(id);
+	}
+	
+	public boolean contains(int id) {
+		return get(id) != null;
+	}
+
+	/**
+	 * Registers a term at the given id.
+	 * 
+	 * @param id
+	 * 			the id of the term, must not be used yet
+	 * @param term
+	 * 			the term to register
+	 * @throws IllegalArgumentException
+	 * 			if the id is used
+	 */
+	public void put(int id, Term term) {
+		checkFreeId(id);
+		if(id >= bound && id - bound > Math.max(bound, MAX_ID_GAP))
+			sparseTerms.put(id, term);
+		else {
+			if(id >= bound)
+				extendBound(id);
+			terms[id] = term;
+			usedIds.set(id);
+		}
+		size++;
+	}
+
+	/**
+	 * Checks that a term can be registered at the given id.
+	 * 
+	 * @param id
+	 * @throws IllegalArgumentException
+	 * 			if the id is negative or used
+	 */
+	public void checkFreeId(int id) {
+		Preconditions.checkArgument(id >= 0, "Bad term id: %s", id);
+		Preconditions.checkArgument(!contains(id), "Term id already used: %s", id);
+	}
+
+	/**
+	 * Releases an id and returns the term it was bound to.
+	 * 
+	 * @param id
+	 * @return
+	 * 		the removed term, <code>null</code> if there was no term with this id.
+	 */
+	public Term remove(int id) {
+		if(id >= bound) {
+			Term t = sparseTerms.remove(id);
+			if(t != null)
+				size--;
+			return t;
+		}
+		Term t = get(id);
+		if(t != null) {
+			terms[id] = null;
+			size--;
+			freeId(id);
+		}
+		return t;
+	}
+
+	/**
+	 * Returns the id that should be given to the next created term, without
+	 * reserving it. Released ids are returned first.
+	 * 
+	 * @return
+	 * 			an id that is not used in this table.
+	 */
+	public int nextFreeId() {
+		firstFreeId = usedIds.nextClearBit(firstFreeId);
+		return firstFreeId;
+	}
+	
+	/**
+	 * Returns the id given by {@link #nextFreeId()} and reserves it, so 
+	 * that it is not given again until it is released. A reserved id is
+	 * bound by {@link #put(int, Term)} or given back by {@link #release(int)}.
+	 * 
+	 * @return
+	 * 			an id that is neither used nor reserved in this table.
+	 */
+	public int reserveId() {
+		int id = nextFreeId();
+		if(id >= bound)
+			extendBound(id);
+		usedIds.set(id);
+		return id;
+	}
+	
+	/**
+	 * Gives back a reserved id that has not been bound to any term.
+	 * 
+	 * @param id
+	 */
+	public void release(int id) {
+		if(id >= 0 && id < bound && terms[id] == null)
+			freeId(id);
+	}
+	
+	/**
+	 * The number of terms in this table.
+	 * 
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	private void freeId(int id) {
+		usedIds.clear(id);
+		firstFreeId = Math.min(firstFreeId, id);
+	}
+	
+	/*
+	 * Ids skipped between the former bound and id become holes,
+	 * and sparse terms reached by the new bound are moved to the array.
+	 */
+	private void extendBound(int id) {
+		if(id >= terms.length)
+			terms = Arrays.copyOf(terms, Math.max(id + 1, terms.length + (terms.length >> 1)));
+		bound = id + 1;
+		while(!sparseTerms.isEmpty() && sparseTerms.firstKey() < bound) {
+			Map.Entry<Integer, Term> e = sparseTerms.pollFirstEntry();
+			terms[e.getKey()] = e.getValue();
+			usedIds.set(e.getKey());
+		}
+	}
+
+	@Override
+	public Iterator<Term> iterator() {
+		Iterator<Term> denseIterator = new AbstractIterator<Term>() {
+			private int i = 0;
+			
+			@Override
+			protected Term computeNext() {
+				while(i < bound) {
+					Term t = terms[i++];
+					if(t != null)
+						return t;
+				}
+				return endOfData();
+			}
+		};
+		return sparseTerms.isEmpty() ? 
+				denseIterator : 
+					Iterators.concat(denseIterator, Iterators.unmodifiableIterator(sparseTerms.values().iterator()));
+	}
+}
@@ -5,9 +5,9 @@ import java.util.Comparator;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ComparisonChain;
 
+import eu.project.ttc.models.AbstractTermOccurrence;
 import eu.project.ttc.models.Term;
 import eu.project.ttc.models.TermIndex;
-import eu.project.ttc.models.TermOccurrence;
 
 public abstract class TermMeasure {
 	
@@ -115,10 +115,10 @@ public abstract class TermMeasure {
 		};
 	}
 
-	public Comparator<? super TermOccurrence> getOccurrenceComparator(final boolean reverse) {
-		return new Comparator<TermOccurrence>() {
+	public Comparator<? super AbstractTermOccurrence> getOccurrenceComparator(final boolean reverse) {
+		return new Comparator<AbstractTermOccurrence>() {
 			@Override
-			public int compare(TermOccurrence o1, TermOccurrence o2) {
+			public int compare(AbstractTermOccurrence o1, AbstractTermOccurrence o2) {
 				return ComparisonChain.start()
 					.compare(reverse ? getValue(o2.getTerm()) : getValue(o1.getTerm()), reverse ? getValue(o1.getTerm()) : getValue(o2.getTerm()))
 					.compare(o1.getSourceDocument().getUrl(), o2.getSourceDocument().getUrl())
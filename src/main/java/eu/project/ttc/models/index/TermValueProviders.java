@@ -23,7 +23,6 @@ package eu.project.ttc.models.index;
 
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -40,6 +39,7 @@ import eu.project.ttc.models.LemmaStemHolder;
 import eu.project.ttc.models.Term;
 import eu.project.ttc.models.TermWord;
 import eu.project.ttc.utils.TermSuiteConstants;
+import eu.project.ttc.utils.TermSuiteUtils;
 
 public class TermValueProviders {
 	private static final Logger LOGGER = LoggerFactory.getLogger(TermValueProviders.class);
@@ -89,48 +89,117 @@ public class TermValueProviders {
 	};
 
 	
-	public static final TermValueProvider WORD_LEMMA_STEM_PROVIDER = new AbstractTermValueProvider(TermIndexes.WORD_COUPLE_LEMMA_STEM) {
+	/**
+	 * 
+	 * Base class of the word couple providers: the classes of a term are 
+	 * the pairs <code>lemma+right</code> of its sorted lemmas, where <code>right</code> 
+	 * is a value derived from the second lemma of the pair.
+	 * 
+	 * Class hashes are computed pair by pair, without building the class strings.
+	 *
+	 */
+	abstract static class WordCoupleValueProvider extends AbstractTermValueProvider implements TermHashValueProvider {
+		
+		WordCoupleValueProvider(String name) {
+			super(name);
+		}
+		
+		/**
+		 * The lemmas of the term to couple, in any order.
+		 */
+		protected abstract List<String> getLemmas(Term term);
+
+		/**
+		 * The right part of the classes having <code>lemma</code> as second lemma.
+		 */
+		protected abstract String getRight(Term term, String lemma);
+		
+		private String[] getRights(Term term, List<String> sortedLemmas) {
+			String[] rights = new String[sortedLemmas.size()];
+			for(int j = 1; j < rights.length; j++) 
+				rights[j] = getRight(term, sortedLemmas.get(j));
+			return rights;
+		}
 
 		@Override
 		public Collection<String> getClasses(Term term) {
-			List<String> lemmas = Lists.newArrayListWithCapacity(term.getWords().size());
-			
-			Map<String, String> stems = new HashMap<String, String>();
-			for(TermWord w:term.getWords()) {
-				if (w.getWord().getLemma() == null || w.getWord().getLemma().isEmpty()) {
-					LOGGER.warn("lemma is null or empty: " + w);
-					continue;
-				} else if(TermSuiteConstants.TERM_MATCHER_LABELS.contains(w.getSyntacticLabel())) {
-						lemmas.add(w.getWord().getNormalizedLemma());
-					if(w.getWord().getStem() == null || w.getWord().getStem().isEmpty()) {
-						LOGGER.warn("stem is null or empty: " + w);
-					} else 
-						stems.put(w.getWord().getNormalizedLemma(), w.getWord().getNormalizedStem());
-				}
-			}	
+			List<String> lemmas = getLemmas(term);
 			Collections.sort(lemmas);
-			List<String> keys = Lists.newArrayListWithCapacity(lemmas.size());
-			
+			String[] rights = getRights(term, lemmas);
+			List<String> keys = Lists.newArrayListWithCapacity((lemmas.size()*(lemmas.size()-1))/2);
 			for (int i = 0 ; i < lemmas.size(); i++) {
 				for (int j = i + 1; j < lemmas.size(); j++) {
 					StringBuilder sb = new StringBuilder();
 					sb.append(lemmas.get(i));
 					sb.append(TermSuiteConstants.PLUS);
-					sb.append(stems.get(lemmas.get(j)));
+					sb.append(rights[j]);
 					keys.add(sb.toString());
 				}
 			}
-			
-
 			return keys;
 		}
+		
+		@Override
+		public long[] getClassHashes(Term term) {
+			List<String> lemmas = getLemmas(term);
+			Collections.sort(lemmas);
+			String[] rights = getRights(term, lemmas);
+			long[] hashes = new long[(lemmas.size()*(lemmas.size()-1))/2];
+			int k = 0;
+			for (int i = 0 ; i < lemmas.size(); i++) {
+				for (int j = i + 1; j < lemmas.size(); j++) 
+					hashes[k++] = TermSuiteUtils.getPairHash(
+							lemmas.get(i), 
+							TermSuiteConstants.PLUS, 
+							String.valueOf(rights[j]));
+			}
+			return hashes;
+		}
+	}
+	
+	public static final TermValueProvider WORD_LEMMA_STEM_PROVIDER = new WordCoupleValueProvider(TermIndexes.WORD_COUPLE_LEMMA_STEM) {
+
+		@Override
+		protected List<String> getLemmas(Term term) {
+			List<String> lemmas = Lists.newArrayListWithCapacity(term.getWords().size());
+			for(TermWord w:term.getWords()) {
+				if (w.getWord().getLemma() == null || w.getWord().getLemma().isEmpty()) {
+					LOGGER.warn("lemma is null or empty: " + w);
+					continue;
+				} else if(TermSuiteConstants.TERM_MATCHER_LABELS.contains(w.getSyntacticLabel())) {
+					lemmas.add(w.getWord().getNormalizedLemma());
+					if(w.getWord().getStem() == null || w.getWord().getStem().isEmpty())
+						LOGGER.warn("stem is null or empty: " + w);
+				}
+			}
+			return lemmas;
+		}
+		
+		/*
+		 * The stem of the last coupled word having this normalized lemma and a stem.
+		 */
+		@Override
+		protected String getRight(Term term, String lemma) {
+			TermWord w;
+			for(int i = term.getWords().size() - 1; i >= 0; i--) {
+				w = term.getWords().get(i);
+				if(w.getWord().getLemma() != null 
+						&& !w.getWord().getLemma().isEmpty()
+						&& TermSuiteConstants.TERM_MATCHER_LABELS.contains(w.getSyntacticLabel())
+						&& w.getWord().getStem() != null 
+						&& !w.getWord().getStem().isEmpty()
+						&& w.getWord().getNormalizedLemma().equals(lemma))
+					return w.getWord().getNormalizedStem();
+			}
+			return null;
+		}
 	};
 	protected static final String NO_LEMMA_SET = "__no_lemma_set__";
 		
-	public static final TermValueProvider WORD_LEMMA_LEMMA_PROVIDER = new AbstractTermValueProvider(TermIndexes.WORD_COUPLE_LEMMA_LEMMA) {
+	public static final TermValueProvider WORD_LEMMA_LEMMA_PROVIDER = new WordCoupleValueProvider(TermIndexes.WORD_COUPLE_LEMMA_LEMMA) {
 
 		@Override
-		public Collection<String> getClasses(Term term) {
+		protected List<String> getLemmas(Term term) {
 			List<String> lemmas = Lists.newArrayListWithCapacity(term.getWords().size());
 			for(TermWord w:term.getWords()) {
 				if (w.getWord().getLemma() == null || w.getWord().getLemma().isEmpty()) {
@@ -148,22 +217,13 @@ public class TermValueProviders {
 						}
 					}
 				}
-			}	
-			Collections.sort(lemmas);
-			List<String> keys = Lists.newArrayListWithCapacity((lemmas.size()*(lemmas.size()-1))/2);
-
-			for (int i = 0 ; i < lemmas.size(); i++) {
-				for (int j = i + 1; j < lemmas.size(); j++) {
-					StringBuilder sb = new StringBuilder();
-					sb.append(lemmas.get(i));
-					sb.append(TermSuiteConstants.PLUS);
-					sb.append(lemmas.get(j));
-					keys.add(sb.toString());
-				}
 			}
-			
-			return keys;
-			
+			return lemmas;
+		}
+		
+		@Override
+		protected String getRight(Term term, String lemma) {
+			return lemma;
 		}
 	};
 	
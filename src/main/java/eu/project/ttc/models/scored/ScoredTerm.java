@@ -6,8 +6,8 @@ import java.util.List;
 import com.google.common.base.Objects;
 import com.google.common.collect.Lists;
 
+import eu.project.ttc.models.AbstractTermOccurrence;
 import eu.project.ttc.models.Term;
-import eu.project.ttc.models.TermOccurrence;
 import eu.project.ttc.models.TermVariation;
 import eu.project.ttc.resources.ScoredModel;
 import eu.project.ttc.utils.TermOccurrenceUtils;
@@ -40,7 +40,7 @@ public class ScoredTerm extends ScoredTermOrVariant {
 	 */
 	public double getTermIndependanceScore() {
 		if(independance == -1) {
-			Collection<TermOccurrence> occs = Lists.newLinkedList(getTerm().getOccurrences());
+			Collection<AbstractTermOccurrence> occs = Lists.newLinkedList(getTerm().getOccurrences());
 			for(TermVariation tv:getTerm().getVariations()) {
 				TermOccurrenceUtils.removeOverlaps(tv.getVariant().getOccurrences(), occs);
 			}
@@ -8,15 +8,15 @@ import java.util.List;
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.Lists;
 
+import eu.project.ttc.models.AbstractTermOccurrence;
 import eu.project.ttc.models.Term;
-import eu.project.ttc.models.TermOccurrence;
 import eu.project.ttc.resources.ScoredModel;
 import eu.project.ttc.utils.StringUtils;
 import eu.project.ttc.utils.TermOccurrenceUtils;
 
 public abstract class ScoredTermOrVariant {
 
-	private List<TermOccurrence> occurrences;
+	private List<AbstractTermOccurrence> occurrences;
 	protected int frequency = Integer.MIN_VALUE;
 	protected Term term;
 	protected ScoredModel scoredModel;
@@ -28,11 +28,11 @@ public abstract class ScoredTermOrVariant {
 		reset();
 	}
 
-	public int removeOverlappingOccurrences(Iterable<TermOccurrence> otherOccurrences) {
-		TermOccurrence currentSo;
+	public int removeOverlappingOccurrences(Iterable<AbstractTermOccurrence> otherOccurrences) {
+		AbstractTermOccurrence currentSo;
 		int cnt = 0;
-		for(TermOccurrence so:otherOccurrences) {
-			Iterator<TermOccurrence> it = occurrences.iterator();
+		for(AbstractTermOccurrence so:otherOccurrences) {
+			Iterator<AbstractTermOccurrence> it = occurrences.iterator();
 			while(it.hasNext()) {
 				currentSo = it.next();
 				if(TermOccurrenceUtils.areOverlapping(so, currentSo)) {
@@ -48,7 +48,7 @@ public abstract class ScoredTermOrVariant {
 		return term;
 	}
 	
-	public Collection<TermOccurrence> getOccurrences() {
+	public Collection<AbstractTermOccurrence> getOccurrences() {
 		return Collections.unmodifiableCollection(this.occurrences);
 	}
 	
@@ -36,6 +36,8 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 
+import eu.project.ttc.utils.SymbolTable;
+
 public class GeneralLanguageResource implements GeneralLanguage {
 	private static final Logger LOGGER = LoggerFactory.getLogger(GeneralLanguageResource.class);
 
@@ -52,22 +54,27 @@ public class GeneralLanguageResource implements GeneralLanguage {
 	
 	private Multimap<String, Entry> frequencies;
 	private Set<String> words;
+	
+	/*
+	 * Entries store pattern ids so that lookups compare ints
+	 */
+	private SymbolTable patterns = new SymbolTable();
 
 	public class Entry {
 		private String lemma;
-		private String pattern;
+		private int patternId;
 		private int frequency;
 		public Entry(String lemma, String pattern, int frequency) {
 			super();
 			this.lemma = lemma;
-			this.pattern = pattern;
+			this.patternId = patterns.getId(pattern);
 			this.frequency = frequency;
 		}
 		public String getLemma() {
 			return lemma;
 		}
 		public String getPattern() {
-			return pattern;
+			return patterns.getSymbol(patternId);
 		}
 		public int getFrequency() {
 			return frequency;
@@ -75,13 +82,13 @@ public class GeneralLanguageResource implements GeneralLanguage {
 		
 		@Override
 		public int hashCode() {
-			return Objects.hashCode(this.lemma, this.pattern);
+			return Objects.hashCode(this.lemma, this.patternId);
 		}
 		
 		@Override
 		public boolean equals(Object obj) {
 			if (obj instanceof Entry) 
-				return Objects.equal(((Entry)obj).lemma, ((Entry)obj).pattern);
+				return Objects.equal(((Entry)obj).lemma, ((Entry)obj).getPattern());
 			else
 				return false;
 		}
@@ -149,8 +156,11 @@ public class GeneralLanguageResource implements GeneralLanguage {
 	}
 	
 	public Entry getEntry(String lemma, String pattern) {
+		int patternId = patterns.lookup(pattern);
+		if(patternId == SymbolTable.NO_SYMBOL)
+			return null;
 		for(Entry e:this.frequencies.get(lemma.toLowerCase()))
-			if(e.getPattern().equals(pattern))
+			if(e.patternId == patternId)
 				return e;
 		return null;
 	}
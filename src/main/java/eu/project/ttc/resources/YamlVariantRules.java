@@ -36,20 +36,28 @@ import org.slf4j.LoggerFactory;
 import com.google.common.collect.ImmutableList;
 
 import eu.project.ttc.engines.variant.VariantRule;
+import eu.project.ttc.engines.variant.VariantRuleIndex;
 import eu.project.ttc.engines.variant.VariantRuleYamlIO;
 import eu.project.ttc.models.GroovyAdapter;
 import eu.project.ttc.models.Term;
 
 public class YamlVariantRules implements SharedResourceObject {
 	private static final Logger LOGGER = LoggerFactory.getLogger(YamlVariantRules.class);
+	
+	/*
+	 * The max number of Groovy term views kept in cache, 
+	 * i.e. several times the biggest gathering class
+	 */
+	private static final int GROOVY_ADAPTER_MAX_TERMS = 20000;
 
 	private List<VariantRule> variantRules;
+	private VariantRuleIndex variantRuleIndex;
 	private GroovyAdapter groovyAdapter;
 
 
 	@Override
 	public void load(DataResource aData) throws ResourceInitializationException {
-		this.groovyAdapter = new GroovyAdapter();
+		this.groovyAdapter = new GroovyAdapter(GROOVY_ADAPTER_MAX_TERMS);
 		InputStream inputStream = null;
 		try {
 			inputStream = aData.getInputStream();
@@ -61,6 +69,7 @@ public class YamlVariantRules implements SharedResourceObject {
 			// set the adapter
 			for(VariantRule rule:this.variantRules)
 				rule.setGroovyAdapter(this.groovyAdapter);
+			this.variantRuleIndex = new VariantRuleIndex(this.variantRules);
 			
 		} catch (IOException e) {
 			LOGGER.error("Could not load the yaml variant rules resource dur to IOException");
@@ -74,20 +83,12 @@ public class YamlVariantRules implements SharedResourceObject {
 		return variantRules;
 	}
 	
+	public VariantRuleIndex getVariantRuleIndex() {
+		return variantRuleIndex;
+	}
+	
 	public VariantRule getMatchingRule(Term source, Term target) {
-		for(VariantRule rule:variantRules) {
-			if(rule.isSourceCompound() && !source.isCompound())
-				continue;
-			if(rule.isTargetCompound() && !target.isCompound())
-				continue;
-			if(!rule.getSourcePatterns().contains(source.getPattern()))
-				continue;
-			if(!rule.getTargetPatterns().contains(target.getPattern()))
-				continue;
-			if(rule.matchExpression(source, target))
-				return rule;
-		}
-		return null;
+		return variantRuleIndex.getMatchingRule(source, target);
 	}
 	
 	public void clearAdapterCache() {
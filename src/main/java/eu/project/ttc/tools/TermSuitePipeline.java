@@ -80,9 +80,12 @@ import eu.project.ttc.engines.exporter.TBXExporter;
 import eu.project.ttc.engines.exporter.TSVExporter;
 import eu.project.ttc.engines.exporter.VariantEvalExporter;
 import eu.project.ttc.engines.exporter.XmiCasExporter;
+import eu.project.ttc.engines.variant.VariantRuleIndex;
 import eu.project.ttc.metrics.LogLikelihood;
+import eu.project.ttc.models.OccurrenceStore;
 import eu.project.ttc.models.OccurrenceType;
 import eu.project.ttc.models.TermIndex;
+import eu.project.ttc.models.index.ConcurrentTermIndex;
 import eu.project.ttc.models.index.MemoryTermIndex;
 import eu.project.ttc.readers.AbstractToTxtSaxHandler;
 import eu.project.ttc.readers.EmptyCollectionReader;
@@ -163,6 +166,9 @@ public class TermSuitePipeline {
 	private float exportFilteringThreshold = 0;
 	
 	private Optional<? extends TermIndex> termIndex = Optional.absent();
+	private boolean concurrentTermIndex = false;
+	private Optional<Boolean> occurrenceStoreOffHeap = Optional.absent();
+	private boolean coTermIndex = false;
 	private boolean spotWithOccurrences = true;
 	private String contextAssocRateMeasure = LogLikelihood.class.getName();
 
@@ -187,6 +193,11 @@ public class TermSuitePipeline {
 	
 	private Optional<Boolean> logOverlappingRules = Optional.absent();
 	private Optional<Float> graphicalVariantSimilarityThreshold = Optional.absent();
+	private int syntacticVariantGatheringThreads = 1;
+	private int graphicalVariantGatheringThreads = 1;
+	private boolean syntacticVariantRuleStats = false;
+	private String syntacticVariantRuleStatsFile = null;
+	private boolean syntacticVariantAdaptiveRuleOrder = false;
 
 	private Optional<String> postProcessingStrategy = Optional.absent();
 	
@@ -1083,13 +1094,76 @@ public class TermSuitePipeline {
 	 * Creates a new in-memory {@link TermIndex} on which this 
 	 * piepline with run.
 	 * 
+	 * @see #setConcurrentTermIndex(boolean)
+	 * @see #enableColumnarOccurrenceStore(boolean)
+	 * @see #enableCoTermIndex()
 	 * @param name
 	 * 			the name of the new term index
 	 * @return
 	 * 			this {@link TermSuitePipeline} object
 	 */
 	public TermSuitePipeline emptyTermIndex(String name) {
-		this.termIndex = Optional.of(new MemoryTermIndex(name, this.lang));
+		Preconditions.checkState(
+				!(concurrentTermIndex && occurrenceStoreOffHeap.isPresent()), 
+				"A concurrent term index cannot use a columnar occurrence store");
+		Preconditions.checkState(
+				!(concurrentTermIndex && coTermIndex), 
+				"A concurrent term index cannot use a co-term index");
+		if(concurrentTermIndex)
+			this.termIndex = Optional.of(new ConcurrentTermIndex(name, this.lang));
+		else {
+			MemoryTermIndex memoryTermIndex = occurrenceStoreOffHeap.isPresent() ?
+					new MemoryTermIndex(name, this.lang, new OccurrenceStore(occurrenceStoreOffHeap.get()))
+					: new MemoryTermIndex(name, this.lang);
+			if(coTermIndex)
+				memoryTermIndex.enableCoTermIndex();
+			this.termIndex = Optional.of(memoryTermIndex);
+		}
+		return this;
+	}
+
+	/**
+	 * Makes {@link #emptyTermIndex(String)} maintain a reverse index
+	 * of context vectors, from co-terms to the terms whose context
+	 * vector contain them.
+	 * 
+	 * @see MemoryTermIndex#enableCoTermIndex()
+	 * @return
+	 * 			this {@link TermSuitePipeline} object
+	 */
+	public TermSuitePipeline enableCoTermIndex() {
+		this.coTermIndex = true;
+		return this;
+	}
+
+	/**
+	 * Makes {@link #emptyTermIndex(String)} store term occurrences 
+	 * in a columnar {@link OccurrenceStore} instead of one object 
+	 * per occurrence.
+	 * 
+	 * @param offHeap
+	 * 			<code>true</code> if the store columns must be allocated 
+	 * 			outside of the Java heap
+	 * @return
+	 * 			this {@link TermSuitePipeline} object
+	 */
+	public TermSuitePipeline enableColumnarOccurrenceStore(boolean offHeap) {
+		this.occurrenceStoreOffHeap = Optional.of(offHeap);
+		return this;
+	}
+
+	/**
+	 * Makes {@link #emptyTermIndex(String)} create a thread-safe
+	 * {@link ConcurrentTermIndex} instead of a {@link MemoryTermIndex}, 
+	 * so that several {@link RegexSpotter} replicas can feed the 
+	 * same term index.
+	 * 
+	 * @param concurrentTermIndex
+	 * @return
+	 * 			this {@link TermSuitePipeline} object
+	 */
+	public TermSuitePipeline setConcurrentTermIndex(boolean concurrentTermIndex) {
+		this.concurrentTermIndex = concurrentTermIndex;
 		return this;
 	}
 
@@ -1288,13 +1362,29 @@ public class TermSuitePipeline {
 		this.graphicalVariantSimilarityThreshold = Optional.of(th);
 		return this;
 	}
+
+	/**
+	 * Sets the number of threads used by {@link #aeGraphicalVariantGatherer()}
+	 * to compute the edit distances of candidate pairs concurrently.
+	 * 
+	 * @param nbThreads
+	 * 			the number of threads, 1 for sequential gathering (default)
+	 * @return
+	 * 			this {@link TermSuitePipeline} object
+	 */
+	public TermSuitePipeline setGraphicalVariantGatheringThreads(int nbThreads) {
+		Preconditions.checkArgument(nbThreads > 0, "Number of threads must be positive: %s", nbThreads);
+		this.graphicalVariantGatheringThreads = nbThreads;
+		return this;
+	}
 	
 	public TermSuitePipeline aeGraphicalVariantGatherer()   {
 		try {
 			AnalysisEngineDescription ae = AnalysisEngineFactory.createEngineDescription(
 					GraphicalVariantGatherer.class,
 					GraphicalVariantGatherer.LANG, lang.getCode(),
-					GraphicalVariantGatherer.SIMILARITY_THRESHOLD, graphicalVariantSimilarityThreshold.isPresent() ? graphicalVariantSimilarityThreshold.get() : 0.9f
+					GraphicalVariantGatherer.SIMILARITY_THRESHOLD, graphicalVariantSimilarityThreshold.isPresent() ? graphicalVariantSimilarityThreshold.get() : 0.9f,
+					GraphicalVariantGatherer.NB_THREADS, graphicalVariantGatheringThreads
 				);
 			ExternalResourceFactory.bindResource(ae, resTermIndex());
 			return aggregateAndReturn(ae);
@@ -1319,15 +1409,93 @@ public class TermSuitePipeline {
 		}
 	}
 	
+	/**
+	 * Sets the number of threads used by {@link #aeSyntacticVariantGatherer()}
+	 * to compare the terms of different gathering classes concurrently.
+	 * 
+	 * @param nbThreads
+	 * 			the number of threads, 1 for sequential gathering (default)
+	 * @return
+	 * 			this {@link TermSuitePipeline} object
+	 */
+	public TermSuitePipeline setSyntacticVariantGatheringThreads(int nbThreads) {
+		Preconditions.checkArgument(nbThreads > 0, "Number of threads must be positive: %s", nbThreads);
+		this.syntacticVariantGatheringThreads = nbThreads;
+		return this;
+	}
+
+	/**
+	 * Makes {@link #aeSyntacticVariantGatherer()} count, time and log 
+	 * the evaluations of each variant rule.
+	 * 
+	 * @param enabled
+	 * 			<code>true</code> to log rule stats, <code>false</code> otherwise (default)
+	 * @return
+	 * 			this {@link TermSuitePipeline} object
+	 */
+	public TermSuitePipeline setSyntacticVariantRuleStats(boolean enabled) {
+		this.syntacticVariantRuleStats = enabled;
+		return this;
+	}
+
+	/**
+	 * Exports the stats of each variant rule of {@link #aeSyntacticVariantGatherer()} 
+	 * to a TSV file.
+	 * 
+	 * Columns are :
+	 * <ul>
+	 * <li>the rule name</li>
+	 * <li>number of times the rule expression has been evaluated</li>
+	 * <li>number of times the rule expression has been true</li>
+	 * <li>cumulated evaluation time in nanoseconds</li>
+	 * </ul>
+	 * 
+	 * @see #setSyntacticVariantRuleStats(boolean)
+	 * @param toFile
+	 * @return
+	 * 			this {@link TermSuitePipeline} object
+	 */
+	public TermSuitePipeline setSyntacticVariantRuleStatsFile(String toFile) {
+		Preconditions.checkNotNull(toFile);
+		this.syntacticVariantRuleStatsFile = toFile;
+		return this;
+	}
+
+	/**
+	 * Makes {@link #aeSyntacticVariantGatherer()} reorder the rules accepting 
+	 * the same pairs of terms, so that the cheapest and most selective expressions 
+	 * are evaluated first. Only rules whose expressions provably cannot match the
+	 * same pair are reordered, so the matching rules do not change.
+	 * 
+	 * @see VariantRuleIndex#setAdaptiveOrdering(boolean)
+	 * @param enabled
+	 * 			<code>true</code> to reorder rules, <code>false</code> to 
+	 * 			always follow the rule list order (default)
+	 * @return
+	 * 			this {@link TermSuitePipeline} object
+	 */
+	public TermSuitePipeline setSyntacticVariantAdaptiveRuleOrder(boolean enabled) {
+		this.syntacticVariantAdaptiveRuleOrder = enabled;
+		return this;
+	}
+
 	/**
 	 * Gathers terms according to their syntactic structures.
 	 * 
+	 * @see #setSyntacticVariantGatheringThreads(int)
+	 * @see #setSyntacticVariantRuleStats(boolean)
+	 * @see #setSyntacticVariantRuleStatsFile(String)
+	 * @see #setSyntacticVariantAdaptiveRuleOrder(boolean)
 	 * @return
 	 */
 	public TermSuitePipeline aeSyntacticVariantGatherer()   {
 		try {
 			AnalysisEngineDescription ae = AnalysisEngineFactory.createEngineDescription(
-					SyntacticTermGatherer.class
+					SyntacticTermGatherer.class,
+					SyntacticTermGatherer.NB_THREADS, syntacticVariantGatheringThreads,
+					SyntacticTermGatherer.RULE_STATS, syntacticVariantRuleStats,
+					SyntacticTermGatherer.RULE_STATS_FILE, syntacticVariantRuleStatsFile,
+					SyntacticTermGatherer.ADAPTIVE_RULE_ORDER, syntacticVariantAdaptiveRuleOrder
 				);
 			
 			ExternalResourceFactory.bindResource(ae, resSyntacticVariantRules());
@@ -1522,11 +1690,28 @@ public class TermSuitePipeline {
 	 * @return
 	 */
 	public TermSuitePipeline aeTermClassifier(TermProperty sortingProperty)  {
+		return aeTermClassifier(sortingProperty, 0);
+	}
+
+	/**
+	 * 
+	 * @see TermClassifier
+	 * @param sortingProperty
+	 * 			the term property used to order terms before they are classified. 
+	 * 			The first term of a class appearing given this order will be considered 
+	 * 			as the head of the class.
+	 * @param maxVariationDepth
+	 * 			the max number of variations between a class head and its variants,
+	 * 			0 for the connected components of the variation graph
+	 * @return
+	 */
+	public TermSuitePipeline aeTermClassifier(TermProperty sortingProperty, int maxVariationDepth)  {
+		Preconditions.checkArgument(maxVariationDepth >= 0, "Max variation depth must be positive: %s", maxVariationDepth);
 		try {
 			AnalysisEngineDescription ae = AnalysisEngineFactory.createEngineDescription(
 					TermClassifier.class,
-					TermClassifier.CLASSIFYING_PROPERTY, sortingProperty
-					
+					TermClassifier.CLASSIFYING_PROPERTY, sortingProperty,
+					TermClassifier.MAX_VARIATION_DEPTH, maxVariationDepth
 				);
 			ExternalResourceFactory.bindResource(ae, resTermIndex());
 			return aggregateAndReturn(ae);
@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright 2015 - CNRS (Centre National de Recherche Scientifique)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ *******************************************************************************/
+package eu.project.ttc.utils;
+
+/**
+ * 
+ * A set of primitive longs, stored in an open-addressing 
+ * (linear probing) table. 
+ * 
+ * This class is not thread-safe.
+ * 
+ * @author Damien Cram
+ *
+ */
+public class LongHashSet {
+	private static final int DEFAULT_CAPACITY = 1024;
+
+	/*
+	 * 0 is reserved for empty slots and tracked apart
+	 */
+	private static final long EMPTY = 0L;
+	
+	private long[] keys;
+	private int mask;
+	private int size = 0;
+	private boolean containsEmpty = false;
+	
+	public LongHashSet() {
+		this.keys = new long[DEFAULT_CAPACITY];
+		this.mask = DEFAULT_CAPACITY - 1;
+	}
+
+	/**
+	 * Adds a value to this set.
+	 * 
+	 * @param value
+	 * @return
+	 * 			<code>true</code> if the value was not already in this set
+	 */
+	public boolean add(long value) {
+		if(value == EMPTY) {
+			if(containsEmpty)
+				return false;
+			containsEmpty = true;
+			size++;
+			return true;
+		}
+		if(2 * (size + 1) > keys.length)
+			rehash(keys.length * 2);
+		int i = home(value);
+		while(keys[i] != EMPTY) {
+			if(keys[i] == value)
+				return false;
+			i = (i + 1) & mask;
+		}
+		keys[i] = value;
+		size++;
+		return true;
+	}
+	
+	public boolean contains(long value) {
+		if(value == EMPTY)
+			return containsEmpty;
+		int i = home(value);
+		while(keys[i] != EMPTY) {
+			if(keys[i] == value)
+				return true;
+			i = (i + 1) & mask;
+		}
+		return false;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public void clear() {
+		this.keys = new long[DEFAULT_CAPACITY];
+		this.mask = DEFAULT_CAPACITY - 1;
+		this.size = 0;
+		this.containsEmpty = false;
+	}
+	
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		keys = new long[capacity];
+		mask = capacity - 1;
+		for(long key:oldKeys) {
+			if(key != EMPTY) {
+				int j = home(key);
+				while(keys[j] != EMPTY)
+					j = (j + 1) & mask;
+				keys[j] = key;
+			}
+		}
+	}
+
+	/*
+	 * Fibonacci hashing, since keys may only differ in their high bits
+	 */
+	private int home(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32)) & mask;
+	}
+}
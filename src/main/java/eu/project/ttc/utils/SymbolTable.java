@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * Copyright 2015 - CNRS (Centre National de Recherche Scientifique)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ *******************************************************************************/
+package eu.project.ttc.utils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * 
+ * A table of symbols (lemmas, stems, labels, patterns...) assigning 
+ * a dense int id to each distinct string.
+ * 
+ * Objects storing the ids (or the canonical instances returned by 
+ * {@link #intern(String)}) instead of their own copies of the strings 
+ * share one instance per distinct symbol, and can compare symbols
+ * by id or by reference.
+ * 
+ * Each registration counts as a reference to the symbol. A symbol
+ * is dropped from the table once all its references are released
+ * by {@link #release(String)}, and its id is given to the next new 
+ * symbol.
+ * 
+ * This class is thread-safe.
+ * 
+ * @author Damien Cram
+ *
+ */
+public class SymbolTable {
+	
+	/**
+	 * The id returned by {@link #lookup(String)} for unknown symbols.
+	 */
+	public static final int NO_SYMBOL = -1;
+	
+	private Map<String, Integer> ids = Maps.newHashMap();
+	private List<String> symbols = Lists.newArrayList();
+	private int[] refCounts = new int[16];
+	
+	/*
+	 * Stack of the ids of dropped symbols
+	 */
+	private int[] freeIds = new int[16];
+	private int nbFreeIds = 0;
+
+	/**
+	 * Returns the id of a symbol, registering the symbol if it is new.
+	 * 
+	 * @param symbol
+	 * @return
+	 * 			the id of the symbol
+	 */
+	public synchronized int getId(String symbol) {
+		Preconditions.checkNotNull(symbol);
+		Integer id = ids.get(symbol);
+		if(id == null) {
+			if(nbFreeIds > 0) {
+				id = freeIds[--nbFreeIds];
+				symbols.set(id, symbol);
+			} else {
+				id = symbols.size();
+				symbols.add(symbol);
+				if(id == refCounts.length)
+					refCounts = Arrays.copyOf(refCounts, id * 2);
+			}
+			ids.put(symbol, id);
+		}
+		refCounts[id]++;
+		return id;
+	}
+	
+	/**
+	 * Releases one reference to a symbol, and drops the symbol 
+	 * if it is not referenced anymore.
+	 * 
+	 * @param symbol
+	 * 			the symbol, may be null
+	 */
+	public synchronized void release(String symbol) {
+		Integer id = symbol == null ? null : ids.get(symbol);
+		if(id != null && --refCounts[id] == 0) {
+			ids.remove(symbol);
+			symbols.set(id, null);
+			if(nbFreeIds == freeIds.length)
+				freeIds = Arrays.copyOf(freeIds, nbFreeIds * 2);
+			freeIds[nbFreeIds++] = id;
+		}
+	}
+	
+	/**
+	 * Returns the id of a symbol without registering it.
+	 * 
+	 * @param symbol
+	 * @return
+	 * 			the id of the symbol, {@link #NO_SYMBOL} if the symbol is unknown
+	 */
+	public synchronized int lookup(String symbol) {
+		Integer id = ids.get(symbol);
+		return id == null ? NO_SYMBOL : id;
+	}
+	
+	/**
+	 * 
+	 * @param id
+	 * @return
+	 * 			the symbol of the param id, <code>null</code> if it has been dropped
+	 */
+	public synchronized String getSymbol(int id) {
+		return symbols.get(id);
+	}
+	
+	/**
+	 * Returns the canonical instance of a symbol, registering it if it is new.
+	 * 
+	 * @param symbol
+	 * 			the symbol, may be null
+	 * @return
+	 * 			the canonical instance, <code>null</code> if the symbol is null
+	 */
+	public synchronized String intern(String symbol) {
+		return symbol == null ? null : symbols.get(getId(symbol));
+	}
+	
+	/**
+	 * The number of symbols in this table.
+	 * 
+	 * @return
+	 */
+	public synchronized int size() {
+		return ids.size();
+	}
+	
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("size", size()).toString();
+	}
+}
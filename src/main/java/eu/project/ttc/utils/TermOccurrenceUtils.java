@@ -33,12 +33,12 @@ import com.google.common.collect.ComparisonChain;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
+import eu.project.ttc.models.AbstractTermOccurrence;
 import eu.project.ttc.models.Document;
-import eu.project.ttc.models.TermOccurrence;
 import eu.project.ttc.models.index.TermMeasure;
 
 /**
- * A utililty class for {@link TermOccurrence} objects and collections.
+ * A utililty class for {@link AbstractTermOccurrence} objects and collections.
  * 
  * @author Damien Cram
  *
@@ -46,9 +46,9 @@ import eu.project.ttc.models.index.TermMeasure;
 public class TermOccurrenceUtils {
 	
 
-	public static Comparator<TermOccurrence> uimaNaturalOrder = new Comparator<TermOccurrence>() {
+	public static Comparator<AbstractTermOccurrence> uimaNaturalOrder = new Comparator<AbstractTermOccurrence>() {
 		@Override
-		public int compare(TermOccurrence o1, TermOccurrence o2) {
+		public int compare(AbstractTermOccurrence o1, AbstractTermOccurrence o2) {
 			return ComparisonChain.start()
 					.compare(o1.getSourceDocument().getUrl(), o2.getSourceDocument().getUrl())
 					.compare(o1.getBegin(), o2.getBegin())
@@ -60,7 +60,7 @@ public class TermOccurrenceUtils {
 	
 	/**
 	 * Given a strategy, detects all primary occurrences in a collection 
-	 * of {@link TermOccurrence}.
+	 * of {@link AbstractTermOccurrence}.
 	 * 
 	 * What defines an occurrence's primary/secondary status is the fact
 	 * that in a {@link Document}, two primary occurrences cannot overlap.
@@ -72,23 +72,23 @@ public class TermOccurrenceUtils {
 	 * 
 	 * 
 	 * @see TermOccurrenceUtils#markPrimaryOccurrenceBiggestMeasureFirst(Collection)
-	 * @see TermOccurrence#isPrimaryOccurrence()
+	 * @see AbstractTermOccurrence#isPrimaryOccurrence()
 	 * @param occs
 	 * 			the occurrence collection
 	 * @param measure
 	 * 			the measure for detecting primary occurrences 
 	 * 			
 	 */
-	public static void markPrimaryOccurrence(
-			Collection<TermOccurrence> occs, TermMeasure measure) {
+	public static <T extends AbstractTermOccurrence> void markPrimaryOccurrence(
+			Collection<T> occs, TermMeasure measure) {
 		
 		
-		for(Iterator<List<TermOccurrence>> it = occurrenceChunkIterator(occs);it.hasNext();) {
-			List<TermOccurrence> chunk = it.next();
-			Set<TermOccurrence> primaryOccs = Sets.newHashSet();
+		for(Iterator<List<T>> it = occurrenceChunkIterator(occs);it.hasNext();) {
+			List<T> chunk = it.next();
+			Set<AbstractTermOccurrence> primaryOccs = Sets.newHashSet();
 			
 			Collections.sort(chunk, measure.getOccurrenceComparator(true));
-			for(TermOccurrence o:chunk) {
+			for(AbstractTermOccurrence o:chunk) {
 				o.setPrimaryOccurrence(!hasOverlappingOffsets(o, primaryOccs));
 				if(o.isPrimaryOccurrence())
 					primaryOccs.add(o);
@@ -101,28 +101,28 @@ public class TermOccurrenceUtils {
 	/**
 	 * Returns a virtual iterator on chunks of an occurrence collection.
 	 * 
-	 * A occurrence collection's chunk is a list of overlapping {@link TermOccurrence}. Every time
+	 * A occurrence collection's chunk is a list of overlapping {@link AbstractTermOccurrence}. Every time
 	 * there is a gap between two occurrences (i.e. there do not overlap),
 	 * a new chunk is created.
 	 * 
 	 * @param occurrences
 	 * @return
 	 */
-	public static Iterator<List<TermOccurrence>> occurrenceChunkIterator(Collection<TermOccurrence> occurrences) {
-		List<TermOccurrence> asList = Lists.newArrayList(occurrences);
+	public static <T extends AbstractTermOccurrence> Iterator<List<T>> occurrenceChunkIterator(Collection<T> occurrences) {
+		List<T> asList = Lists.newArrayList(occurrences);
 		Collections.sort(asList, TermOccurrenceUtils.uimaNaturalOrder);
-		final Iterator<TermOccurrence> it = asList.iterator();
-		return new AbstractIterator<List<TermOccurrence>>() {
-			private List<TermOccurrence> currentChunk = Lists.newArrayList();
+		final Iterator<T> it = asList.iterator();
+		return new AbstractIterator<List<T>>() {
+			private List<T> currentChunk = Lists.newArrayList();
 			
 			@Override
-			protected List<TermOccurrence> computeNext() {
+			protected List<T> computeNext() {
 				while(it.hasNext()) {
-					TermOccurrence next = it.next();
+					T next = it.next();
 					if(currentChunk.isEmpty() || hasOverlappingOffsets(next, currentChunk))
 						currentChunk.add(next);
 					else {
-						List<TermOccurrence> ret = copyAndReinit();
+						List<T> ret = copyAndReinit();
 						currentChunk.add(next);
 						return ret;	
 					}
@@ -133,8 +133,8 @@ public class TermOccurrenceUtils {
 					return endOfData();
 			}
 
-			private List<TermOccurrence> copyAndReinit() {
-				List<TermOccurrence> copy = Lists.newArrayList(currentChunk);
+			private List<T> copyAndReinit() {
+				List<T> copy = Lists.newArrayList(currentChunk);
 				currentChunk = Lists.newArrayList();
 				return copy;
 			}
@@ -151,11 +151,11 @@ public class TermOccurrenceUtils {
 	 * @param occurrenceSet
 	 * 			the occurrence set to analyze, will be modified by this method
 	 */
-	public static void removeOverlaps(Collection<TermOccurrence> referenceSet, Collection<TermOccurrence> occurrenceSet) {
-		Iterator<TermOccurrence> it = occurrenceSet.iterator();
+	public static void removeOverlaps(Collection<? extends AbstractTermOccurrence> referenceSet, Collection<? extends AbstractTermOccurrence> occurrenceSet) {
+		Iterator<? extends AbstractTermOccurrence> it = occurrenceSet.iterator();
 		while(it.hasNext()) {
-			TermOccurrence occ = it.next();
-			for(TermOccurrence refOcc:referenceSet) {
+			AbstractTermOccurrence occ = it.next();
+			for(AbstractTermOccurrence refOcc:referenceSet) {
 				if(occ.getSourceDocument().equals(refOcc.getSourceDocument())
 						&& areOffsetsOverlapping(occ, refOcc)) {
 					it.remove();
@@ -174,22 +174,22 @@ public class TermOccurrenceUtils {
 	 * @param theOccCollection
 	 * @return
 	 */
-	public static boolean hasOverlappingOffsets(TermOccurrence theOcc, Collection<TermOccurrence> theOccCollection) {
-		for(TermOccurrence o:theOccCollection)
+	public static boolean hasOverlappingOffsets(AbstractTermOccurrence theOcc, Collection<? extends AbstractTermOccurrence> theOccCollection) {
+		for(AbstractTermOccurrence o:theOccCollection)
 			if(areOffsetsOverlapping(theOcc, o))
 				return true;
 		return false;
 	}
 	
 	/**
-	 * True if two {@link TermOccurrence} offsets overlap strictly. Sharing exactly
+	 * True if two {@link AbstractTermOccurrence} offsets overlap strictly. Sharing exactly
 	 * one offset (e.g. <code>a.end == b.begin</code>) is not considered as overlap.
 	 * 
 	 * @param a
 	 * @param b
 	 * @return
 	 */
-	public static boolean areOffsetsOverlapping(TermOccurrence a, TermOccurrence b) {
+	public static boolean areOffsetsOverlapping(AbstractTermOccurrence a, AbstractTermOccurrence b) {
 		if(a.getBegin() <= b.getBegin()) 
 			return !(a.getBegin() <= b.getEnd() && a.getEnd() <= b.getBegin());
 		else
@@ -205,7 +205,7 @@ public class TermOccurrenceUtils {
 	 * @param b
 	 * @return
 	 */
-	public static boolean areOverlapping(TermOccurrence a, TermOccurrence b) {
+	public static boolean areOverlapping(AbstractTermOccurrence a, AbstractTermOccurrence b) {
 		return a.getSourceDocument().equals(b.getSourceDocument()) && areOffsetsOverlapping(a, b); 
 	}
 
@@ -53,6 +53,9 @@ import eu.project.ttc.types.WordAnnotation;
 public class TermSuiteUtils {
 	private static final Logger LOGGER = LoggerFactory.getLogger(TermSuiteUtils.class);
 	private static final String GROUPING_KEY_FORMAT = "%s: %s";
+	private static final String GROUPING_KEY_SEPARATOR = ": ";
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
 	public static final IndexingKey<String, String> KEY_ONE_FIRST_LETTERS = getNFirstLetterIndexingKey(1);
 	public static final IndexingKey<String, String> KEY_TWO_FIRST_LETTERS = getNFirstLetterIndexingKey(2);
 	public static final IndexingKey<String, String> KEY_THREE_FIRST_LETTERS = getNFirstLetterIndexingKey(3);
@@ -124,6 +127,107 @@ public class TermSuiteUtils {
 				Joiner.on(TermSuiteConstants.WHITESPACE).join(lemmas));
 	}
 	
+	/**
+	 * Computes the 64-bit FNV-1a hash of the grouping key of an annotation 
+	 * without building the grouping key string.
+	 * 
+	 * The result is equal to {@link #getGroupingKeyHash(String)} invoked on 
+	 * {@link #getGroupingKey(TermOccAnnotation)}.
+	 * 
+	 * @param annotation
+	 * 			the term occurrence annotation
+	 * @return
+	 * 			the hash of the grouping key
+	 */
+	public static long getGroupingKeyHash(TermOccAnnotation annotation) {
+		long hash = FNV_OFFSET_BASIS;
+		int size = annotation.getWords().size();
+		String s;
+		for(int i=0; i< size; i++) {
+			s = annotation.getPattern(i);
+			for(int j=0; j<s.length(); j++)
+				hash = (hash ^ Character.toLowerCase(s.charAt(j))) * FNV_PRIME;
+		}
+		for(int j=0; j<GROUPING_KEY_SEPARATOR.length(); j++)
+			hash = (hash ^ GROUPING_KEY_SEPARATOR.charAt(j)) * FNV_PRIME;
+		for(int i=0; i< size; i++) {
+			if(i > 0)
+				hash = (hash ^ TermSuiteConstants.WHITESPACE) * FNV_PRIME;
+			s = annotation.getWords(i).getLemma();
+			for(int j=0; j<s.length(); j++)
+				hash = (hash ^ s.charAt(j)) * FNV_PRIME;
+		}
+		return hash;
+	}
+
+	/**
+	 * Computes the 64-bit FNV-1a hash of a grouping key.
+	 * 
+	 * @see #getGroupingKeyHash(TermOccAnnotation)
+	 * @param groupingKey
+	 * @return
+	 */
+	public static long getGroupingKeyHash(String groupingKey) {
+		long hash = FNV_OFFSET_BASIS;
+		for(int i=0; i<groupingKey.length(); i++)
+			hash = (hash ^ groupingKey.charAt(i)) * FNV_PRIME;
+		return hash;
+	}
+
+	/**
+	 * Computes the 64-bit FNV-1a hash of the string <code>left + separator + right</code>
+	 * without building it.
+	 * 
+	 * @param left
+	 * @param separator
+	 * @param right
+	 * @return
+	 * 			the same hash as {@link #getGroupingKeyHash(String)} on the concatenated string
+	 */
+	public static long getPairHash(String left, char separator, String right) {
+		long hash = FNV_OFFSET_BASIS;
+		for(int i=0; i<left.length(); i++)
+			hash = (hash ^ left.charAt(i)) * FNV_PRIME;
+		hash = (hash ^ separator) * FNV_PRIME;
+		for(int i=0; i<right.length(); i++)
+			hash = (hash ^ right.charAt(i)) * FNV_PRIME;
+		return hash;
+	}
+
+	/**
+	 * Tests if a grouping key is the one of an annotation without building 
+	 * the grouping key string of the annotation.
+	 * 
+	 * @param groupingKey
+	 * @param annotation
+	 * @return
+	 * 			<code>true</code> if <code>groupingKey</code> is equal 
+	 * 			to {@link #getGroupingKey(TermOccAnnotation)}
+	 */
+	public static boolean isGroupingKeyOf(String groupingKey, TermOccAnnotation annotation) {
+		int pos = 0;
+		int size = annotation.getWords().size();
+		String s;
+		for(int i=0; i< size; i++) {
+			s = annotation.getPattern(i);
+			for(int j=0; j<s.length(); j++)
+				if(pos >= groupingKey.length() || groupingKey.charAt(pos++) != Character.toLowerCase(s.charAt(j)))
+					return false;
+		}
+		if(!groupingKey.startsWith(GROUPING_KEY_SEPARATOR, pos))
+			return false;
+		pos += GROUPING_KEY_SEPARATOR.length();
+		for(int i=0; i< size; i++) {
+			if(i > 0 && (pos >= groupingKey.length() || groupingKey.charAt(pos++) != TermSuiteConstants.WHITESPACE))
+				return false;
+			s = annotation.getWords(i).getLemma();
+			if(!groupingKey.startsWith(s, pos))
+				return false;
+			pos += s.length();
+		}
+		return pos == groupingKey.length();
+	}
+
 	public static String getGroupingKey(Collection<TermWord> words) {
 		StringBuilder patternSb = new StringBuilder();
 		List<String> lemmas = Lists.newArrayListWithExpectedSize(words.size());
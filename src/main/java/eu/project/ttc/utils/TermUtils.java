@@ -36,10 +36,10 @@ import com.google.common.collect.Sets;
 
 import eu.project.ttc.engines.desc.Lang;
 import eu.project.ttc.engines.desc.TermSuiteResourceException;
+import eu.project.ttc.models.AbstractTermOccurrence;
 import eu.project.ttc.models.ContextVector;
 import eu.project.ttc.models.Term;
 import eu.project.ttc.models.TermIndex;
-import eu.project.ttc.models.TermOccurrence;
 import eu.project.ttc.models.TermVariation;
 import eu.project.ttc.models.TermWord;
 import eu.project.ttc.models.index.TermMeasure;
@@ -160,7 +160,7 @@ public class TermUtils {
 	 * 			fstrict(t1) / f(t1)
 	 */
 	public static double getStrictness(Term t1, Term t2) {
-		Collection<TermOccurrence> occ1 = Lists.newArrayList(t1.getOccurrences());
+		Collection<AbstractTermOccurrence> occ1 = Lists.newArrayList(t1.getOccurrences());
 		TermOccurrenceUtils.removeOverlaps(t2.getOccurrences(), occ1);
 		double t1Strict = occ1.size();
 		double t1F = t1.getFrequency();
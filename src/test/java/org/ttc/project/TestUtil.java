@@ -41,6 +41,8 @@ import org.apache.uima.analysis_engine.AnalysisEngine;
 import org.apache.uima.fit.factory.AnalysisEngineFactory;
 import org.apache.uima.fit.factory.ExternalResourceFactory;
 import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.cas.FSArray;
+import org.apache.uima.jcas.cas.StringArray;
 import org.apache.uima.resource.ExternalResourceDescription;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.mockito.Mockito;
@@ -55,6 +57,7 @@ import eu.project.ttc.readers.TeiToTxtSaxHandler;
 import eu.project.ttc.resources.MemoryTermIndexManager;
 import eu.project.ttc.resources.TermIndexResource;
 import eu.project.ttc.types.TermOccAnnotation;
+import eu.project.ttc.types.WordAnnotation;
 import fr.univnantes.lina.uima.tkregex.RegexOccurrence;
 
 public class TestUtil {
@@ -76,6 +79,32 @@ public class TestUtil {
 		anno.addToIndexes();
 	}
 
+	public static WordAnnotation createWordAnnotation(JCas cas, int begin, int end, String lemma) {
+		WordAnnotation w = new WordAnnotation(cas, begin, end);
+		w.setLemma(lemma);
+		w.setStem(lemma);
+		w.addToIndexes();
+		return w;
+	}
+
+	/**
+	 * Creates a term occurrence annotation over the given words. The 
+	 * pattern is given as one syntactic label character per word.
+	 */
+	public static TermOccAnnotation createTermOccAnnotation(JCas cas, String pattern, WordAnnotation... words) {
+		TermOccAnnotation anno = new TermOccAnnotation(cas, words[0].getBegin(), words[words.length-1].getEnd());
+		FSArray wordArray = new FSArray(cas, words.length);
+		StringArray patternArray = new StringArray(cas, words.length);
+		for(int i=0; i<words.length; i++) {
+			wordArray.set(i, words[i]);
+			patternArray.set(i, pattern.substring(i, i+1));
+		}
+		anno.setWords(wordArray);
+		anno.setPattern(patternArray);
+		anno.setSpottingRuleName(pattern);
+		return anno;
+	}
+
 	public static String readFile(String string) {
 		return readFile(new InputStreamReader(getIS(string), Charset.forName("UTF-8")));
 	}
@@ -23,6 +23,8 @@ package org.ttc.project.test;
 
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
+import org.ttc.project.test.engines.ExtensionDetecterSpec;
+import org.ttc.project.test.engines.SyntacticTermGathererSpec;
 import org.ttc.project.test.engines.TermClassifierSpec;
 import org.ttc.project.test.variants.VariantRuleSpec;
 import org.ttc.project.test.variants.VariantRuleYamlIOSpec;
@@ -45,7 +47,15 @@ import org.ttc.project.test.variants.VariantRuleYamlIOSpec;
 	TermClassSpec.class,
 	StringUtilsSpec.class,
 //	TeiCollectionReaderSpec.class,
-	CrossTableSpec.class
+	CrossTableSpec.class,
+	ConcurrentTermIndexSpec.class,
+	MemoryTermIndexSpec.class,
+	OccurrenceStoreSpec.class,
+	LongHashSetSpec.class,
+	LevenshteinSpec.class,
+	ExtensionDetecterSpec.class,
+	VariationGraphSpec.class,
+	SyntacticTermGathererSpec.class
 	})
 public class AllTests {
 
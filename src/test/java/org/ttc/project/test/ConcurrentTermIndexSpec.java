@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright 2015 - CNRS (Centre National de Recherche Scientifique)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ *******************************************************************************/
+package org.ttc.project.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.junit.Before;
+import org.junit.Test;
+import org.ttc.project.TestUtil;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+
+import eu.project.ttc.engines.desc.Lang;
+import eu.project.ttc.models.ContextVector;
+import eu.project.ttc.models.Term;
+import eu.project.ttc.models.index.ConcurrentTermIndex;
+import eu.project.ttc.types.TermOccAnnotation;
+import eu.project.ttc.types.WordAnnotation;
+import eu.project.ttc.utils.SymbolTable;
+
+public class ConcurrentTermIndexSpec {
+	private static final int NB_THREADS = 4;
+	private static final int NB_ITERATIONS = 500;
+
+	private ConcurrentTermIndex termIndex;
+	private List<TermOccAnnotation> annotations;
+	
+	@Before
+	public void setup() throws Exception {
+		this.termIndex = new ConcurrentTermIndex("ConcurrentTermIndexSpec", Lang.FR);
+		JCas jCas = JCasFactory.createJCas();
+		jCas.setDocumentText("énergie éolienne accès");
+		WordAnnotation w1 = TestUtil.createWordAnnotation(jCas, 0, 7, "énergie");
+		WordAnnotation w2 = TestUtil.createWordAnnotation(jCas, 8, 16, "éolien");
+		WordAnnotation w3 = TestUtil.createWordAnnotation(jCas, 17, 22, "accès");
+		this.annotations = Lists.newArrayList(
+				TestUtil.createTermOccAnnotation(jCas, "N", w1),
+				TestUtil.createTermOccAnnotation(jCas, "A", w2),
+				TestUtil.createTermOccAnnotation(jCas, "N", w3),
+				TestUtil.createTermOccAnnotation(jCas, "NA", w1, w2)
+			);
+	}
+
+	@Test
+	public void testConcurrentAddTermOccurrence() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(NB_THREADS);
+		List<Future<Void>> futures = Lists.newArrayList();
+		for(int t=0; t<NB_THREADS; t++) {
+			final String url = "file:doc" + t;
+			futures.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					for(int i=0; i<NB_ITERATIONS; i++) 
+						for(TermOccAnnotation anno:annotations)
+							termIndex.addTermOccurrence(anno, url, false);
+					return null;
+				}
+			}));
+		}
+		for(Future<Void> f:futures)
+			f.get();
+		executor.shutdown();
+		
+		assertThat(termIndex.getTerms())
+			.hasSize(4)
+			.extracting("groupingKey")
+			.containsOnly("n: énergie", "a: éolien", "n: accès", "na: énergie éolien");
+		assertThat(termIndex.getWords()).hasSize(3);
+		assertThat(termIndex.getDocuments()).hasSize(NB_THREADS);
+		assertThat(termIndex.getSpottedTermsNum()).isEqualTo(NB_THREADS * NB_ITERATIONS * 4);
+		for(Term t:termIndex.getTerms()) {
+			assertThat(t.getFrequency()).isEqualTo(NB_THREADS * NB_ITERATIONS);
+			assertThat(t.getDocumentFrequency()).isEqualTo(NB_THREADS);
+			assertThat((Object) termIndex.getTermById(t.getId())).isSameAs(t);
+		}
+	}
+	
+	@Test
+	public void testTermsAreRegisteredBeforeBeingFound() throws Exception {
+		termIndex.enableCoTermIndex();
+		ExecutorService executor = Executors.newFixedThreadPool(NB_THREADS);
+		List<Future<Boolean>> futures = Lists.newArrayList();
+		for(int t=0; t<NB_THREADS; t++) {
+			final String url = "file:doc" + t;
+			futures.add(executor.submit(new Callable<Boolean>() {
+				@Override
+				public Boolean call() throws Exception {
+					boolean registered = true;
+					for(int i=0; i<NB_ITERATIONS; i++) 
+						for(TermOccAnnotation anno:annotations) {
+							Term term = termIndex.addTermOccurrence(anno, url, false);
+							registered &= termIndex.getTermById(term.getId()) == term;
+							registered &= Iterators.contains(
+									term.isSingleWord() ? termIndex.singleWordTermIterator() : termIndex.multiWordTermIterator(), 
+									term);
+						}
+					return registered;
+				}
+			}));
+		}
+		for(Future<Boolean> f:futures)
+			assertThat(f.get()).isTrue();
+		executor.shutdown();
+		
+		Term na = termIndex.getTermByGroupingKey("na: énergie éolien");
+		Term n = termIndex.getTermByGroupingKey("n: énergie");
+		ContextVector vector = new ContextVector(na);
+		vector.addEntry(n, 1, 1d);
+		na.setContextVector(vector);
+		assertThat(termIndex.getCoTermIndex().get().getOwners(n)).containsOnly(na);
+	}
+	
+	@Test
+	public void testIdsAndSymbolsAreShared() throws Exception {
+		for(TermOccAnnotation anno:annotations)
+			termIndex.addTermOccurrence(anno, "file:doc", false);
+		assertThat(termIndex.getTerms()).extracting("id").containsOnly(0, 1, 2, 3);
+		
+		Term t = termIndex.getTermByGroupingKey("n: énergie");
+		termIndex.removeTerm(t);
+		assertThat(termIndex.newId()).isEqualTo(t.getId());
+		
+		SymbolTable symbols = termIndex.getSymbolTable();
+		Term na = termIndex.getTermByGroupingKey("na: énergie éolien");
+		assertThat(na.getWords().get(0).getWord().getLemma())
+			.isSameAs(symbols.getSymbol(symbols.lookup("énergie")));
+		assertThat(na.getPattern())
+			.isSameAs(symbols.getSymbol(symbols.lookup("N A")));
+	}
+
+	@Test
+	public void testIterators() throws Exception {
+		for(TermOccAnnotation anno:annotations)
+			termIndex.addTermOccurrence(anno, "file:doc", true);
+		assertThat(termIndex.singleWordTermIterator()).hasSize(3);
+		assertThat(termIndex.multiWordTermIterator()).hasSize(1);
+		assertThat(termIndex.compoundWordTermIterator()).hasSize(0);
+	}
+}
@@ -178,6 +178,24 @@ public class JSONTermIndexIOSpec {
 		}
 	}
 
+	@Test
+	public void testSaveLoadReturnWithSparseIds() throws IOException {
+		Term term3 = TermBuilder.start(termIndex)
+				.setId(5000000)
+				.addWord(word3, "L3")
+				.setSpottingRule("spotRule1")
+				.addOccurrence(30, 35, doc1, "coveredText 5")
+				.createAndAddToIndex();
+		StringWriter writer = new StringWriter();
+		JSONTermIndexIO.save(writer, termIndex, true, true);
+		TermIndex termIndex2 = JSONTermIndexIO.load(new StringReader(writer.toString()), true);
+		
+		assertThat(termIndex2.getTerms()).hasSameElementsAs(termIndex.getTerms());
+		for(Term t:termIndex.getTerms())
+			assertEquals(t.getGroupingKey(), termIndex2.getTermById(t.getId()).getGroupingKey());
+		assertEquals(term3.getGroupingKey(), termIndex2.getTermById(5000000).getGroupingKey());
+	}
+
 	@Test
 	public void testExportTermIndexToJsonWithoutOccurrences() throws IOException {
 		StringWriter writer = new StringWriter();
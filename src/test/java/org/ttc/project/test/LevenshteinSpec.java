@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * Copyright 2015 - CNRS (Centre National de Recherche Scientifique)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ *******************************************************************************/
+package org.ttc.project.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import eu.project.ttc.metrics.DiacriticInsensitiveLevenshtein;
+import eu.project.ttc.metrics.Levenshtein;
+import eu.project.ttc.metrics.LevenshteinSimilarityJoin;
+
+public class LevenshteinSpec {
+	
+	private DiacriticInsensitiveLevenshtein distance;
+	
+	@Before
+	public void setup() {
+		this.distance = new DiacriticInsensitiveLevenshtein();
+	}
+
+	@Test
+	public void testDiacriticInsensitiveEquals() {
+		assertThat(DiacriticInsensitiveLevenshtein.diacriticInsensitiveEquals('e', 'e')).isTrue();
+		assertThat(DiacriticInsensitiveLevenshtein.diacriticInsensitiveEquals('e', 'é')).isTrue();
+		assertThat(DiacriticInsensitiveLevenshtein.diacriticInsensitiveEquals('è', 'é')).isTrue();
+		assertThat(DiacriticInsensitiveLevenshtein.diacriticInsensitiveEquals('e', 'a')).isFalse();
+		assertThat(distance.compute("éolien", "eolièn")).isEqualTo(0);
+		assertThat(distance.compute("éolien", "eolian")).isEqualTo(1);
+	}
+
+	@Test
+	public void testSimilarityJoinPrunesPairs() {
+		List<String> strings = ImmutableList.of(
+				"radioélectrique", 
+				"radioelectrique", 
+				"radio-électrique", 
+				"énergie", 
+				"radiotélescope");
+		List<int[]> pairs = new LevenshteinSimilarityJoin(0.9).getCandidatePairs(strings);
+		assertThat(pairs).hasSize(3);
+		assertThat(pairs.get(0)).containsExactly(0, 1);
+		assertThat(pairs.get(1)).containsExactly(0, 2);
+		assertThat(pairs.get(2)).containsExactly(1, 2);
+	}
+
+	@Test
+	public void testSimilarityJoinHasNoFalseNegative() {
+		Random random = new Random(17);
+		char[] alphabet = "aeéèbcdr- ".toCharArray();
+		List<String> strings = Lists.newArrayList("", "a", "é", "ab");
+		for(int i=0; i<300; i++) {
+			StringBuilder builder = new StringBuilder();
+			int length = 1 + random.nextInt(12);
+			for(int k=0; k<length; k++)
+				builder.append(alphabet[random.nextInt(alphabet.length)]);
+			strings.add(builder.toString());
+		}
+		for(double threshold:new double[]{0.5, 0.75, 0.9}) {
+			List<int[]> pairs = new LevenshteinSimilarityJoin(threshold).getCandidatePairs(strings);
+			List<String> candidates = Lists.newArrayList();
+			for(int[] pair:pairs) {
+				assertThat(pair[0]).isLessThan(pair[1]);
+				candidates.add(pair[0] + ":" + pair[1]);
+			}
+			List<String> expected = Lists.newArrayList();
+			for(int i=0; i<strings.size(); i++)
+				for(int j=i+1; j<strings.size(); j++)
+					if(distance.computeNormalized(strings.get(i), strings.get(j)) >= threshold)
+						expected.add(i + ":" + j);
+			assertThat(candidates).containsAll(expected);
+			assertThat(candidates.size()).isLessThan(strings.size() * (strings.size() - 1) / 2);
+		}
+	}
+
+	@Test
+	public void testKernelsAgainstMatrix() {
+		Random random = new Random(42);
+		char[] alphabet = "abcdeéèàa".toCharArray();
+		for(double failThreshold:new double[]{-1, 0.3, 0.6, 0.9, 1.5}) {
+			Levenshtein levenshtein = new Levenshtein();
+			DiacriticInsensitiveLevenshtein insensitive = new DiacriticInsensitiveLevenshtein();
+			if(failThreshold != -1) {
+				levenshtein.setFailThreshold(failThreshold);
+				insensitive.setFailThreshold(failThreshold);
+			}
+			for(int i=0; i<2000; i++) {
+				String s1 = randomString(random, alphabet, random.nextInt(i % 10 == 0 ? 150 : 20));
+				String s2 = random.nextBoolean() ? 
+						mutate(random, alphabet, s1) 
+							: randomString(random, alphabet, random.nextInt(i % 7 == 0 ? 150 : 20));
+				assertThat(levenshtein.compute(s1, s2))
+					.as("%s / %s at %s", s1, s2, failThreshold)
+					.isEqualTo(matrixDistance(s1, s2, failThreshold, false));
+				assertThat(insensitive.compute(s1, s2))
+					.as("%s / %s at %s", s1, s2, failThreshold)
+					.isEqualTo(matrixDistance(s1, s2, failThreshold, true));
+			}
+		}
+	}
+
+	private static String randomString(Random random, char[] alphabet, int length) {
+		StringBuilder builder = new StringBuilder();
+		for(int k=0; k<length; k++)
+			builder.append(alphabet[random.nextInt(alphabet.length)]);
+		return builder.toString();
+	}
+
+	private static String mutate(Random random, char[] alphabet, String str) {
+		StringBuilder builder = new StringBuilder(str);
+		int nbEdits = random.nextInt(5);
+		for(int k=0; k<nbEdits && builder.length() > 0; k++) {
+			int pos = random.nextInt(builder.length());
+			switch(random.nextInt(3)) {
+			case 0:
+				builder.deleteCharAt(pos);
+				break;
+			case 1:
+				builder.insert(pos, alphabet[random.nextInt(alphabet.length)]);
+				break;
+			default:
+				builder.setCharAt(pos, alphabet[random.nextInt(alphabet.length)]);
+			}
+		}
+		return builder.toString();
+	}
+
+	/*
+	 * The full matrix implementation the kernels must agree with
+	 */
+	private static int matrixDistance(String str, String rst, double failThreshold, boolean insensitive) {
+		int l = Math.max(str.length(), rst.length());
+		int maxDistance = failThreshold == -1 ? Math.min(str.length(),
+				rst.length()) : (int) Math.round((1 - failThreshold) * l);
+		int[][] dp = new int[str.length() + 1][rst.length() + 1];
+		for (int i = 0; i < dp.length; i++) {
+			int bestPossibleEditDistance = dp.length;
+			for (int j = 0; j < dp[i].length; j++) {
+				dp[i][j] = i == 0 ? j : j == 0 ? i : 0;
+				if (i > 0 && j > 0) {
+					char c1 = str.charAt(i - 1);
+					char c2 = rst.charAt(j - 1);
+					if (insensitive ? DiacriticInsensitiveLevenshtein.diacriticInsensitiveEquals(c1, c2) : c1 == c2) {
+						dp[i][j] = dp[i - 1][j - 1];
+					} else {
+						dp[i][j] = Math.min(dp[i][j - 1] + 1, Math.min(
+								dp[i - 1][j - 1] + 1, dp[i - 1][j] + 1));
+					}
+					bestPossibleEditDistance = Math.min(
+							bestPossibleEditDistance, dp[i][j]);
+				}
+			}
+			if (i > maxDistance && bestPossibleEditDistance > maxDistance)
+				return l;
+		}
+		return dp[str.length()][rst.length()];
+	}
+}
@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright 2015 - CNRS (Centre National de Recherche Scientifique)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ *******************************************************************************/
+package org.ttc.project.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.project.ttc.utils.LongHashSet;
+
+public class LongHashSetSpec {
+	
+	private LongHashSet set;
+	
+	@Before
+	public void setup() {
+		this.set = new LongHashSet();
+	}
+
+	@Test
+	public void testAdd() {
+		assertThat(set.add(12l)).isTrue();
+		assertThat(set.add(12l)).isFalse();
+		assertThat(set.add(0l)).isTrue();
+		assertThat(set.add(0l)).isFalse();
+		assertThat(set.add(-1l)).isTrue();
+		assertThat(set.size()).isEqualTo(3);
+		assertThat(set.contains(12l)).isTrue();
+		assertThat(set.contains(0l)).isTrue();
+		assertThat(set.contains(13l)).isFalse();
+	}
+
+	@Test
+	public void testGrow() {
+		for(long i = 0; i < 100000; i++)
+			assertThat(set.add(i << 32)).isTrue();
+		assertThat(set.size()).isEqualTo(100000);
+		for(long i = 0; i < 100000; i++)
+			assertThat(set.contains(i << 32)).isTrue();
+		assertThat(set.contains(1l)).isFalse();
+		
+		set.clear();
+		assertThat(set.size()).isEqualTo(0);
+		assertThat(set.contains(1l << 32)).isFalse();
+	}
+}
@@ -0,0 +1,404 @@
+/*******************************************************************************
+ * Copyright 2015 - CNRS (Centre National de Recherche Scientifique)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ *******************************************************************************/
+package org.ttc.project.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.junit.Before;
+import org.junit.Test;
+import org.ttc.project.Fixtures;
+import org.ttc.project.TestUtil;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.UnsignedLongs;
+
+import eu.project.ttc.models.CoTermIndex;
+import eu.project.ttc.models.ContextVector;
+import eu.project.ttc.models.Term;
+import eu.project.ttc.models.TermBuilder;
+import eu.project.ttc.models.VariationType;
+import eu.project.ttc.models.Word;
+import eu.project.ttc.models.WordBuilder;
+import eu.project.ttc.models.index.CustomTermIndex;
+import eu.project.ttc.models.index.MemoryTermIndex;
+import eu.project.ttc.models.index.TermIndexes;
+import eu.project.ttc.models.index.TermValueProviders;
+import eu.project.ttc.types.TermOccAnnotation;
+import eu.project.ttc.types.WordAnnotation;
+import eu.project.ttc.utils.SymbolTable;
+import eu.project.ttc.utils.TermSuiteUtils;
+
+public class MemoryTermIndexSpec {
+
+	private MemoryTermIndex termIndex;
+	private Term term1;
+	private Term term2;
+	private Term term3;
+
+	@Before
+	public void setup() {
+		this.termIndex = Fixtures.emptyTermIndex();
+		this.term1 = Fixtures.term1(termIndex);
+		this.term2 = Fixtures.term2(termIndex);
+		this.term3 = Fixtures.term3(termIndex);
+	}
+
+	@Test
+	public void testGetTermById() {
+		assertThat((Object) termIndex.getTermById(1)).isSameAs(term1);
+		assertThat((Object) termIndex.getTermById(2)).isSameAs(term2);
+		assertThat((Object) termIndex.getTermById(3)).isSameAs(term3);
+		assertThat((Object) termIndex.getTermById(0)).isNull();
+		assertThat((Object) termIndex.getTermById(4)).isNull();
+		assertThat((Object) termIndex.getTermById(100000)).isNull();
+		assertThat((Object) termIndex.getTermById(-1)).isNull();
+	}
+
+	@Test
+	public void testNewIdFillsHolesFirst() {
+		assertThat(termIndex.newId()).isEqualTo(0);
+		assertThat(termIndex.newId()).isEqualTo(0);
+		Term t = TermBuilder.start(termIndex)
+				.addWord(Fixtures.word3(), "N")
+				.createAndAddToIndex();
+		assertThat(t.getId()).isEqualTo(0);
+		assertThat(termIndex.newId()).isEqualTo(4);
+	}
+
+	@Test
+	public void testNewIdReusesRemovedIds() {
+		termIndex.removeTerm(term2);
+		assertThat((Object) termIndex.getTermById(2)).isNull();
+		assertThat(termIndex.getTerms()).hasSize(2);
+		assertThat(termIndex.newId()).isEqualTo(0);
+		Term t0 = TermBuilder.start(termIndex)
+				.addWord(Fixtures.word3(), "N")
+				.createAndAddToIndex();
+		assertThat(t0.getId()).isEqualTo(0);
+		assertThat(termIndex.newId()).isEqualTo(2);
+		Term t2 = TermBuilder.start(termIndex)
+				.addWord(Fixtures.word2(), "N")
+				.createAndAddToIndex();
+		assertThat(t2.getId()).isEqualTo(2);
+		assertThat((Object) termIndex.getTermById(2)).isSameAs(t2);
+		assertThat(termIndex.newId()).isEqualTo(4);
+	}
+
+	@Test
+	public void testAddTermWithSparseIds() {
+		Term t = TermBuilder.start(termIndex)
+				.setId(5000)
+				.addWord(Fixtures.word3(), "N")
+				.createAndAddToIndex();
+		assertThat((Object) termIndex.getTermById(5000)).isSameAs(t);
+		assertThat(termIndex.getTerms()).hasSize(4);
+		assertThat(termIndex.newId()).isNotIn(1, 2, 3, 5000);
+		
+		List<Integer> ids = Lists.newArrayList();
+		for(int i = 0; i < 5; i++)
+			ids.add(TermBuilder.start(termIndex)
+					.addWord(WordBuilder.start().setLemma("w" + i).setStem("w").create(), "N")
+					.createAndAddToIndex()
+					.getId());
+		assertThat(ids).containsExactly(0, 4, 5, 6, 7);
+	}
+
+	@Test
+	public void testAddTermWithLargeSparseIds() {
+		Term huge = TermBuilder.start(termIndex)
+				.setId(1000000000)
+				.addWord(WordBuilder.start().setLemma("huge").setStem("huge").create(), "N")
+				.createAndAddToIndex();
+		Term far = TermBuilder.start(termIndex)
+				.setId(5000000)
+				.addWord(WordBuilder.start().setLemma("far").setStem("far").create(), "N")
+				.createAndAddToIndex();
+		assertThat((Object) termIndex.getTermById(1000000000)).isSameAs(huge);
+		assertThat((Object) termIndex.getTermById(5000000)).isSameAs(far);
+		assertThat(termIndex.getTerms()).hasSize(5);
+		assertThat(termIndex.newId()).isEqualTo(0);
+		assertThat(termIndex.toString()).contains("terms=5");
+		
+		termIndex.removeTerm(huge);
+		assertThat((Object) termIndex.getTermById(1000000000)).isNull();
+		assertThat(termIndex.toString()).contains("terms=4");
+	}
+
+	@Test
+	public void testAddTermOccurrenceResolvesExistingTerms() throws Exception {
+		JCas jCas = JCasFactory.createJCas();
+		jCas.setDocumentText("énergie éolien total");
+		WordAnnotation w1 = TestUtil.createWordAnnotation(jCas, 0, 7, "énergie");
+		WordAnnotation w2 = TestUtil.createWordAnnotation(jCas, 8, 14, "éolien");
+		WordAnnotation w3 = TestUtil.createWordAnnotation(jCas, 15, 20, "total");
+		TermOccAnnotation occ1 = TestUtil.createTermOccAnnotation(jCas, "NA", w1, w2);
+		TermOccAnnotation occ2 = TestUtil.createTermOccAnnotation(jCas, "NA", w2, w3);
+		
+		assertThat(TermSuiteUtils.getGroupingKeyHash(occ1))
+			.isEqualTo(TermSuiteUtils.getGroupingKeyHash(TermSuiteUtils.getGroupingKey(occ1)));
+		assertThat(TermSuiteUtils.isGroupingKeyOf("na: énergie éolien", occ1)).isTrue();
+		assertThat(TermSuiteUtils.isGroupingKeyOf("na: énergie éolie", occ1)).isFalse();
+		assertThat(TermSuiteUtils.isGroupingKeyOf("na: énergie éolien total", occ1)).isFalse();
+		assertThat(TermSuiteUtils.isGroupingKeyOf("n: énergie éolien", occ1)).isFalse();
+
+		assertThat((Object) termIndex.addTermOccurrence(occ1, "file:doc1", true)).isSameAs(term1);
+		assertThat(term1.getFrequency()).isEqualTo(1);
+
+		Term t = termIndex.addTermOccurrence(occ2, "file:doc1", true);
+		assertThat(t.getGroupingKey()).isEqualTo("na: éolien total");
+		assertThat((Object) termIndex.addTermOccurrence(occ2, "file:doc1", true)).isSameAs(t);
+		assertThat(t.getFrequency()).isEqualTo(2);
+		assertThat(termIndex.getTerms()).hasSize(4);
+		
+		termIndex.removeTerm(t);
+		Term t2 = termIndex.addTermOccurrence(occ2, "file:doc1", true);
+		assertThat((Object) t2).isNotSameAs(t);
+		assertThat(t2.getFrequency()).isEqualTo(1);
+	}
+
+	@Test
+	public void testRemoveTerms() {
+		Term term4 = Fixtures.term4(termIndex);
+		termIndex.createCustomIndex(TermIndexes.WORD_LEMMA, TermValueProviders.get(TermIndexes.WORD_LEMMA));
+		term3.addTermVariation(term4, VariationType.SYNTACTICAL, "rule");
+		term4.addTermVariation(term2, VariationType.SYNTACTICAL, "rule");
+		ContextVector v1 = new ContextVector(term1);
+		v1.addEntry(term2, 2, 0d);
+		v1.addEntry(term3, 3, 0d);
+		v1.addEntry(term4, 4, 0d);
+		term1.setContextVector(v1);
+		term4.setContextVector(new ContextVector(term4));
+
+		termIndex.removeTerms(ImmutableList.of(term2, term4));
+		
+		assertThat(termIndex.getTerms()).containsOnly(term1, term3);
+		assertThat((Object) termIndex.getTermByGroupingKey(term4.getGroupingKey())).isNull();
+		assertThat((Object) termIndex.getTermById(2)).isNull();
+		assertThat(term3.getVariations()).isEmpty();
+		assertThat(term2.getBases()).isEmpty();
+		assertThat(termIndex.getCustomIndex(TermIndexes.WORD_LEMMA).getTerms("accès"))
+			.containsOnly(term3);
+		assertThat(v1.terms()).containsOnly(term3);
+		assertThat(v1.getTotalCoccurrences()).isEqualTo(3);
+	}
+
+	@Test
+	public void testHashedCustomIndex() {
+		Term term5 = Fixtures.term5(termIndex);
+		CustomTermIndex customIndex = termIndex.createCustomIndex(
+				TermIndexes.WORD_COUPLE_LEMMA_LEMMA, 
+				TermValueProviders.get(TermIndexes.WORD_COUPLE_LEMMA_LEMMA));
+		
+		String key = UnsignedLongs.toString(TermSuiteUtils.getGroupingKeyHash("accès+radioélectrique"), 16);
+		assertThat(customIndex.keySet()).contains(key);
+		assertThat(customIndex.getTerms(key)).containsExactly(term3, term5);
+		assertThat(customIndex.getTerms("1234")).isEmpty();
+		// not class hashes
+		assertThat(customIndex.getTerms("accès+radioélectrique")).isEmpty();
+		assertThat(customIndex.getTerms("")).isEmpty();
+		assertThat(customIndex.getTerms("123456789abcdef01")).isEmpty();
+		
+		customIndex.cleanSingletonKeys();
+		for(String k:customIndex.keySet())
+			assertThat(customIndex.getTerms(k).size()).isGreaterThan(1);
+		String compoundKey = UnsignedLongs.toString(TermSuiteUtils.getGroupingKeyHash("radio+électrique"), 16);
+		assertThat(customIndex.getTerms(compoundKey)).containsExactly(term2, term3, term5);
+		int size = customIndex.size();
+		
+		termIndex.removeTerm(term5);
+		assertThat(customIndex.getTerms(key)).containsExactly(term3);
+		assertThat(customIndex.size()).isEqualTo(size - 6);
+	}
+
+	@Test
+	public void testCoTermIndex() {
+		ContextVector v1 = new ContextVector(term1);
+		v1.addEntry(term2, 2, 0d);
+		term1.setContextVector(v1);
+		termIndex.enableCoTermIndex();
+		CoTermIndex coTermIndex = termIndex.getCoTermIndex().get();
+		assertThat(coTermIndex.getOwners(term2)).containsOnly(term1);
+
+		ContextVector v3 = new ContextVector(term3);
+		v3.addEntry(term2, 1, 0d);
+		term3.setContextVector(v3);
+		v3.addEntry(term1, 1, 0d);
+		assertThat(coTermIndex.getOwners(term2)).containsOnly(term1, term3);
+		assertThat(coTermIndex.getOwners(term1)).containsOnly(term3);
+
+		v1.removeCoTerm(term2);
+		assertThat(coTermIndex.getOwners(term2)).containsOnly(term3);
+		term3.clearContext();
+		assertThat(coTermIndex.size()).isEqualTo(0);
+	}
+
+	@Test
+	public void testRemoveTermsWithCoTermIndex() {
+		termIndex.enableCoTermIndex();
+		ContextVector v1 = new ContextVector(term1);
+		v1.addEntry(term2, 2, 0d);
+		v1.addEntry(term3, 3, 0d);
+		term1.setContextVector(v1);
+		ContextVector v2 = new ContextVector(term2);
+		v2.addEntry(term1, 1, 0d);
+		term2.setContextVector(v2);
+
+		termIndex.removeTerm(term2);
+
+		assertThat(v1.terms()).containsOnly(term3);
+		assertThat(v1.getTotalCoccurrences()).isEqualTo(3);
+		CoTermIndex coTermIndex = termIndex.getCoTermIndex().get();
+		assertThat(coTermIndex.getOwners(term1)).isEmpty();
+		assertThat(coTermIndex.getOwners(term2)).isEmpty();
+		assertThat(coTermIndex.getOwners(term3)).containsOnly(term1);
+	}
+
+	@Test
+	public void testPartitions() {
+		Term term8 = Fixtures.term8(termIndex);
+		assertThat(termIndex.singleWordTermIterator()).containsExactly(term2, term8);
+		assertThat(termIndex.multiWordTermIterator()).containsExactly(term1, term3);
+		assertThat(termIndex.compoundWordTermIterator()).containsExactly(term2);
+		
+		termIndex.removeTerms(ImmutableList.of(term2, term3));
+		assertThat(termIndex.singleWordTermIterator()).containsExactly(term8);
+		assertThat(termIndex.multiWordTermIterator()).containsExactly(term1);
+		assertThat(termIndex.compoundWordTermIterator()).isEmpty();
+	}
+
+	@Test
+	public void testSymbolsAreInterned() {
+		Term term5 = TermBuilder.start(termIndex)
+				.addWord(WordBuilder.start().setLemma(new String("accès")).setStem(new String("acc")).create(), new String("N"))
+				.addWord(Fixtures.word4(), new String("A"))
+				.createAndAddToIndex();
+		SymbolTable symbols = termIndex.getSymbolTable();
+		assertThat(term5.getWords().get(0).getWord().getLemma())
+			.isSameAs(term3.getWords().get(0).getWord().getLemma())
+			.isSameAs(symbols.getSymbol(symbols.lookup("accès")));
+		assertThat(term5.getWords().get(1).getSyntacticLabel())
+			.isSameAs(term1.getWords().get(1).getSyntacticLabel());
+		assertThat(term5.getPattern()).isSameAs(term1.getPattern());
+		assertThat(symbols.lookup("unknown")).isEqualTo(SymbolTable.NO_SYMBOL);
+	}
+
+	@Test
+	public void testWordSymbolsAreReleased() {
+		Term term5 = TermBuilder.start(termIndex)
+				.addWord(WordBuilder.start().setLemma("Éolienne").setStem("Éol").create(), "N")
+				.createAndAddToIndex();
+		Word word = term5.getWords().get(0).getWord();
+		SymbolTable symbols = termIndex.getSymbolTable();
+		assertThat(symbols.lookup("Éolienne")).isNotEqualTo(SymbolTable.NO_SYMBOL);
+		assertThat(symbols.lookup("eolienne")).isEqualTo(SymbolTable.NO_SYMBOL);
+		assertThat(word.getNormalizedLemma())
+			.isEqualTo("eolienne")
+			.isSameAs(symbols.getSymbol(symbols.lookup("eolienne")));
+		
+		termIndex.removeTerm(term5);
+		termIndex.cleanOrphanWords();
+		assertThat(symbols.lookup("Éolienne")).isEqualTo(SymbolTable.NO_SYMBOL);
+		assertThat(symbols.lookup("Éol")).isEqualTo(SymbolTable.NO_SYMBOL);
+		assertThat(symbols.lookup("eolienne")).isEqualTo(SymbolTable.NO_SYMBOL);
+		assertThat(symbols.lookup("accès")).isNotEqualTo(SymbolTable.NO_SYMBOL);
+	}
+
+	@Test
+	public void testSymbolTableShrinksBackAfterRemoval() {
+		SymbolTable symbols = termIndex.getSymbolTable();
+		int size = symbols.size();
+		Term term5 = TermBuilder.start(termIndex)
+				.addWord(WordBuilder.start().setLemma("Éolienne").setStem("Éol").create(), "NP")
+				.addWord(WordBuilder.start().setLemma(new String("accès")).setStem("accè").create(), "NX")
+				.createAndAddToIndex();
+		assertThat(symbols.size()).isGreaterThan(size);
+		
+		termIndex.removeTerm(term5);
+		termIndex.cleanOrphanWords();
+		assertThat(symbols.size()).isEqualTo(size);
+		assertThat(symbols.lookup("accès")).isNotEqualTo(SymbolTable.NO_SYMBOL);
+		assertThat(symbols.lookup("accè")).isEqualTo(SymbolTable.NO_SYMBOL);
+		assertThat(symbols.lookup("NP NX")).isEqualTo(SymbolTable.NO_SYMBOL);
+	}
+
+	@Test
+	public void testCustomIndexIsDeferred() {
+		CustomTermIndex customIndex = termIndex.createCustomIndex("lemma", TermValueProviders.get(TermIndexes.WORD_LEMMA));
+		Term term5 = Fixtures.term5(termIndex);
+		termIndex.removeTerm(term3);
+		assertThat(customIndex.getTerms("accès")).containsExactly(term5);
+		
+		termIndex.removeTerm(term5);
+		Term term8 = Fixtures.term8(termIndex);
+		assertThat(customIndex.getTerms("accès")).containsExactly(term8);
+	}
+
+	@Test
+	public void testCustomIndexIsBuiltInParallel() {
+		for(int i = 0; i < 30000; i++)
+			TermBuilder.start(termIndex)
+				.addWord(WordBuilder.start().setLemma("w" + i).setStem("w").create(), "N")
+				.addWord(WordBuilder.start().setLemma("x" + (i % 100)).setStem("x").create(), "A")
+				.createAndAddToIndex();
+		List<Term> expected = Lists.newArrayList();
+		for(Term t:termIndex.getTerms())
+			if(t.getWords().size() == 2 && t.getWords().get(1).getWord().getLemma().equals("x42"))
+				expected.add(t);
+		
+		CustomTermIndex customIndex = termIndex.createCustomIndex("lemma", TermValueProviders.get(TermIndexes.WORD_LEMMA));
+		assertThat(customIndex.getTerms("x42")).hasSize(300).containsExactlyElementsOf(expected);
+		assertThat(customIndex.getTerms("w123")).hasSize(1);
+		assertThat(customIndex.keySet()).hasSize(30100 + 7);
+	}
+
+	@Test
+	public void testCleanEntriesByMaxSize() {
+		List<Term> terms = Lists.newArrayList();
+		int id = 100;
+		for(int freq:new int[]{1, 3, 3, 5, 2, 4})
+			terms.add(TermBuilder.start(termIndex)
+				.setId(id++)
+				.addWord(WordBuilder.start().setLemma("x").setStem("x").create(), "N")
+				.addWord(WordBuilder.start().setLemma("y" + id).setStem("y").create(), "N")
+				.addWord(WordBuilder.start().setLemma("z").setStem("z").create(), "N")
+				.setFrequency(freq)
+				.createAndAddToIndex());
+		CustomTermIndex lemmaIndex = termIndex.createCustomIndex("lemma", TermValueProviders.get(TermIndexes.WORD_LEMMA));
+		CustomTermIndex coupleIndex = termIndex.createCustomIndex(
+				TermIndexes.WORD_COUPLE_LEMMA_LEMMA, 
+				TermValueProviders.get(TermIndexes.WORD_COUPLE_LEMMA_LEMMA));
+		String coupleKey = UnsignedLongs.toString(TermSuiteUtils.getGroupingKeyHash("x+z"), 16);
+		
+		lemmaIndex.cleanEntriesByMaxSize(3);
+		coupleIndex.cleanEntriesByMaxSize(3);
+		
+		// thresholds 2, 3 and 4 are applied in turn
+		assertThat(lemmaIndex.getTerms("x")).containsExactly(terms.get(3), terms.get(5));
+		assertThat(coupleIndex.getTerms(coupleKey)).containsExactly(terms.get(3), terms.get(5));
+		assertThat(lemmaIndex.getTerms("y101")).containsExactly(terms.get(0));
+	}
+}
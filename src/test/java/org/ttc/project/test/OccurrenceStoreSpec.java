@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright 2015 - CNRS (Centre National de Recherche Scientifique)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ *******************************************************************************/
+package org.ttc.project.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.util.Iterator;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.ttc.project.Fixtures;
+
+import eu.project.ttc.engines.desc.Lang;
+import eu.project.ttc.models.AbstractTermOccurrence;
+import eu.project.ttc.models.Document;
+import eu.project.ttc.models.OccurrenceStore;
+import eu.project.ttc.models.Term;
+import eu.project.ttc.models.TermOccurrence;
+import eu.project.ttc.models.index.MemoryTermIndex;
+
+public class OccurrenceStoreSpec {
+
+	private OccurrenceStore store;
+	private MemoryTermIndex termIndex;
+	private Document doc1;
+	private Document doc2;
+	private Term term1;
+	private Term term2;
+
+	@Before
+	public void setup() {
+		this.store = new OccurrenceStore(true);
+		this.termIndex = new MemoryTermIndex("StoredTermIndex", Lang.EN, store);
+		this.doc1 = Fixtures.document1();
+		this.doc2 = Fixtures.document2();
+		this.term1 = Fixtures.term1(termIndex);
+		this.term2 = Fixtures.term2(termIndex);
+		term1.addOccurrence(new TermOccurrence(term1, "Énergie  éolienne", doc1, 0, 10));
+		term1.addOccurrence(new TermOccurrence(term1, "énergie éolienne", doc2, 20, 30));
+		term2.addOccurrence(new TermOccurrence(term2, "radioélectrique", doc1, 5, 15));
+	}
+
+	@Test
+	public void testOccurrencesAreStored() {
+		assertThat(store.size()).isEqualTo(3);
+		assertThat(store.isOffHeap()).isTrue();
+		assertThat(termIndex.getOccurrenceStore().get()).isSameAs(store);
+		assertThat(term1.getOccurrences())
+			.extracting("term", "sourceDocument", "begin", "end", "coveredText")
+			.containsExactly(
+					tuple(term1, doc1, 0, 10, "Énergie  éolienne"),
+					tuple(term1, doc2, 20, 30, "énergie éolienne")
+				);
+		assertThat(term1.getFrequency()).isEqualTo(2);
+		assertThat(term2.getOccurrences()).hasSize(1);
+	}
+
+	@Test
+	public void testFormsAreShared() {
+		assertThat(store.getNbTexts()).isEqualTo(3);
+		assertThat(term1.getOccurrences())
+			.extracting("form")
+			.containsExactly("énergie éolienne", "énergie éolienne");
+	}
+
+	@Test
+	public void testPrimaryOccurrenceIsWrittenThrough() {
+		Iterator<AbstractTermOccurrence> it = term1.getOccurrences().iterator();
+		it.next().setPrimaryOccurrence(true);
+		assertThat(term1.getOccurrences())
+			.extracting("primaryOccurrence")
+			.containsExactly(true, false);
+	}
+
+	@Test
+	public void testRemoveOccurrence() {
+		term1.removeOccurrence("url1", 0, 10);
+		assertThat(term1.getOccurrences())
+			.extracting("sourceDocument", "begin", "end")
+			.containsExactly(tuple(doc2, 20, 30));
+		assertThat(term1.getFrequency()).isEqualTo(1);
+	}
+
+	@Test
+	public void testColumnsGrow() {
+		for(int i = 0; i < 5000; i++)
+			term2.addOccurrence(new TermOccurrence(term2, "radioélectrique", doc2, 2*i, 2*i + 1));
+		assertThat(store.size()).isEqualTo(5003);
+		assertThat(store.getNbTexts()).isEqualTo(3);
+		assertThat(term1.getOccurrences())
+			.extracting("begin")
+			.containsExactly(0, 20);
+		assertThat(term2.getOccurrences()).hasSize(5001);
+	}
+
+	@Test
+	public void testExistingOccurrencesAreMigrated() {
+		Term term = Fixtures.term3();
+		term.addOccurrence(new TermOccurrence(term, "accès", doc1, 0, 5));
+		OccurrenceStore heapStore = new OccurrenceStore(false);
+		term.setOccurrenceStore(heapStore);
+		assertThat(heapStore.size()).isEqualTo(1);
+		assertThat(term.getOccurrences())
+			.extracting("sourceDocument", "begin", "end")
+			.containsExactly(tuple(doc1, 0, 5));
+	}
+}
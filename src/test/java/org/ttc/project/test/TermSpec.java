@@ -25,6 +25,8 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.tuple;
 import static org.junit.Assert.fail;
 
+import java.util.List;
+
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -32,15 +34,21 @@ import org.ttc.project.Fixtures;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Longs;
 
+import eu.project.ttc.models.Document;
 import eu.project.ttc.models.OccurrenceType;
 import eu.project.ttc.models.Term;
 import eu.project.ttc.models.TermClass;
 import eu.project.ttc.models.TermIndex;
+import eu.project.ttc.models.TermOccurrence;
 import eu.project.ttc.models.VariationType;
+import eu.project.ttc.models.index.TermHashValueProvider;
 import eu.project.ttc.models.index.TermIndexes;
 import eu.project.ttc.models.index.TermValueProvider;
 import eu.project.ttc.models.index.TermValueProviders;
+import eu.project.ttc.utils.TermSuiteUtils;
 
 public class TermSpec {
 
@@ -96,6 +104,19 @@ public class TermSpec {
 				provider.getClasses(term3));
 	}
 
+	@Test
+	public void testGetClassHashes() {
+		for(String name:ImmutableList.of(TermIndexes.WORD_COUPLE_LEMMA_STEM, TermIndexes.WORD_COUPLE_LEMMA_LEMMA)) {
+			TermHashValueProvider provider = (TermHashValueProvider) TermValueProviders.get(name);
+			for(Term t:ImmutableList.of(term1, term2, term3, term4, term5)) {
+				List<Long> expected = Lists.newArrayList();
+				for(String cls:provider.getClasses(t))
+					expected.add(TermSuiteUtils.getGroupingKeyHash(cls));
+				assertThat(Longs.asList(provider.getClassHashes(t))).isEqualTo(expected);
+			}
+		}
+	}
+
 	@Test
 	public void computeContextVectorScope1() {
 		termWithContext1.computeContextVector(OccurrenceType.SINGLE_WORD, 1, 1, false);
@@ -259,4 +280,53 @@ public class TermSpec {
 				ImmutableList.of("accès", "radio", "électrique", "de", "recouvrement"), 
 				provider.getClasses(term3));
 	}
+
+	@Test
+	public void testFormsAreCountedIncrementally() {
+		assertThat(term1.getPilot()).isEqualTo("[No occurrence]");
+		Document doc = Fixtures.document1();
+		term1.addOccurrence(new TermOccurrence(term1, "Énergie éolienne", doc, 0, 10));
+		term1.addOccurrence(new TermOccurrence(term1, "énergies  éoliennes", doc, 20, 30));
+		term1.addOccurrence(new TermOccurrence(term1, "énergies éoliennes", doc, 40, 50));
+		assertThat(term1.getPilot()).isEqualTo("énergies éoliennes");
+		assertThat(term1.getForms()).containsExactly("énergies éoliennes", "énergie éolienne");
+		assertThat(term1.getFormFrequency("énergies éoliennes")).isEqualTo(2);
+
+		term1.removeOccurrence("url1", 20, 30);
+		term1.removeOccurrence("url1", 40, 50);
+		assertThat(term1.getPilot()).isEqualTo("énergie éolienne");
+		assertThat(term1.getForms()).containsExactly("énergie éolienne");
+	}
+
+	@Test
+	public void testFormsAreCountedWithoutOccurrences() {
+		Document doc = Fixtures.document1();
+		for(int i = 0; i < 100; i++)
+			term1.addOccurrence(new TermOccurrence(term1, "form" + i, doc, i, i + 1), false);
+		for(int i = 0; i < 10; i++)
+			term1.addOccurrence(new TermOccurrence(term1, "énergie éolienne", doc, i, i + 1), false);
+		assertThat(term1.getOccurrences()).isEmpty();
+		assertThat(term1.getPilot()).isEqualTo("énergie éolienne");
+		assertThat(term1.getForms().size()).isLessThanOrEqualTo(16);
+	}
+
+	@Test
+	public void testPilotIsTheFirstFormOnTies() {
+		Document doc = Fixtures.document1();
+		term1.addOccurrence(new TermOccurrence(term1, "énergies éoliennes", doc, 0, 10));
+		term1.addOccurrence(new TermOccurrence(term1, "énergie éolienne", doc, 20, 30));
+		term1.addOccurrence(new TermOccurrence(term1, "énergie éolienne", doc, 40, 50));
+		term1.addOccurrence(new TermOccurrence(term1, "énergies éoliennes", doc, 60, 70));
+		assertThat(term1.getForms()).containsExactly("énergie éolienne", "énergies éoliennes");
+		assertThat(term1.getPilot()).isEqualTo("énergie éolienne");
+
+		term1.removeOccurrence("url1", 20, 30);
+		term1.addOccurrence(new TermOccurrence(term1, "énergie éolienne", doc, 80, 90));
+		assertThat(term1.getPilot()).isEqualTo(term1.getForms().iterator().next());
+		
+		term1.removeOccurrence("url1", 0, 10);
+		term1.removeOccurrence("url1", 40, 50);
+		assertThat(term1.getForms()).containsExactly("énergie éolienne", "énergies éoliennes");
+		assertThat(term1.getPilot()).isEqualTo("énergie éolienne");
+	}
 }
@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright 2015 - CNRS (Centre National de Recherche Scientifique)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ *******************************************************************************/
+package org.ttc.project.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.util.ConcurrentModificationException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.ttc.project.Fixtures;
+
+import eu.project.ttc.models.Term;
+import eu.project.ttc.models.TermVariation;
+import eu.project.ttc.models.VariationGraph;
+import eu.project.ttc.models.VariationType;
+import eu.project.ttc.models.index.MemoryTermIndex;
+
+public class VariationGraphSpec {
+	
+	private MemoryTermIndex termIndex;
+	private VariationGraph graph;
+	private Term term3;
+	private Term term4;
+	private Term term5;
+	
+	@Before
+	public void setup() {
+		this.termIndex = Fixtures.termIndex();
+		this.graph = termIndex.getVariationGraph();
+		this.term3 = Fixtures.term3(termIndex);
+		this.term4 = Fixtures.term4(termIndex);
+		this.term5 = Fixtures.term5(termIndex);
+	}
+
+	@Test
+	public void testAddAndFreeze() {
+		term5.addTermVariation(term3, VariationType.SYNTACTICAL, "NA-NAPN");
+		term5.addTermVariation(term4, VariationType.GRAPHICAL, 0.95d);
+		term3.addTermVariation(term4, VariationType.SYNTACTICAL, "NAPN-NAPNA");
+		term5.addTermVariation(term3, VariationType.SYNTACTICAL, "NA-NAPN");
+		assertThat(graph.size()).isEqualTo(3);
+		assertThat(graph.getDeltaSize()).isEqualTo(3);
+		checkVariations();
+		
+		graph.freeze();
+		assertThat(graph.size()).isEqualTo(3);
+		assertThat(graph.getDeltaSize()).isEqualTo(0);
+		checkVariations();
+	}
+
+	private void checkVariations() {
+		assertThat(term5.getVariations())
+			.extracting("variant", "variationType", "info")
+			.containsOnly(
+					tuple(term3, VariationType.SYNTACTICAL, "NA-NAPN"),
+					tuple(term4, VariationType.GRAPHICAL, 0.95d));
+		assertThat(term5.getBases()).isEmpty();
+		assertThat(term4.getBases()).extracting("base").containsOnly(term5, term3);
+		assertThat(term3.getBases()).extracting("base").containsOnly(term5);
+		assertThat(term3.isVariant()).isTrue();
+		assertThat(term5.isVariant()).isFalse();
+	}
+
+	@Test
+	public void testUpdatesAfterFreeze() {
+		term5.addTermVariation(term3, VariationType.SYNTACTICAL, "NA-NAPN");
+		term3.addTermVariation(term4, VariationType.SYNTACTICAL, "NAPN-NAPNA");
+		graph.freeze();
+		
+		TermVariation v = term5.getVariations().iterator().next();
+		term5.removeTermVariation(v);
+		term5.addTermVariation(term4, VariationType.SYNTACTICAL, "NA-NAPNA");
+		assertThat(graph.size()).isEqualTo(2);
+		assertThat(term5.getVariations()).extracting("variant").containsOnly(term4);
+		assertThat(term3.getBases()).isEmpty();
+		assertThat(term4.getBases()).extracting("base").containsOnly(term5, term3);
+		
+		graph.freeze();
+		assertThat(graph.size()).isEqualTo(2);
+		assertThat(term5.getVariations()).extracting("variant").containsOnly(term4);
+		assertThat(term3.getVariations()).extracting("variant").containsOnly(term4);
+		assertThat(term3.getBases()).isEmpty();
+		assertThat(term4.getBases()).extracting("base").containsOnly(term5, term3);
+	}
+
+	@Test
+	public void testRemoveTerm() {
+		term5.addTermVariation(term3, VariationType.SYNTACTICAL, "NA-NAPN");
+		term3.addTermVariation(term4, VariationType.SYNTACTICAL, "NAPN-NAPNA");
+		graph.freeze();
+		termIndex.removeTerm(term3);
+		assertThat(graph.size()).isEqualTo(0);
+		assertThat(term5.getVariations()).isEmpty();
+		assertThat(term4.getBases()).isEmpty();
+	}
+
+	@Test
+	public void testVariationsAcrossTermIndexes() {
+		Term other = Fixtures.term1();
+		term5.addTermVariation(other, VariationType.SYNTACTICAL, "Tata");
+		assertThat(term5.getVariations()).extracting("variant").containsOnly(other);
+		assertThat(other.getBases()).extracting("base").containsOnly(term5);
+		
+		term5.removeTermVariation(term5.getVariations().iterator().next());
+		assertThat(term5.getVariations()).isEmpty();
+		assertThat(other.getBases()).isEmpty();
+	}
+
+	@Test
+	public void testVariationsAreIdentifiedRegardlessOfType() {
+		term5.addTermVariation(term3, VariationType.SYNTACTICAL, "NA-NAPN");
+		term5.addTermVariation(term3, VariationType.MORPHOLOGICAL, "NA-NAPN");
+		term5.addTermVariation(term3, VariationType.SYNTACTICAL, "NA-NAPN-bis");
+		assertThat(graph.size()).isEqualTo(2);
+		assertThat(term5.getVariations())
+			.extracting("variationType", "info")
+			.containsExactly(
+					tuple(VariationType.SYNTACTICAL, "NA-NAPN"),
+					tuple(VariationType.SYNTACTICAL, "NA-NAPN-bis"));
+		
+		graph.freeze();
+		term5.addTermVariation(term3, VariationType.MORPHOLOGICAL, "NA-NAPN");
+		assertThat(graph.size()).isEqualTo(2);
+		term5.removeTermVariation(new TermVariation(VariationType.MORPHOLOGICAL, term5, term3, "NA-NAPN"));
+		assertThat(term5.getVariations()).extracting("info").containsExactly("NA-NAPN-bis");
+	}
+
+	@Test
+	public void testHubVariations() {
+		for(int i = 0; i < 3000; i++) {
+			term5.addTermVariation(term3, VariationType.SYNTACTICAL, "rule" + i);
+			term5.addTermVariation(term4, VariationType.GRAPHICAL, (double) i);
+		}
+		graph.freeze();
+		for(int i = 0; i < 3000; i++) {
+			term5.addTermVariation(term3, VariationType.SYNTACTICAL, "rule" + i);
+			term5.addTermVariation(term4, VariationType.GRAPHICAL, (double) i);
+		}
+		assertThat(graph.size()).isEqualTo(6000);
+		assertThat(graph.getDeltaSize()).isEqualTo(0);
+		assertThat(term5.getVariations()).hasSize(6000);
+		assertThat(term4.getBases()).hasSize(3000);
+	}
+
+	@Test(expected=ConcurrentModificationException.class)
+	public void testIteratorsFailFast() {
+		term5.addTermVariation(term3, VariationType.SYNTACTICAL, "NA-NAPN");
+		term5.addTermVariation(term4, VariationType.GRAPHICAL, 0.95d);
+		for(TermVariation v:term5.getVariations())
+			term5.removeTermVariation(v);
+	}
+}
@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright 2015 - CNRS (Centre National de Recherche Scientifique)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ *******************************************************************************/
+package org.ttc.project.test.engines;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.junit.Before;
+import org.junit.Test;
+import org.ttc.project.Fixtures;
+import org.ttc.project.TestUtil;
+
+import eu.project.ttc.engines.ExtensionDetecter;
+import eu.project.ttc.models.Term;
+import eu.project.ttc.models.index.MemoryTermIndex;
+
+public class ExtensionDetecterSpec {
+	private MemoryTermIndex termIndex;
+	private Term term2;
+	private Term term3;
+	private Term term4;
+	private Term term5;
+	private Term term7;
+	private Term term8;
+	private Term term12;
+	
+	private AnalysisEngine ae;
+	
+	@Before
+	public void set() throws ResourceInitializationException {
+		this.termIndex = Fixtures.termIndex();
+		this.term2 = Fixtures.term2(termIndex);
+		this.term3 = Fixtures.term3(termIndex);
+		this.term4 = Fixtures.term4(termIndex);
+		this.term5 = Fixtures.term5(termIndex);
+		this.term7 = Fixtures.term7(termIndex);
+		this.term8 = Fixtures.term8(termIndex);
+		this.term12 = Fixtures.term12(termIndex);
+		ae = TestUtil.createAE(
+				this.termIndex,
+				ExtensionDetecter.class
+			);
+	}
+
+	@Test
+	public void testDetectExtensions() throws AnalysisEngineProcessException {
+		ae.collectionProcessComplete();
+		assertThat(term2.getExtensions()).containsOnly(term3, term4, term5);
+		assertThat(term5.getExtensions()).containsOnly(term3, term4);
+		assertThat(term3.getExtensions()).containsOnly(term4);
+		assertThat(term12.getExtensions()).containsOnly(term4);
+		assertThat(term4.getExtensions()).isEmpty();
+		assertThat(term4.getExtensionBases()).containsOnly(term2, term3, term5, term12);
+		
+		// no lemma couple, hence no extension
+		assertThat(term7.getExtensions()).isEmpty();
+		assertThat(term8.getExtensions()).isEmpty();
+	}
+}
@@ -0,0 +1,226 @@
+/*******************************************************************************
+ * Copyright 2015 - CNRS (Centre National de Recherche Scientifique)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ *******************************************************************************/
+
+package org.ttc.project.test.engines;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.fit.factory.ExternalResourceFactory;
+import org.apache.uima.resource.ExternalResourceDescription;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ttc.project.TestUtil;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.ObjectArrays;
+import com.google.common.io.Files;
+
+import eu.project.ttc.engines.SyntacticTermGatherer;
+import eu.project.ttc.engines.desc.Lang;
+import eu.project.ttc.models.Term;
+import eu.project.ttc.models.TermBuilder;
+import eu.project.ttc.models.TermVariation;
+import eu.project.ttc.models.WordBuilder;
+import eu.project.ttc.models.index.MemoryTermIndex;
+import eu.project.ttc.resources.YamlVariantRules;
+
+public class SyntacticTermGathererSpec {
+	
+	private static final String RULES = 
+			"\"S-R2-NAA\":\n" + 
+			"  source: N A A\n" + 
+			"  target: N A N\n" + 
+			"  rule: \"s[0] == t[0]\"\n";
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private MemoryTermIndex termIndex;
+	private int nextId = 1;
+	
+	@Before
+	public void set() {
+		this.termIndex = new MemoryTermIndex("TermIndex", Lang.EN);
+		this.nextId = 1;
+	}
+	
+	private Term term(int frequency, String pattern, String... lemmas) {
+		String[] labels = pattern.split(" ");
+		TermBuilder builder = TermBuilder.start(termIndex)
+				.setId(nextId++)
+				.setFrequency(frequency);
+		StringBuilder groupingKey = new StringBuilder(pattern.replaceAll(" ", "").toLowerCase()).append(":");
+		for(int i = 0; i < lemmas.length; i++) {
+			// "lemma/stem", or "lemma" when the stem is the lemma
+			String lemma = lemmas[i].split("/")[0];
+			String stem = lemmas[i].contains("/") ? lemmas[i].split("/")[1] : lemma;
+			builder.addWord(termIndex.getWord(lemma) == null ? 
+					WordBuilder.start().setLemma(lemma).setStem(stem).create() :
+						termIndex.getWord(lemma), 
+					labels[i]);
+			groupingKey.append(" ").append(lemma);
+		}
+		return builder.setGroupingKey(groupingKey.toString()).createAndAddToIndex();
+	}
+	
+	private AnalysisEngine gatherer(String rules, Object... config) throws IOException {
+		File rulesFile = folder.newFile();
+		Files.write(rules, rulesFile, Charsets.UTF_8);
+		ExternalResourceDescription rulesResource = ExternalResourceFactory.createExternalResourceDescription(
+				YamlVariantRules.class, 
+				rulesFile.toURI().toString());
+		return TestUtil.createAE(
+				termIndex, 
+				SyntacticTermGatherer.class, 
+				ObjectArrays.concat(config, new Object[]{SyntacticTermGatherer.YAML_VARIANT_RULES, rulesResource}, Object.class));
+	}
+	
+	private List<String> readRuleStats(File statsFile) throws IOException {
+		return Files.readLines(statsFile, Charsets.UTF_8);
+	}
+	
+	private static int count(Iterable<TermVariation> variations, Term variant) {
+		int count = 0;
+		for(TermVariation v:variations)
+			if(v.getVariant() == variant)
+				count++;
+		return count;
+	}
+
+	@Test
+	public void testPairSharingSeveralClassesIsComparedOnce() throws Exception {
+		Term base = term(2, "N A A", "énergie", "éolien", "total");
+		Term variant = term(1, "N A N", "énergie", "éolien", "total");
+		File statsFile = new File(folder.getRoot(), "stats.tsv");
+		
+		// the pair shares three lemma-lemma classes and three lemma-stem classes
+		gatherer(RULES, SyntacticTermGatherer.RULE_STATS_FILE, statsFile.getPath()).collectionProcessComplete();
+		
+		assertThat(readRuleStats(statsFile)).hasSize(1);
+		String[] stats = readRuleStats(statsFile).get(0).split("\t");
+		assertThat(stats[0]).isEqualTo("S-R2-NAA");
+		// tries
+		assertThat(stats[1]).isEqualTo("1");
+		// matches
+		assertThat(stats[2]).isEqualTo("1");
+		assertThat(count(base.getVariations(), variant)).isEqualTo(1);
+		assertThat(variant.getBases()).hasSize(1);
+	}
+	
+	private String[] gatherWithStats(String rules) throws Exception {
+		File statsFile = new File(folder.getRoot(), "stats.tsv");
+		gatherer(rules, SyntacticTermGatherer.RULE_STATS_FILE, statsFile.getPath()).collectionProcessComplete();
+		assertThat(readRuleStats(statsFile)).hasSize(1);
+		return readRuleStats(statsFile).get(0).split("\t");
+	}
+	
+	@Test
+	public void testOversizedBlocksAreJoinedOnRuleKeys() throws Exception {
+		String rules = 
+				"\"S-NAA-NAN\":\n" + 
+				"  source: N A A\n" + 
+				"  target: N A N\n" + 
+				"  rule: \"s[0] == t[0] && s[2].stem == t[2].stem\"\n";
+		int n = 2600;
+		List<Term> bases = Lists.newArrayList();
+		List<Term> variants = Lists.newArrayList();
+		// a single class (énergie, éolien) with two pattern blocks of n terms
+		for(int i = 0; i < n; i++) {
+			bases.add(term(2, "N A A", "énergie", "éolien", "a" + i + "/s" + i));
+			variants.add(term(1, "N A N", "énergie", "éolien", "b" + i + "/s" + i));
+		}
+		
+		String[] stats = gatherWithStats(rules);
+		
+		// tries: only the pairs having the same stem, instead of n*n 
+		assertThat(stats[1]).isEqualTo(Integer.toString(n));
+		// matches
+		assertThat(stats[2]).isEqualTo(Integer.toString(n));
+		for(int i = 0; i < n; i++) {
+			assertThat(count(bases.get(i).getVariations(), variants.get(i))).isEqualTo(1);
+			assertThat(variants.get(i).getBases()).hasSize(1);
+		}
+	}
+	
+	@Test
+	public void testUnsplittableBlocksAreComparedByChunks() throws Exception {
+		String rules = 
+				"\"S-NAA-NAA\":\n" + 
+				"  source: N A A\n" + 
+				"  target: N A A\n" + 
+				"  rule: \"s[2] != t[2] && s[2].lemma == 'a2598' && t[2].lemma == 'a2599'\"\n";
+		int n = 2600;
+		List<Term> terms = Lists.newArrayList();
+		// a single class (énergie, éolien) with one pattern block of n terms, 
+		// the last ones being the least frequent
+		for(int i = 0; i < n; i++) 
+			terms.add(term(n - i, "N A A", "énergie", "éolien", "a" + i + "/s" + (i / 2)));
+		
+		String[] stats = gatherWithStats(rules);
+		
+		// tries: the rule has no join key, all pairs are compared
+		assertThat(stats[1]).isEqualTo(Long.toString((long) n * (n - 1)));
+		// matches: the pair of least frequent terms, which also shares the (énergie, s1299) lemma-stem class
+		assertThat(stats[2]).isEqualTo("1");
+		assertThat(count(terms.get(n - 2).getVariations(), terms.get(n - 1))).isEqualTo(1);
+		assertThat(terms.get(n - 1).getBases()).hasSize(1);
+	}
+	
+	/*
+	 * The variations of each term, in term creation and variation order
+	 */
+	private List<String> gatherVariations(Object... config) throws Exception {
+		set();
+		List<Term> terms = Lists.newArrayList();
+		// more classes than a parallel batch
+		for(int g = 0; g < 300; g++) {
+			for(int k = 0; k < 4; k++) {
+				terms.add(term(1 + (g + k) % 3, "N A A", "e" + g, "f" + g, "a" + k));
+				terms.add(term(1 + k % 2, "N A N", "e" + g, "f" + g, "a" + k));
+			}
+		}
+		gatherer(RULES, config).collectionProcessComplete();
+		List<String> variations = Lists.newArrayList();
+		for(Term t:terms)
+			for(TermVariation v:t.getVariations())
+				variations.add(v.getBase().getGroupingKey() + " -> " + v.getVariant().getGroupingKey() + " " + v.getInfo());
+		return variations;
+	}
+	
+	@Test
+	public void testParallelGatheringIsDeterministic() throws Exception {
+		List<String> sequential = gatherVariations();
+		List<String> parallel = gatherVariations(SyntacticTermGatherer.NB_THREADS, 4);
+		
+		// 4 N A A terms x 4 N A N terms per group
+		assertThat(sequential).hasSize(300 * 16);
+		assertThat(parallel).containsExactlyElementsOf(sequential);
+	}
+}
@@ -91,4 +91,28 @@ public class TermClassifierSpec {
 
 	}
 
+	@Test
+	public void testClassifyComponents() throws AnalysisEngineProcessException {
+		term5.addTermVariation(term3, VariationType.SYNTACTICAL, "NA-NAPN");
+		term4.addTermVariation(term3, VariationType.SYNTACTICAL, "NAPNA-NAPN");
+		ae.collectionProcessComplete();
+		assertThat(this.termIndex.getTermClasses()).hasSize(3).extracting("head").contains(term1, term2, term5);
+		assertThat((Object)term3.getTermClass().getHead()).isEqualTo(term5);
+		assertThat((Object)term4.getTermClass().getHead()).isEqualTo(term5);
+	}
+
+	@Test
+	public void testClassifyByDepth() throws AnalysisEngineProcessException, ResourceInitializationException {
+		term5.addTermVariation(term3, VariationType.SYNTACTICAL, "NA-NAPN");
+		term3.addTermVariation(term4, VariationType.SYNTACTICAL, "NA-NAPN2");
+		TestUtil.createAE(
+				this.termIndex,
+				TermClassifier.class, 
+				TermClassifier.CLASSIFYING_PROPERTY, TermProperty.FREQUENCY,
+				TermClassifier.MAX_VARIATION_DEPTH, 1
+			).collectionProcessComplete();
+		assertThat(this.termIndex.getTermClasses()).hasSize(4).extracting("head").contains(term1, term2, term5, term4);
+		assertThat((Object)term3.getTermClass().getHead()).isEqualTo(term5);
+	}
+
 }
@@ -22,17 +22,37 @@
 
 package org.ttc.project.test.variants;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
 
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.ttc.project.Fixtures;
 
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+
+import eu.project.ttc.engines.variant.GroovyRuleCache;
 import eu.project.ttc.engines.variant.VariantRule;
 import eu.project.ttc.engines.variant.VariantRuleBuilder;
+import eu.project.ttc.engines.variant.VariantRuleIndex;
+import eu.project.ttc.models.Component;
 import eu.project.ttc.models.GroovyAdapter;
+import eu.project.ttc.models.GroovyComponent;
+import eu.project.ttc.models.GroovyTerm;
 import eu.project.ttc.models.Term;
+import groovy.lang.GroovyObject;
+import groovy.lang.Script;
 import groovy.util.ResourceException;
 import groovy.util.ScriptException;
 
@@ -97,4 +117,238 @@ public class VariantRuleSpec {
 		Assert.assertTrue(getVariantRule("s[0] == \"énergie\"").matchExpression(term1, term2));
 		Assert.assertTrue(getVariantRule("s[0] == \"accès\"").matchExpression(term3, term2));
 	}
+
+	@Test
+	public void testSupportedExpressionsAreCompiled() {
+		Assert.assertTrue(getVariantRule("s[0] == t[1].stem && s[1][0] != t[0]").isCompiled());
+		Assert.assertTrue(getVariantRule("s.compound && !(t[0].lemma == 'a' || t.isSingleWord)").isCompiled());
+		Assert.assertFalse(getVariantRule("s[0].lemma.startsWith(\"a\")").isCompiled());
+		Assert.assertFalse(getVariantRule("s[0].lemma").isCompiled());
+		Assert.assertFalse(getVariantRule("!s[0]").isCompiled());
+		Assert.assertFalse(getVariantRule("s[0] == \"${t[1].lemma}\"").isCompiled());
+	}
+
+	@Test
+	public void testCompiledExpressionsMatchGroovy() {
+		List<String> expressions = ImmutableList.of(
+				"s[0] == t[1]",
+				"s[0].lemma == t[1].lemma",
+				"t[1].stem == s[0]",
+				"s[0] == t[1].stem && s[1][0] != t[0]",
+				"s[0][0] == t[1][0] && s[0][1] == t[1][1]",
+				"s[0][1] == \"électrique\" || t[0].lemma == 'accès'",
+				"s.compound == t[1].compound",
+				"!s.compound && t[1].syntacticLabel == \"A\"",
+				"s[0] == s[0] && s.lemma != t.lemma",
+				"s[0].stem == null || s.stem == t[0].stem",
+				"s.neoclassical || !t[0].neoclassical && s.pattern != t.pattern");
+		List<Term> terms = ImmutableList.of(term1, term2, term3, Fixtures.term4(), Fixtures.term5());
+		for(String expression:expressions) {
+			VariantRule compiled = getVariantRule(expression);
+			VariantRule groovy = getVariantRule("(" + expression + ") as Boolean");
+			Assert.assertTrue(expression, compiled.isCompiled());
+			Assert.assertFalse(expression, groovy.isCompiled());
+			for(Term s:terms) 
+				for(Term t:terms) 
+					Assert.assertEquals(
+							expression + " on " + s + ", " + t, 
+							groovy.matchExpression(s, t), 
+							compiled.matchExpression(s, t));
+		}
+	}
+
+	private VariantRule getVariantRule(String name, String source, String target, boolean sourceCompound, String expression) {
+		VariantRuleBuilder builder = VariantRuleBuilder.start(name)
+					.addSourcePattern(source)
+					.addTargetPattern(target)
+					.rule(expression)
+					.setGroovyAdapter(new GroovyAdapter());
+		if(sourceCompound)
+			builder.sourceCompound();
+		return builder.create();
+	}
+
+	@Test
+	public void testVariantRuleIndex() {
+		Term term5 = Fixtures.term5();
+		VariantRule r1 = getVariantRule("r1", "N A", "N A P N", false, "s[0] == t[0]");
+		VariantRule r2 = getVariantRule("r2", "N A", "N A P N", true, "true");
+		VariantRule r3 = getVariantRule("r3", "N A", "N A P N", false, "true");
+		VariantRule r4 = getVariantRule("r4", "A", "N A P N", true, "true");
+		VariantRuleIndex index = new VariantRuleIndex(ImmutableList.of(r1, r2, r3, r4));
+		
+		assertThat(index.getCandidateRules(term5, term3)).containsExactly(r1, r3);
+		assertThat(index.getCandidateRules(term2, term3)).containsExactly(r4);
+		assertThat(index.getCandidateRules(term3, term5)).isEmpty();
+		assertThat(index.getMatchingRule(term5, term3)).isSameAs(r1);
+		assertThat(index.getMatchingRule(term1, term3)).isSameAs(r3);
+		assertThat(index.getMatchingRule(term3, term1)).isNull();
+		assertThat(index.hasCandidateRules("N A", "N A P N")).isTrue();
+		assertThat(index.hasCandidateRules("A", "N A P N")).isTrue();
+		assertThat(index.hasCandidateRules("N A P N", "N A")).isFalse();
+	}
+
+	@Test
+	public void testVariantRuleStats() {
+		Term term5 = Fixtures.term5();
+		VariantRule r1 = getVariantRule("r1", "N A", "N A P N", false, "s[0] == t[1]");
+		VariantRule r2 = getVariantRule("r2", "N A", "N A P N", false, "true");
+		VariantRule r3 = getVariantRule("r3", "A", "N A P N", false, "true");
+		VariantRuleIndex index = new VariantRuleIndex(ImmutableList.of(r1, r2, r3));
+		
+		index.getMatchingRule(term5, term3);
+		assertThat(index.getStats().getNbTries(r1)).isEqualTo(0);
+		
+		index.setCollectingStats(true);
+		for(int i = 0; i < 3; i++)
+			assertThat(index.getMatchingRule(term5, term3)).isSameAs(r2);
+		assertThat(index.getMatchingRule(term2, term3)).isSameAs(r3);
+		assertThat(index.getStats().getNbTries(r1)).isEqualTo(3);
+		assertThat(index.getStats().getNbMatches(r1)).isEqualTo(0);
+		assertThat(index.getStats().getNbTries(r2)).isEqualTo(3);
+		assertThat(index.getStats().getNbMatches(r2)).isEqualTo(3);
+		assertThat(index.getStats().getNbTries(r3)).isEqualTo(1);
+		assertThat(index.getStats().getNbMatches(r3)).isEqualTo(1);
+		assertThat(index.getStats().getNanos(r1)).isGreaterThan(0);
+		
+		index.getStats().clear();
+		assertThat(index.getStats().getNbTries(r2)).isEqualTo(0);
+	}
+
+	@Test
+	public void testAdaptiveOrdering() {
+		Term term5 = Fixtures.term5();
+		// r1 and r2 are exclusive, r3 overlaps with both
+		VariantRule r1 = getVariantRule("r1", "N A", "N A P N", false, "s[0].lemma == \"énergie\"");
+		VariantRule r2 = getVariantRule("r2", "N A", "N A P N", false, "s[0] == t[0] && s[0].lemma != \"énergie\"");
+		VariantRule r3 = getVariantRule("r3", "N A", "N A P N", false, "true");
+		VariantRuleIndex index = new VariantRuleIndex(ImmutableList.of(r1, r2, r3));
+		index.setCollectingStats(true);
+		index.setAdaptiveOrdering(true);
+		
+		for(int i = 0; i < VariantRuleIndex.ADAPTIVE_SAMPLE_SIZE; i++) {
+			assertThat(index.getEvaluationOrder(term5, term3)).containsExactly(r1, r2, r3);
+			assertThat(index.getMatchingRule(term5, term3)).isSameAs(r2);
+		}
+		// all rules are evaluated while sampling
+		assertThat(index.getStats().getNbTries(r3)).isEqualTo(VariantRuleIndex.ADAPTIVE_SAMPLE_SIZE);
+		
+		/*
+		 * r1 never matched, but r3 may match along with r1 so it stays after r1,
+		 * while r2 excludes r1 and moves first.
+		 */
+		assertThat(index.getEvaluationOrder(term5, term3)).containsExactly(r2, r1, r3);
+		assertThat(index.getCandidateRules(term5, term3)).containsExactly(r1, r2, r3);
+		index.getStats().clear();
+		assertThat(index.getMatchingRule(term5, term3)).isSameAs(r2);
+		assertThat(index.getStats().getNbTries(r1)).isEqualTo(0);
+		assertThat(index.getStats().getNbTries(r3)).isEqualTo(0);
+		
+		// a pair matching the overlapping rules r1 and r3 still matches r1
+		assertThat(index.getMatchingRule(term1, term3)).isSameAs(r1);
+		
+		index.setAdaptiveOrdering(false);
+		assertThat(index.getEvaluationOrder(term5, term3)).containsExactly(r1, r2, r3);
+		assertThat(index.getMatchingRule(term5, term3)).isSameAs(r2);
+	}
+	
+	@Test
+	public void testAdaptiveOrderingKeepsOverlappingRulesInOrder() {
+		Term term5 = Fixtures.term5();
+		// r2 is cheaper per match but may match the same pairs as r1
+		VariantRule r1 = getVariantRule("r1", "N A", "N A P N", false, "s[0] == t[0] && s[1] == t[1]");
+		VariantRule r2 = getVariantRule("r2", "N A", "N A P N", false, "s[1] == t[1]");
+		VariantRuleIndex index = new VariantRuleIndex(ImmutableList.of(r1, r2));
+		index.setAdaptiveOrdering(true);
+		for(int i = 0; i < VariantRuleIndex.ADAPTIVE_SAMPLE_SIZE; i++)
+			assertThat(index.getMatchingRule(term5, term3)).isSameAs(r1);
+		assertThat(index.getEvaluationOrder(term5, term3)).containsExactly(r1, r2);
+		assertThat(index.getMatchingRule(term5, term3)).isSameAs(r1);
+	}
+
+	@Test
+	public void testBoundedGroovyAdapter() {
+		GroovyAdapter unbounded = new GroovyAdapter();
+		unbounded.asGroovyTerm(term1);
+		unbounded.asGroovyTerm(term2);
+		Assert.assertSame(unbounded.asGroovyTerm(term1), unbounded.asGroovyTerm(term1));
+		
+		GroovyAdapter bounded = new GroovyAdapter(1);
+		GroovyTerm view1 = bounded.asGroovyTerm(term1);
+		Assert.assertSame(view1, bounded.asGroovyTerm(term1));
+		bounded.asGroovyTerm(term2);
+		Assert.assertNotSame(view1, bounded.asGroovyTerm(term1));
+		Assert.assertEquals(view1.lemma, bounded.asGroovyTerm(term1).lemma);
+		
+		// word and component views outlive evicted term views
+		Assert.assertSame(view1.words.get(0), bounded.asGroovyTerm(term1).words.get(0));
+		Component noLemma = new Component(Component.NO_LEMMA, 0, 3);
+		GroovyComponent componentView = bounded.asGroovyComponent(noLemma);
+		bounded.asGroovyTerm(term2);
+		bounded.asGroovyTerm(term1);
+		Assert.assertSame(componentView, bounded.asGroovyComponent(new Component(Component.NO_LEMMA, 0, 3)));
+	}
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private static final String CACHED_SCRIPT = "def Boolean match(s, t) { s[0].lemma.startsWith('a') }";
+
+	@Test
+	public void testGroovyRuleCache() throws Exception {
+		File dir = new File(folder.getRoot(), "cache");
+		GroovyRuleCache cache = new GroovyRuleCache(Optional.of(dir));
+		Class<?> compiled = cache.getScriptClass("r1", CACHED_SCRIPT);
+		assertThat(dir.listFiles()).hasSize(1);
+		assertThat(java.nio.file.Files.getPosixFilePermissions(dir.toPath()))
+			.containsOnly(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE, PosixFilePermission.OWNER_EXECUTE);
+		
+		// a new cache loads the class from disk
+		File cacheFile = dir.listFiles()[0];
+		long lastModified = cacheFile.lastModified();
+		Class<?> loaded = new GroovyRuleCache(Optional.of(dir)).getScriptClass("r1", CACHED_SCRIPT);
+		assertThat(dir.listFiles()).hasSize(1);
+		Assert.assertEquals(lastModified, cacheFile.lastModified());
+		Assert.assertEquals(compiled.getName(), loaded.getName());
+		GroovyAdapter adapter = new GroovyAdapter();
+		GroovyObject rule = (GroovyObject) loaded.newInstance();
+		Assert.assertTrue((Boolean) rule.invokeMethod("match", new Object[]{adapter.asGroovyTerm(term3), adapter.asGroovyTerm(term1)}));
+		Assert.assertFalse((Boolean) rule.invokeMethod("match", new Object[]{adapter.asGroovyTerm(term1), adapter.asGroovyTerm(term3)}));
+		
+		// another script gets another entry
+		new GroovyRuleCache(Optional.of(dir)).getScriptClass("r2", CACHED_SCRIPT);
+		assertThat(dir.listFiles()).hasSize(2);
+	}
+
+	@Test
+	public void testGroovyRuleCacheRejectsTamperedFiles() throws Exception {
+		File dir = new File(folder.getRoot(), "cache");
+		new GroovyRuleCache(Optional.of(dir)).getScriptClass("r1", CACHED_SCRIPT);
+		File cacheFile = dir.listFiles()[0];
+		byte[] original = Files.toByteArray(cacheFile);
+		byte[] tampered = original.clone();
+		tampered[tampered.length - 1] ^= 1;
+		Files.write(tampered, cacheFile);
+		
+		// the rule is compiled again and the entry is rewritten
+		Class<?> cls = new GroovyRuleCache(Optional.of(dir)).getScriptClass("r1", CACHED_SCRIPT);
+		assertThat(Script.class.isAssignableFrom(cls)).isTrue();
+		assertThat(Files.toByteArray(cacheFile)).isEqualTo(original);
+	}
+
+	@Test
+	public void testGroovyRuleCacheIgnoresUntrustedDirectory() throws Exception {
+		File dir = folder.newFolder("shared");
+		java.nio.file.Files.setPosixFilePermissions(dir.toPath(), PosixFilePermissions.fromString("rwxrwxrwx"));
+		Class<?> cls = new GroovyRuleCache(Optional.of(dir)).getScriptClass("r1", CACHED_SCRIPT);
+		assertThat(Script.class.isAssignableFrom(cls)).isTrue();
+		assertThat(dir.listFiles()).isEmpty();
+	}
+
+	@Test
+	public void testGroovyRuleCacheIsDisabledByDefault() {
+		Assume.assumeTrue(System.getProperty(GroovyRuleCache.CACHE_DIR_PROPERTY) == null);
+		GroovyRuleCache.getDefault().getScriptClass("r1", CACHED_SCRIPT);
+		assertThat(new File(System.getProperty("java.io.tmpdir"), "termsuite-groovy-cache")).doesNotExist();
+	}
 }